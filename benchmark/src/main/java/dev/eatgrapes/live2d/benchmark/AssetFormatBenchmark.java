@@ -0,0 +1,84 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismAssetCompiler;
+import dev.eatgrapes.live2d.CubismMemoryStats;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismMotionCache;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Loads every motion and expression of a model from JSON or from the CubismAssetCompiler output.
+// The motion cache is off so each iteration really parses.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetFormatBenchmark {
+    @Param({"Mao", "Natori"})
+    public String model;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private CubismUserModel target;
+    private final List<byte[]> motions = new ArrayList<>();
+    private final Map<String, byte[]> expressions = new LinkedHashMap<>();
+    private int cacheCapacity;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        boolean binary = format.equals("binary");
+        for (byte[] motion : files.motions) {
+            motions.add(binary ? CubismAssetCompiler.compileMotion(ByteBuffer.wrap(motion)) : motion);
+        }
+        for (Map.Entry<String, byte[]> e : files.expressions.entrySet()) {
+            expressions.put(e.getKey(), binary ? CubismAssetCompiler.compileExpression(ByteBuffer.wrap(e.getValue())) : e.getValue());
+        }
+        target = new CubismUserModel();
+        target.loadModel(files.moc);
+        cacheCapacity = CubismMotionCache.getCapacity();
+        CubismMotionCache.setCapacity(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        // Native memory held by the parsed motions, to compare the two forms.
+        long file = 0, live = 0, peak = 0;
+        for (byte[] bytes : motions) {
+            try (CubismMotion motion = new CubismMotion(bytes, false)) {
+                CubismMemoryStats stats = motion.getMemoryStats();
+                file += bytes.length;
+                live += stats.getLiveBytes();
+                peak += stats.getPeakBytes();
+            }
+        }
+        System.out.printf("%n%s %s: %d motions, %d bytes on disk, %d bytes live, %d bytes peak%n", model, format, motions.size(), file, live, peak);
+        CubismMotionCache.setCapacity(cacheCapacity);
+        target.close();
+    }
+
+    @Benchmark
+    public void loadMotions() {
+        for (byte[] bytes : motions) {
+            new CubismMotion(bytes, false).close();
+        }
+    }
+
+    @Benchmark
+    public void loadExpressions() {
+        for (Map.Entry<String, byte[]> e : expressions.entrySet()) {
+            target.loadExpression(e.getValue(), e.getKey());
+        }
+    }
+}
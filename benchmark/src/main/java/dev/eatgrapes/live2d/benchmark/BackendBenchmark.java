@@ -0,0 +1,76 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismFramework;
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-call overhead of the JNI and FFM backends for the same calls. Every backend runs in its own
+// fork, since the backend is fixed when the binding is first used. FFM needs a Java 22+ JVM;
+// draw() isn't covered because it needs a GL context.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+public class BackendBenchmark {
+    @Param({"jni", "ffm"})
+    public String backend;
+
+    @Param({"Hiyori"})
+    public String model;
+
+    @Param({"ParamAngleX"})
+    public String parameter;
+
+    private CubismModelDefinition definition;
+    private CubismUserModel target;
+    private int index;
+    private float value;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("live2d.backend", backend);
+        BenchmarkModels.startFramework();
+        if (!CubismFramework.getBackend().name().equalsIgnoreCase(backend)) {
+            throw new IllegalStateException("Backend " + backend + " is not available on Java " + Runtime.version().feature());
+        }
+        definition = new CubismModelDefinition(BenchmarkModels.load(model).moc);
+        target = definition.createModel();
+        index = target.getParameterIndex(parameter);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public void setByIndex() {
+        target.setParameterValue(index, value += 0.01f);
+    }
+
+    @Benchmark
+    public float getByIndex() {
+        return target.getParameterValue(index);
+    }
+
+    @Benchmark
+    public void setById() {
+        target.setParameterValue(parameter, value += 0.01f);
+    }
+
+    @Benchmark
+    public void setDragging() {
+        target.setDragging(value += 0.001f, 0.0f);
+    }
+
+    @Benchmark
+    public void update() {
+        target.update(1.0f / 60.0f);
+    }
+}
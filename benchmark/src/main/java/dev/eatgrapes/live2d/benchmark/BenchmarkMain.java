@@ -0,0 +1,17 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Same as org.openjdk.jmh.Main, but adds the GC profiler for allocation rates unless a profiler is given.
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> list = new ArrayList<>(Arrays.asList(args));
+        if (!list.contains("-prof") && !list.contains("-h") && !list.contains("-l")) {
+            list.add("-prof");
+            list.add("gc");
+        }
+        org.openjdk.jmh.Main.main(list.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,84 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import dev.eatgrapes.live2d.CubismFramework;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads the models bundled with the example straight from disk, so no window or GL context is needed.
+final class BenchmarkModels {
+    static final String MODELS_PROPERTY = "live2d.models";
+
+    private static boolean started;
+
+    private BenchmarkModels() {}
+
+    static synchronized void startFramework() {
+        if (started) return;
+        CubismFramework.startUp();
+        CubismFramework.initialize();
+        started = true;
+    }
+
+    static ModelFiles load(String name) throws IOException {
+        Path dir = modelsDirectory().resolve(name);
+        JsonObject json;
+        try (Reader reader = Files.newBufferedReader(dir.resolve(name + ".model3.json"))) {
+            json = new Gson().fromJson(reader, JsonObject.class);
+        }
+        JsonObject refs = json.getAsJsonObject("FileReferences");
+
+        ModelFiles files = new ModelFiles();
+        files.moc = read(dir, refs, "Moc");
+        files.physics = read(dir, refs, "Physics");
+        files.pose = read(dir, refs, "Pose");
+        if (refs.has("Motions")) {
+            for (Map.Entry<String, JsonElement> group : refs.getAsJsonObject("Motions").entrySet()) {
+                for (JsonElement motion : group.getValue().getAsJsonArray()) {
+                    files.motions.add(Files.readAllBytes(dir.resolve(motion.getAsJsonObject().get("File").getAsString())));
+                }
+            }
+        }
+        if (refs.has("Expressions")) {
+            JsonArray expressions = refs.getAsJsonArray("Expressions");
+            for (JsonElement expression : expressions) {
+                JsonObject e = expression.getAsJsonObject();
+                files.expressions.put(e.get("Name").getAsString(), Files.readAllBytes(dir.resolve(e.get("File").getAsString())));
+            }
+        }
+        return files;
+    }
+
+    private static byte[] read(Path dir, JsonObject refs, String key) throws IOException {
+        return refs.has(key) ? Files.readAllBytes(dir.resolve(refs.get(key).getAsString())) : null;
+    }
+
+    private static Path modelsDirectory() {
+        String override = System.getProperty(MODELS_PROPERTY);
+        if (override != null) return Paths.get(override);
+        for (String candidate : new String[]{"../example/src/main/resources/model", "example/src/main/resources/model"}) {
+            Path path = Paths.get(candidate);
+            if (Files.isDirectory(path)) return path;
+        }
+        throw new IllegalStateException("Model directory not found, set -D" + MODELS_PROPERTY + "=<path>");
+    }
+
+    static final class ModelFiles {
+        byte[] moc;
+        byte[] physics;
+        byte[] pose;
+        final List<byte[]> motions = new ArrayList<>();
+        final Map<String, byte[]> expressions = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,65 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismDrawableBuffers;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawableBenchmark {
+    @Param({"Hiyori", "Mao"})
+    public String model;
+
+    private CubismUserModel target;
+    private CubismDrawableBuffers buffers;
+    private float angle = 30.0f;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        target = new CubismUserModel();
+        target.loadModel(BenchmarkModels.load(model).moc);
+        buffers = CubismDrawableBuffers.allocate(target.getDrawableLayout());
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+    }
+
+    @Benchmark
+    public String[] getDrawableIds() {
+        return target.getDrawableIds();
+    }
+
+    // Nothing moves between calls, so after the first read this measures the no-change path.
+    @Benchmark
+    public int readDrawables() {
+        return target.readDrawables(buffers);
+    }
+
+    // The head turns from side to side on every call, so most drawables change between reads.
+    // updateOnly is the same work without the read; the difference is what a read costs.
+    @Benchmark
+    public int readChangedDrawables() {
+        turnHead();
+        return target.readDrawables(buffers);
+    }
+
+    @Benchmark
+    public void updateOnly() {
+        turnHead();
+    }
+
+    private void turnHead() {
+        angle = -angle;
+        target.setParameterValue("ParamAngleX", angle);
+        target.update(1.0f / 60.0f);
+    }
+}
@@ -0,0 +1,62 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUpdateGroup;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupUpdateBenchmark {
+    @Param({"Hiyori", "Natori", "Mao", "Wanko", "Rice", "Mark"})
+    public String model;
+
+    @Param({"1", "8", "32"})
+    public int count;
+
+    private CubismModelDefinition definition;
+    private CubismMotion idle;
+    private CubismUserModel[] models;
+    private final CubismUpdateGroup group = new CubismUpdateGroup();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        definition = new CubismModelDefinition(files.moc);
+        if (files.physics != null) definition.loadPhysics(files.physics);
+        if (files.pose != null) definition.loadPose(files.pose);
+        idle = new CubismMotion(files.motions.get(0), true);
+        models = new CubismUserModel[count];
+        for (int i = 0; i < count; i++) {
+            models[i] = definition.createModel();
+            models[i].startMotion(idle, 1, null);
+            group.add(models[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        group.clear();
+        for (CubismUserModel m : models) m.close();
+        idle.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public void serial() {
+        for (CubismUserModel m : models) m.update(1.0f / 60.0f);
+    }
+
+    @Benchmark
+    public void parallel() {
+        group.update(1.0f / 60.0f);
+    }
+}
@@ -0,0 +1,70 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Finding everything under the cursor: one isHit() per drawable against a single hitTest().
+// hitTestAfterUpdate includes refreshing the bounds of every drawable the update moved, which is
+// what the first hover test after a frame pays.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+    @Param({"Hiyori"})
+    public String model;
+
+    private CubismModelDefinition definition;
+    private CubismMotion idle;
+    private CubismUserModel instance;
+    private String[] drawableIds;
+    private final int[] hits = new int[256];
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        definition = new CubismModelDefinition(files.moc);
+        idle = new CubismMotion(files.motions.get(0), true);
+        instance = definition.createModel();
+        instance.startMotion(idle, 1, null);
+        instance.update(1.0f / 60.0f);
+        drawableIds = instance.getDrawableIds();
+    }
+
+    @TearDown
+    public void tearDown() {
+        instance.close();
+        idle.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public int isHitPerDrawable() {
+        int count = 0;
+        for (String id : drawableIds) if (instance.isHit(id, 0.0f, 0.3f)) count++;
+        return count;
+    }
+
+    @Benchmark
+    public int hitTest() {
+        return instance.hitTest(0.0f, 0.3f, false, hits);
+    }
+
+    @Benchmark
+    public int hitTestPrecise() {
+        return instance.hitTest(0.0f, 0.3f, true, hits);
+    }
+
+    @Benchmark
+    public int hitTestAfterUpdate() {
+        instance.update(1.0f / 60.0f);
+        return instance.hitTest(0.0f, 0.3f, false, hits);
+    }
+}
@@ -0,0 +1,53 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"Hiyori", "Mao"})
+    public String model;
+
+    private BenchmarkModels.ModelFiles files;
+    private CubismUserModel target;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        files = BenchmarkModels.load(model);
+        if (files.physics == null || files.pose == null) throw new IllegalStateException(model + " needs both physics and pose");
+        target = new CubismUserModel();
+        target.loadModel(files.moc);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+    }
+
+    // Includes creating and closing the native model, since loading twice into one model leaks the first moc.
+    @Benchmark
+    public void loadModel() {
+        try (CubismUserModel m = new CubismUserModel()) {
+            m.loadModel(files.moc);
+        }
+    }
+
+    // Reloading into one model frees the copy loaded before, so these don't pile up memory.
+    @Benchmark
+    public void loadPhysics() {
+        target.loadPhysics(files.physics);
+    }
+
+    @Benchmark
+    public void loadPose() {
+        target.loadPose(files.pose);
+    }
+}
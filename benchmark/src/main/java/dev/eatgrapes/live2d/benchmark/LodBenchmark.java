@@ -0,0 +1,73 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismLod;
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// CPU cost of one frame of a crowd as a function of the LOD mix. The score is the time to update
+// every model once; models with a reduced rate are staggered, so averaging over many frames
+// gives the steady-state cost.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LodBenchmark {
+    @Param({"Hiyori"})
+    public String model;
+
+    @Param({"32"})
+    public int count;
+
+    // full, reduced, background and frozen models, in that order
+    @Param({"100/0/0/0", "50/50/0/0", "25/25/50/0", "10/20/40/30", "0/0/100/0", "0/0/0/100"})
+    public String mix;
+
+    private CubismModelDefinition definition;
+    private CubismMotion idle;
+    private CubismUserModel[] models;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        definition = new CubismModelDefinition(files.moc);
+        if (files.physics != null) definition.loadPhysics(files.physics);
+        if (files.pose != null) definition.loadPose(files.pose);
+        idle = new CubismMotion(files.motions.get(0), true);
+
+        CubismLod[] levels = { CubismLod.FULL, CubismLod.REDUCED, CubismLod.BACKGROUND, CubismLod.FROZEN };
+        String[] parts = mix.split("/");
+        if (parts.length != levels.length) throw new IllegalArgumentException("Mix needs four percentages: " + mix);
+        models = new CubismUserModel[count];
+        int next = 0;
+        for (int level = 0; level < levels.length; level++) {
+            int share = level == levels.length - 1 ? count - next : Math.round(count * Integer.parseInt(parts[level]) / 100.0f);
+            for (int i = 0; i < share && next < count; i++, next++) {
+                models[next] = definition.createModel();
+                models[next].startMotion(idle, 1, null);
+                models[next].setDragging(0.3f, -0.2f);
+                // One full update first so frozen models hold a real pose.
+                models[next].update(1.0f / 60.0f);
+                models[next].setLod(levels[level]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (CubismUserModel m : models) m.close();
+        idle.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public void frame() {
+        for (CubismUserModel m : models) m.update(1.0f / 60.0f);
+    }
+}
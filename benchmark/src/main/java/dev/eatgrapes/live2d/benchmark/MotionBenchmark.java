@@ -0,0 +1,51 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotionBenchmark {
+    @Param({"Hiyori"})
+    public String model;
+
+    private CubismUserModel target;
+    private byte[] bytes;
+    private CubismMotion motion;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        target = new CubismUserModel();
+        target.loadModel(files.moc);
+        bytes = files.motions.get(0);
+        motion = new CubismMotion(bytes, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+        motion.close();
+    }
+
+    // Each start queues an entry; a frame's update retires the one it replaced so the queue stays short.
+    @Benchmark
+    public void startFromBytes() {
+        target.startMotion(bytes, 3, false, null);
+        target.update(1.0f / 60.0f);
+    }
+
+    @Benchmark
+    public void startFromHandle() {
+        target.startMotion(motion, 3, null);
+        target.update(1.0f / 60.0f);
+    }
+}
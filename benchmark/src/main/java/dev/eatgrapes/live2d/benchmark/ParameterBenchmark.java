@@ -0,0 +1,113 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismUserModel;
+import dev.eatgrapes.live2d.ParameterHandle;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterBenchmark {
+    private static final int FRAME_SIZE = 24;
+
+    @Param({"Hiyori"})
+    public String model;
+
+    @Param({"ParamAngleX"})
+    public String parameter;
+
+    private CubismUserModel target;
+    private ParameterHandle handle;
+    private int index;
+    private float value;
+    private FloatBuffer all, frame;
+    private int[] frameIndices;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        target = new CubismUserModel();
+        target.loadModel(BenchmarkModels.load(model).moc);
+        handle = target.parameter(parameter);
+        index = handle.getIndex();
+        all = FloatBuffer.allocate(target.getParameterCount());
+        // The first FRAME_SIZE parameters stand in for what a face tracker drives.
+        frameIndices = new int[Math.min(FRAME_SIZE, target.getParameterCount())];
+        for (int i = 0; i < frameIndices.length; i++) frameIndices[i] = i;
+        frame = FloatBuffer.allocate(frameIndices.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+    }
+
+    @Benchmark
+    public void setById() {
+        target.setParameterValue(parameter, value += 0.01f);
+    }
+
+    @Benchmark
+    public float getById() {
+        return target.getParameterValue(parameter);
+    }
+
+    @Benchmark
+    public void setByIndex() {
+        target.setParameterValue(index, value += 0.01f);
+    }
+
+    @Benchmark
+    public float getByIndex() {
+        return target.getParameterValue(index);
+    }
+
+    @Benchmark
+    public void setByHandle() {
+        handle.set(value += 0.01f);
+    }
+
+    // Every parameter at once through the shared native view.
+    @Benchmark
+    public void writeAll() {
+        all.clear();
+        target.writeParameters(all);
+    }
+
+    // A tracker frame for a fixed set of parameters: one call per value against one batch copy
+    // through the view.
+    @Benchmark
+    public void writeFrameByIndex() {
+        value += 0.01f;
+        for (int i : frameIndices) target.setParameterValue(i, value);
+    }
+
+    @Benchmark
+    public void writeFrameThroughView() {
+        value += 0.01f;
+        frame.clear();
+        while (frame.hasRemaining()) frame.put(value);
+        frame.flip();
+        target.writeParameters(frame, frameIndices);
+    }
+
+    @Benchmark
+    public float readFrameByIndex() {
+        float sum = 0.0f;
+        for (int i : frameIndices) sum += target.getParameterValue(i);
+        return sum;
+    }
+
+    @Benchmark
+    public FloatBuffer readFrameThroughView() {
+        frame.clear();
+        target.readParameters(frame, frameIndices);
+        return frame;
+    }
+}
@@ -0,0 +1,69 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismParameterStream;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One frame of tracking input: `samples` full tracking samples of `parameters` values each,
+// written either through a parameter stream (coalesced and applied in one native call) or with
+// one setParameterValue() per value, followed by the update that consumes them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterStreamBenchmark {
+    @Param({"Hiyori"})
+    public String model;
+
+    @Param({"32"})
+    public int parameters;
+
+    // 120 Hz tracking into a 60 Hz render loop delivers two samples per frame.
+    @Param({"1", "2"})
+    public int samples;
+
+    private CubismModelDefinition definition;
+    private CubismUserModel target;
+    private CubismParameterStream stream;
+    private float value;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        definition = new CubismModelDefinition(BenchmarkModels.load(model).moc);
+        target = definition.createModel();
+        parameters = Math.min(parameters, target.getParameterCount());
+        stream = new CubismParameterStream(1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public void stream() {
+        target.setParameterStream(stream);
+        for (int s = 0; s < samples; s++) {
+            value = value > 1.0f ? 0.0f : value + 0.01f;
+            for (int i = 0; i < parameters; i++) stream.set(i, value);
+        }
+        target.update(1.0f / 60.0f);
+    }
+
+    @Benchmark
+    public void direct() {
+        target.setParameterStream(null);
+        for (int s = 0; s < samples; s++) {
+            value = value > 1.0f ? 0.0f : value + 0.01f;
+            for (int i = 0; i < parameters; i++) target.setParameterValue(i, value);
+        }
+        target.update(1.0f / 60.0f);
+    }
+}
@@ -0,0 +1,113 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismModelDefinition;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+// Capturing and restoring a live model with a motion and physics running, against what
+// reproducing the same state used to cost: a new instance from the definition plus replaying
+// the motion from the start.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"Hiyori"})
+    public String model;
+
+    private CubismModelDefinition definition;
+    private CubismMotion idle;
+    private CubismUserModel source, clone;
+    private ByteBuffer state;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        definition = new CubismModelDefinition(files.moc);
+        if (files.physics != null) definition.loadPhysics(files.physics);
+        if (files.pose != null) definition.loadPose(files.pose);
+        idle = new CubismMotion(files.motions.get(0), true);
+
+        source = definition.createModel();
+        source.startMotion(idle, 1, null);
+        for (int i = 0; i < 90; i++) source.update(1.0f / 60.0f);
+        clone = definition.createModel();
+        state = ByteBuffer.allocateDirect(source.getSnapshotSize());
+        checkShortBuffer();
+        checkShortTotal();
+    }
+
+    // A blob whose recorded size doesn't even cover its header has to be refused as damaged.
+    private void checkShortTotal() {
+        ByteBuffer blob = ByteBuffer.allocateDirect(state.capacity()).order(ByteOrder.nativeOrder());
+        source.snapshot(blob);
+        blob.flip();
+        blob.putInt(8, 8);
+        boolean refused = false;
+        try {
+            clone.restore(blob);
+        } catch (IllegalArgumentException e) {
+            refused = true;
+        }
+        if (!refused) throw new IllegalStateException("restore() accepted a snapshot whose size is smaller than its header");
+    }
+
+    // A buffer one byte short has to be refused without anything written into it.
+    private void checkShortBuffer() {
+        ByteBuffer small = ByteBuffer.allocateDirect(state.capacity() - 1);
+        while (small.hasRemaining()) small.put((byte) 0x5A);
+        small.clear();
+        boolean refused = false;
+        try {
+            source.snapshot(small);
+        } catch (BufferOverflowException e) {
+            refused = true;
+        }
+        if (!refused) throw new IllegalStateException("snapshot() accepted a buffer one byte too small");
+        if (small.position() != 0) throw new IllegalStateException("snapshot() moved the position of a buffer it refused");
+        while (small.hasRemaining()) {
+            if (small.get() != 0x5A) throw new IllegalStateException("snapshot() wrote into a buffer it refused");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        clone.close();
+        source.close();
+        idle.close();
+        definition.close();
+    }
+
+    @Benchmark
+    public int snapshot() {
+        state.clear();
+        return source.snapshot(state);
+    }
+
+    @Benchmark
+    public CubismUserModel restore() {
+        state.clear();
+        source.snapshot(state);
+        state.flip();
+        clone.restore(state);
+        return clone;
+    }
+
+    @Benchmark
+    public float recreate() {
+        try (CubismUserModel instance = definition.createModel()) {
+            instance.startMotion(idle, 1, null);
+            for (int i = 0; i < 90; i++) instance.update(1.0f / 60.0f);
+            return instance.getParameterValue(0);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package dev.eatgrapes.live2d.benchmark;
+
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismUserModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateBenchmark {
+    @Param({"Hiyori", "Mao"})
+    public String model;
+
+    @Param({"true", "false"})
+    public boolean physics;
+
+    private CubismUserModel target;
+    private CubismMotion idle;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkModels.startFramework();
+        BenchmarkModels.ModelFiles files = BenchmarkModels.load(model);
+        target = new CubismUserModel();
+        target.loadModel(files.moc);
+        if (files.pose != null) target.loadPose(files.pose);
+        if (physics && files.physics != null) target.loadPhysics(files.physics);
+        // A looping motion keeps the motion manager busy for the whole run.
+        idle = new CubismMotion(files.motions.get(0), true);
+        target.startMotion(idle, 1, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.close();
+        idle.close();
+    }
+
+    @Benchmark
+    public void update() {
+        target.update(1.0f / 60.0f);
+    }
+}
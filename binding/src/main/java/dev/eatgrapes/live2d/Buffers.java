@@ -0,0 +1,23 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class Buffers {
+    private Buffers() {}
+
+    static ByteBuffer requireDirect(ByteBuffer buffer) {
+        if (!buffer.isDirect()) throw new IllegalArgumentException("Buffer must be direct");
+        return buffer;
+    }
+
+    static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Compiles motion3.json and exp3.json into a binary form the native side loads without parsing
+// JSON: curve segments are resolved to the SDK's flat segment and point arrays, ids sit in a
+// string table and the points are copied as they are. Every loader (CubismMotion, startMotion,
+// loadExpression, ModelLoader) accepts both forms and tells them apart by content, so compiled
+// files can replace the JSON ones one for one. Physics files stay JSON.
+//
+//   java -cp live2d-shared.jar dev.eatgrapes.live2d.CubismAssetCompiler [-o <dir>] <file or directory>...
+//
+// writes mtn_01.motion3.bin next to mtn_01.motion3.json, or into <dir> keeping the layout below
+// each input directory. The format is versioned (see JniBinaryAsset.cpp); a binding that doesn't
+// know the version treats the file as JSON and fails to load it, so recompile after updating.
+public final class CubismAssetCompiler {
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x4244324c; // "L2DB"
+    private static final int KIND_MOTION = 1, KIND_EXPRESSION = 2;
+
+    private CubismAssetCompiler() {}
+
+    public static byte[] compileMotion(ByteBuffer motion3Json) {
+        Object root = Json.parse(motion3Json);
+        Map<String, Object> meta = Json.object(root, "Meta");
+        if (meta == null) throw new IllegalArgumentException("Not a motion3.json: no Meta");
+
+        Strings strings = new Strings();
+        Out curves = new Out(), segments = new Out(), points = new Out(), events = new Out();
+        int curveCount = 0, segmentCount = 0, pointCount = 0, eventCount = 0;
+
+        List<Object> curveList = Json.array(root, "Curves");
+        for (Object curve : curveList != null ? curveList : new ArrayList<>()) {
+            String id = Json.string(curve, "Id");
+            if (id == null) throw new IllegalArgumentException("Curve " + curveCount + " has no Id");
+            List<Object> data = Json.array(curve, "Segments");
+            if (data == null || data.size() < 2) throw new IllegalArgumentException("Curve " + id + " has no segments");
+            float[] values = new float[data.size()];
+            for (int i = 0; i < values.length; i++) values[i] = ((Number) data.get(i)).floatValue();
+
+            // Same walk as CubismMotion::Parse: the first point, then per segment its type and
+            // one point (three for beziers); each segment starts at the previous one's last point.
+            int firstSegment = segmentCount;
+            points.f32(values[0]).f32(values[1]);
+            pointCount++;
+            for (int v = 2; v < values.length; ) {
+                int type = (int) values[v];
+                if (type < 0 || type > 3) throw new IllegalArgumentException("Curve " + id + " has unknown segment type " + type);
+                int n = type == 1 ? 3 : 1;
+                if (v + 1 + n * 2 > values.length) throw new IllegalArgumentException("Curve " + id + " ends inside a segment");
+                segments.u32(type).u32(pointCount - 1);
+                for (int k = 0; k < n; k++) points.f32(values[v + 1 + k * 2]).f32(values[v + 2 + k * 2]);
+                pointCount += n;
+                segmentCount++;
+                v += 1 + n * 2;
+            }
+
+            curves.u32(target(Json.string(curve, "Target"), id)).u32(strings.index(id))
+                    .u32(firstSegment).u32(segmentCount - firstSegment)
+                    .f32((float) Json.number(curve, "FadeInTime", -1.0))
+                    .f32((float) Json.number(curve, "FadeOutTime", -1.0));
+            curveCount++;
+        }
+
+        List<Object> userData = Json.array(root, "UserData");
+        for (Object event : userData != null ? userData : new ArrayList<>()) {
+            String value = Json.string(event, "Value");
+            events.f32((float) Json.number(event, "Time", 0.0)).u32(strings.index(value != null ? value : ""));
+            eventCount++;
+        }
+
+        Out body = new Out()
+                .f32((float) Json.number(meta, "Duration", 0.0))
+                .f32((float) Json.number(meta, "Fps", 0.0))
+                .f32(fade(meta, "FadeInTime"))
+                .f32(fade(meta, "FadeOutTime"))
+                .u32((Json.bool(meta, "Loop") ? 1 : 0) | (Json.bool(meta, "AreBeziersRestricted") ? 2 : 0))
+                .u32(curveCount).u32(segmentCount).u32(pointCount).u32(eventCount)
+                .append(curves).append(segments).append(points).append(events);
+        return assemble(KIND_MOTION, strings, body);
+    }
+
+    public static byte[] compileExpression(ByteBuffer exp3Json) {
+        Object root = Json.parse(exp3Json);
+        Strings strings = new Strings();
+        Out parameters = new Out();
+        int count = 0;
+        List<Object> list = Json.array(root, "Parameters");
+        for (Object parameter : list != null ? list : new ArrayList<>()) {
+            String id = Json.string(parameter, "Id");
+            if (id == null) throw new IllegalArgumentException("Expression parameter " + count + " has no Id");
+            parameters.u32(strings.index(id)).u32(blend(Json.string(parameter, "Blend"))).f32((float) Json.number(parameter, "Value", 0.0));
+            count++;
+        }
+
+        Out body = new Out()
+                .f32((float) Json.number(root, "FadeInTime", 1.0))
+                .f32((float) Json.number(root, "FadeOutTime", 1.0))
+                .u32(count)
+                .append(parameters);
+        return assemble(KIND_EXPRESSION, strings, body);
+    }
+
+    // Whether the buffer holds a compiled motion or expression of any version.
+    public static boolean isCompiled(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) output = Paths.get(args[++i]);
+            else inputs.add(Paths.get(args[i]));
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: CubismAssetCompiler [-o <dir>] <motion3.json, exp3.json or directory>...");
+            System.exit(2);
+        }
+
+        // Source file -> output path relative to -o, keeping the layout below directory inputs.
+        Map<Path, Path> files = new LinkedHashMap<>();
+        for (Path input : inputs) {
+            if (!Files.isDirectory(input)) {
+                files.put(input, input.getFileName());
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(input)) {
+                for (Path file : walk.filter(CubismAssetCompiler::isSource).sorted().collect(Collectors.toList())) {
+                    files.put(file, input.relativize(file));
+                }
+            }
+        }
+
+        long before = 0, after = 0;
+        for (Map.Entry<Path, Path> entry : files.entrySet()) {
+            Path file = entry.getKey();
+            String name = file.getFileName().toString();
+            if (!isSource(file)) throw new IllegalArgumentException("Not a motion3.json or exp3.json: " + file);
+            ByteBuffer json = Buffers.map(file);
+            byte[] compiled = name.endsWith(".motion3.json") ? compileMotion(json) : compileExpression(json);
+            Path target = (output != null ? output.resolve(entry.getValue()) : file).resolveSibling(name.substring(0, name.length() - ".json".length()) + ".bin");
+            if (target.getParent() != null) Files.createDirectories(target.getParent());
+            Files.write(target, compiled);
+            before += json.capacity();
+            after += compiled.length;
+            System.out.printf("%s: %d -> %d bytes%n", file, json.capacity(), compiled.length);
+        }
+        System.out.printf("%d files: %d -> %d bytes%n", files.size(), before, after);
+    }
+
+    private static boolean isSource(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".motion3.json") || name.endsWith(".exp3.json");
+    }
+
+    private static int target(String target, String id) {
+        if ("Model".equals(target)) return 0;
+        if ("Parameter".equals(target)) return 1;
+        if ("PartOpacity".equals(target)) return 2;
+        throw new IllegalArgumentException("Curve " + id + " has unknown target " + target);
+    }
+
+    // Missing or negative motion fades mean the SDK's default of one second.
+    private static float fade(Map<String, Object> meta, String key) {
+        float value = (float) Json.number(meta, key, 1.0);
+        return value < 0.0f ? 1.0f : value;
+    }
+
+    private static int blend(String blend) {
+        if ("Multiply".equals(blend)) return 1;
+        if ("Overwrite".equals(blend)) return 2;
+        return 0;
+    }
+
+    private static byte[] assemble(int kind, Strings strings, Out body) {
+        Out out = new Out().u32(MAGIC).u32(VERSION | kind << 16).u32(0).u32(strings.list.size());
+        for (String s : strings.list) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.u32(bytes.length).bytes(bytes, bytes.length).bytes(new byte[3], (4 - bytes.length % 4) % 4);
+        }
+        out.append(body);
+        byte[] result = out.toByteArray();
+        ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN).putInt(8, result.length);
+        return result;
+    }
+
+    private static final class Strings {
+        final List<String> list = new ArrayList<>();
+        final Map<String, Integer> indices = new LinkedHashMap<>();
+
+        int index(String s) {
+            Integer index = indices.get(s);
+            if (index == null) {
+                index = list.size();
+                indices.put(s, index);
+                list.add(s);
+            }
+            return index;
+        }
+    }
+
+    private static final class Out {
+        private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        Out u32(int v) { reserve(4).putInt(v); return this; }
+        Out f32(float v) { reserve(4).putFloat(v); return this; }
+        Out bytes(byte[] b, int n) { reserve(n).put(b, 0, n); return this; }
+        Out append(Out other) { return bytes(other.toByteArray(), other.buffer.position()); }
+
+        byte[] toByteArray() { return Arrays.copyOf(buffer.array(), buffer.position()); }
+
+        private ByteBuffer reserve(int n) {
+            if (buffer.remaining() < n) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n)).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dev.eatgrapes.live2d;
+
+import jdk.jfr.Category;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("dev.eatgrapes.live2d.Draw")
+@Label("Live2D Model Draw")
+@Category("Live2D")
+@StackTrace(false)
+class CubismDrawEvent extends jdk.jfr.Event {
+    // Checked before creating one, as for CubismUpdateEvent.
+    static final EventType TYPE = EventType.getEventType(CubismDrawEvent.class);
+
+    @Label("Model")
+    long model;
+
+    @Label("Software")
+    boolean software;
+}
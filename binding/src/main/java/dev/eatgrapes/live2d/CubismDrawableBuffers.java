@@ -0,0 +1,74 @@
+package dev.eatgrapes.live2d;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+public final class CubismDrawableBuffers {
+    private final CubismDrawableLayout layout;
+    private FloatBuffer positions, uvs, opacities, multiplyColors, screenColors;
+    private ShortBuffer indices;
+    private IntBuffer drawOrders, renderOrders, changes;
+
+    public CubismDrawableBuffers(CubismDrawableLayout layout) {
+        this.layout = layout;
+    }
+
+    public static CubismDrawableBuffers allocate(CubismDrawableLayout layout) {
+        int count = layout.getDrawableCount();
+        return new CubismDrawableBuffers(layout)
+            .positions(floats(layout.getVertexTotal() * 2))
+            .uvs(floats(layout.getVertexTotal() * 2))
+            .indices(direct(layout.getIndexTotal() * 2).asShortBuffer())
+            .opacities(floats(count))
+            .drawOrders(direct(count * 4).asIntBuffer())
+            .renderOrders(direct(count * 4).asIntBuffer())
+            .multiplyColors(floats(count * 4))
+            .screenColors(floats(count * 4))
+            .changes(direct(count * 4).asIntBuffer());
+    }
+
+    public CubismDrawableLayout getLayout() { return layout; }
+
+    // Two floats per vertex, drawable d starting at layout.getVertexOffset(d) * 2
+    public CubismDrawableBuffers positions(FloatBuffer buffer) { positions = check(buffer, layout.getVertexTotal() * 2); return this; }
+    public CubismDrawableBuffers uvs(FloatBuffer buffer) { uvs = check(buffer, layout.getVertexTotal() * 2); return this; }
+    // Drawable d starting at layout.getIndexOffset(d); indices are local to the drawable's vertices
+    public CubismDrawableBuffers indices(ShortBuffer buffer) { indices = check(buffer, layout.getIndexTotal()); return this; }
+    // One value per drawable
+    public CubismDrawableBuffers opacities(FloatBuffer buffer) { opacities = check(buffer, layout.getDrawableCount()); return this; }
+    public CubismDrawableBuffers drawOrders(IntBuffer buffer) { drawOrders = check(buffer, layout.getDrawableCount()); return this; }
+    public CubismDrawableBuffers renderOrders(IntBuffer buffer) { renderOrders = check(buffer, layout.getDrawableCount()); return this; }
+    public CubismDrawableBuffers changes(IntBuffer buffer) { changes = check(buffer, layout.getDrawableCount()); return this; }
+    // RGBA per drawable
+    public CubismDrawableBuffers multiplyColors(FloatBuffer buffer) { multiplyColors = check(buffer, layout.getDrawableCount() * 4); return this; }
+    public CubismDrawableBuffers screenColors(FloatBuffer buffer) { screenColors = check(buffer, layout.getDrawableCount() * 4); return this; }
+
+    public FloatBuffer getPositions() { return positions; }
+    public FloatBuffer getUvs() { return uvs; }
+    public ShortBuffer getIndices() { return indices; }
+    public FloatBuffer getOpacities() { return opacities; }
+    public IntBuffer getDrawOrders() { return drawOrders; }
+    public IntBuffer getRenderOrders() { return renderOrders; }
+    public IntBuffer getChanges() { return changes; }
+    public FloatBuffer getMultiplyColors() { return multiplyColors; }
+    public FloatBuffer getScreenColors() { return screenColors; }
+
+    private static <T extends Buffer> T check(T buffer, int required) {
+        if (buffer == null) return null;
+        if (!buffer.isDirect()) throw new IllegalArgumentException("Buffer must be direct");
+        if (buffer.capacity() < required) throw new IllegalArgumentException("Buffer too small: " + buffer.capacity() + " < " + required);
+        return buffer;
+    }
+
+    private static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static FloatBuffer floats(int count) {
+        return direct(count * 4).asFloatBuffer();
+    }
+}
@@ -0,0 +1,20 @@
+package dev.eatgrapes.live2d;
+
+public final class CubismDrawableFlags {
+    private CubismDrawableFlags() {}
+
+    // Constant flags, see CubismDrawableLayout.getConstantFlags
+    public static final int BLEND_ADDITIVE = 1;
+    public static final int BLEND_MULTIPLICATIVE = 1 << 1;
+    public static final int DOUBLE_SIDED = 1 << 2;
+    public static final int INVERTED_MASK = 1 << 3;
+
+    // Dynamic flags, reported per drawable by CubismUserModel.readDrawables
+    public static final int VISIBLE = 1;
+    public static final int VISIBILITY_CHANGED = 1 << 1;
+    public static final int OPACITY_CHANGED = 1 << 2;
+    public static final int DRAW_ORDER_CHANGED = 1 << 3;
+    public static final int RENDER_ORDER_CHANGED = 1 << 4;
+    public static final int VERTICES_CHANGED = 1 << 5;
+    public static final int BLEND_COLOR_CHANGED = 1 << 6;
+}
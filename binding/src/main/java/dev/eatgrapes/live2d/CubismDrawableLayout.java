@@ -0,0 +1,56 @@
+package dev.eatgrapes.live2d;
+
+import java.util.Arrays;
+
+public final class CubismDrawableLayout {
+    private final String[] ids;
+    private final int[] vertexCounts, vertexOffsets;
+    private final int[] indexCounts, indexOffsets;
+    private final int[] textureIndices, constantFlags;
+    private final int[] maskCounts, maskOffsets, masks;
+    private final int vertexTotal, indexTotal;
+
+    CubismDrawableLayout(String[] ids, int[] vertexCounts, int[] indexCounts, int[] textureIndices, int[] constantFlags, int[] maskCounts, int[] masks) {
+        this.ids = ids;
+        this.vertexCounts = vertexCounts;
+        this.indexCounts = indexCounts;
+        this.textureIndices = textureIndices;
+        this.constantFlags = constantFlags;
+        this.maskCounts = maskCounts;
+        this.masks = masks;
+
+        int count = ids.length;
+        vertexOffsets = new int[count];
+        indexOffsets = new int[count];
+        maskOffsets = new int[count];
+        int v = 0, i = 0, m = 0;
+        for (int d = 0; d < count; d++) {
+            vertexOffsets[d] = v;
+            indexOffsets[d] = i;
+            maskOffsets[d] = m;
+            v += vertexCounts[d];
+            i += indexCounts[d];
+            m += maskCounts[d];
+        }
+        vertexTotal = v;
+        indexTotal = i;
+    }
+
+    public int getDrawableCount() { return ids.length; }
+    public String getId(int drawable) { return ids[drawable]; }
+
+    public int getVertexCount(int drawable) { return vertexCounts[drawable]; }
+    public int getVertexOffset(int drawable) { return vertexOffsets[drawable]; }
+    public int getVertexTotal() { return vertexTotal; }
+
+    public int getIndexCount(int drawable) { return indexCounts[drawable]; }
+    public int getIndexOffset(int drawable) { return indexOffsets[drawable]; }
+    public int getIndexTotal() { return indexTotal; }
+
+    public int getTextureIndex(int drawable) { return textureIndices[drawable]; }
+    public int getConstantFlags(int drawable) { return constantFlags[drawable]; }
+
+    public int[] getMasks(int drawable) {
+        return Arrays.copyOfRange(masks, maskOffsets[drawable], maskOffsets[drawable] + maskCounts[drawable]);
+    }
+}
@@ -0,0 +1,13 @@
+package dev.eatgrapes.live2d;
+
+@FunctionalInterface
+public interface CubismEventSink {
+    int MOTION_FINISHED = 1;
+    int MOTION_EVENT = 2;
+    int EXPRESSION_FINISHED = 3;
+
+    // handle is what startMotion/setExpression returned (-1 if unknown). group is null and index -1
+    // unless the motion was started with them. value is the user-data string for MOTION_EVENT and
+    // the expression name for EXPRESSION_FINISHED.
+    void onEvent(int type, int handle, String group, int index, String value);
+}
@@ -0,0 +1,18 @@
+package dev.eatgrapes.live2d;
+
+// java.lang.foreign backend for the hot CubismUserModel calls. This is the fallback for runtimes
+// without a final FFM API: INSTANCE is null, so everything goes through JNI. src/main/java22 has
+// the same interface with a real INSTANCE, in META-INF/versions/22 of the multi-release jar.
+interface CubismFfm {
+    CubismFfm INSTANCE = null;
+
+    int update(long ptr, float deltaTime);
+    void draw(long ptr, float[] mvp);
+    void setParameter(long ptr, int index, float value);
+    float getParameter(long ptr, int index);
+    void setParameter(long ptr, String id, float value);
+    float getParameter(long ptr, String id);
+    void setDragging(long ptr, float x, float y);
+    boolean isStarted();
+    boolean isInitialized();
+}
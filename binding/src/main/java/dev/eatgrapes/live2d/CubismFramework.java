@@ -1,5 +1,7 @@
 package dev.eatgrapes.live2d;
 
+import java.nio.ByteBuffer;
+
 public class CubismFramework {
     static {
         LibraryLoader.load();
@@ -17,6 +19,12 @@ public class CubismFramework {
         LogLevel(int value) { this.value = value; }
     }
 
+    // How CubismUserModel's per-frame calls reach native code. JNI unless the JVM runs on Java 22+
+    // with -Dlive2d.backend=ffm; if the FFM backend can't be set up, JNI is used instead.
+    public enum Backend { JNI, FFM }
+
+    public static Backend getBackend() { return CubismFfm.INSTANCE != null ? Backend.FFM : Backend.JNI; }
+
     public interface LogCallback {
         void log(String message);
     }
@@ -28,15 +36,70 @@ public class CubismFramework {
     }
 
     public static void startUp(LogCallback callback, LogLevel level) {
+        startTiming();
         logCallback = callback;
+        preloadShaders();
         startUpNative(callback != null, level.value);
     }
 
     private static native void startUpNative(boolean hasCallback, int logLevel);
+
+    // Startup timing, in nanoseconds; -1 until the step has happened. The same numbers are
+    // recorded as a dev.eatgrapes.live2d.Startup JFR event.
+    private static long startUpTime = -1, shaderPreloadNanos = -1;
+    private static volatile long timeToFirstRenderer = -1;
+    private static CubismStartupEvent startupEvent;
+    private static boolean shadersPreloaded;
+
+    // Extracting (or finding the cached copy of) and loading the native library.
+    public static long getLibraryLoadNanos() { return LibraryLoader.getLoadNanos(); }
+
+    public static long getShaderPreloadNanos() { return shaderPreloadNanos; }
+
+    // From the first startUp() to the end of the first createRenderer().
+    public static long getTimeToFirstRendererNanos() { return timeToFirstRenderer; }
+
+    private static synchronized void startTiming() {
+        if (startUpTime >= 0) return;
+        startUpTime = System.nanoTime();
+        startupEvent = new CubismStartupEvent();
+        startupEvent.begin();
+    }
+
+    static void rendererCreated() {
+        if (timeToFirstRenderer >= 0) return;
+        synchronized (CubismFramework.class) {
+            if (timeToFirstRenderer >= 0 || startUpTime < 0) return;
+            timeToFirstRenderer = System.nanoTime() - startUpTime;
+            CubismStartupEvent event = startupEvent;
+            startupEvent = null;
+            event.libraryLoad = LibraryLoader.getLoadNanos();
+            event.libraryCached = LibraryLoader.wasCached();
+            event.shaderPreload = shaderPreloadNanos;
+            event.commit();
+        }
+    }
+
+    // The renderer asks for its shaders through a file callback, which used to cost a JNI upcall
+    // and a resource lookup per shader on the render thread. They are handed over in one piece
+    // instead; anything missing from the bundle still goes through loadResource.
+    private static synchronized void preloadShaders() {
+        if (shadersPreloaded) return;
+        long start = System.nanoTime();
+        ByteBuffer bundle = LibraryLoader.readShaderBundle();
+        if (bundle != null) preloadShadersNative(bundle, bundle.remaining());
+        shadersPreloaded = true;
+        shaderPreloadNanos = System.nanoTime() - start;
+    }
+    private static native void preloadShadersNative(ByteBuffer bundle, int length);
     public static native void initialize();
     public static native void dispose();
-    public static native boolean isStarted();
-    public static native boolean isInitialized();
+
+    public static boolean isStarted() { return CubismFfm.INSTANCE != null ? CubismFfm.INSTANCE.isStarted() : isStartedNative(); }
+    private static native boolean isStartedNative();
+
+    public static boolean isInitialized() { return CubismFfm.INSTANCE != null ? CubismFfm.INSTANCE.isInitialized() : isInitializedNative(); }
+    private static native boolean isInitializedNative();
 
     private static void onLog(String message) {
         if (logCallback != null) {
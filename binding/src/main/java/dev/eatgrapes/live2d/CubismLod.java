@@ -0,0 +1,55 @@
+package dev.eatgrapes.live2d;
+
+// How much work update() spends on a model. Models that are small on screen rarely need every
+// frame simulated; switch with CubismUserModel.setLod() at any time, no reload needed.
+//
+// updateInterval: motions, expressions, pose and physics run every n-th update with the time
+//   that passed since. The mesh is still deformed every update, easing the parameters from the
+//   previous simulated frame to the last one (n - 1 updates of latency).
+// physics: false skips physics entirely; hair and clothes fall back to their motion values.
+// physicsStep: seconds between physics steps, 0 to step on every simulated update. A long
+//   update runs up to 4 steps and carries the rest of its time over; outputs are held in between.
+// tracking: false ignores setDragging() (head and eye tracking).
+// frozen: update() does nothing at all and the last deformed mesh keeps being drawn. Motion time
+//   doesn't advance while frozen.
+public final class CubismLod {
+    public static final CubismLod FULL = new CubismLod(1, true, 0.0f, true, false);
+    public static final CubismLod REDUCED = new CubismLod(2, true, 1.0f / 30.0f, true, false);
+    public static final CubismLod BACKGROUND = new CubismLod(4, true, 1.0f / 15.0f, false, false);
+    public static final CubismLod FROZEN = new CubismLod(1, true, 0.0f, true, true);
+
+    private final int updateInterval;
+    private final boolean physics;
+    private final float physicsStep;
+    private final boolean tracking;
+    private final boolean frozen;
+
+    public CubismLod(int updateInterval, boolean physics, float physicsStep, boolean tracking, boolean frozen) {
+        if (updateInterval < 1) throw new IllegalArgumentException("Update interval must be at least 1");
+        if (!(physicsStep >= 0.0f)) throw new IllegalArgumentException("Physics step must not be negative");
+        this.updateInterval = updateInterval;
+        this.physics = physics;
+        this.physicsStep = physicsStep;
+        this.tracking = tracking;
+        this.frozen = frozen;
+    }
+
+    public int getUpdateInterval() { return updateInterval; }
+    public boolean isPhysics() { return physics; }
+    public float getPhysicsStep() { return physicsStep; }
+    public boolean isTracking() { return tracking; }
+    public boolean isFrozen() { return frozen; }
+
+    public CubismLod withUpdateInterval(int updateInterval) { return new CubismLod(updateInterval, physics, physicsStep, tracking, frozen); }
+    public CubismLod withPhysics(boolean physics) { return new CubismLod(updateInterval, physics, physicsStep, tracking, frozen); }
+    public CubismLod withPhysicsStep(float physicsStep) { return new CubismLod(updateInterval, physics, physicsStep, tracking, frozen); }
+    public CubismLod withTracking(boolean tracking) { return new CubismLod(updateInterval, physics, physicsStep, tracking, frozen); }
+    public CubismLod withFrozen(boolean frozen) { return new CubismLod(updateInterval, physics, physicsStep, tracking, frozen); }
+
+    @Override
+    public String toString() {
+        if (frozen) return "CubismLod[frozen]";
+        return String.format("CubismLod[interval=%d, physics=%s, tracking=%s]", updateInterval,
+                !physics ? "off" : physicsStep > 0 ? String.format("%.1fHz", 1.0f / physicsStep) : "every update", tracking);
+    }
+}
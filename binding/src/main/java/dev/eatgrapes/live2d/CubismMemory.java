@@ -0,0 +1,59 @@
+package dev.eatgrapes.live2d;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class CubismMemory {
+    static {
+        LibraryLoader.load();
+    }
+
+    public static final String OBJECT_NAME = "dev.eatgrapes.live2d:type=CubismMemory";
+
+    private CubismMemory() {}
+
+    // Everything the framework has allocated, including memory not owned by any model, definition or motion.
+    public static CubismMemoryStats getStats() {
+        long[] stats = CubismMemoryStats.buffer();
+        getStatsNative(stats);
+        return new CubismMemoryStats(stats);
+    }
+    private static native void getStatsNative(long[] stats);
+
+    // Models, definitions and motions created while pooling is on serve their small allocations
+    // from private arenas that are freed in one go once the owner is closed.
+    public static native void setPooling(boolean pooling);
+    public static native boolean isPooling();
+
+    public static synchronized void registerMXBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    public static synchronized void unregisterMXBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    private static final class Bean implements CubismMemoryMXBean {
+        @Override public long getLiveBytes() { return getStats().getLiveBytes(); }
+        @Override public long getPeakBytes() { return getStats().getPeakBytes(); }
+        @Override public long getLiveAllocations() { return getStats().getLiveAllocations(); }
+        @Override public long getTotalAllocations() { return getStats().getTotalAllocations(); }
+        @Override public long getReservedBytes() { return getStats().getReservedBytes(); }
+        @Override public boolean isPooling() { return CubismMemory.isPooling(); }
+        @Override public void setPooling(boolean pooling) { CubismMemory.setPooling(pooling); }
+    }
+}
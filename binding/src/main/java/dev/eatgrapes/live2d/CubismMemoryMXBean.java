@@ -0,0 +1,11 @@
+package dev.eatgrapes.live2d;
+
+public interface CubismMemoryMXBean {
+    long getLiveBytes();
+    long getPeakBytes();
+    long getLiveAllocations();
+    long getTotalAllocations();
+    long getReservedBytes();
+    boolean isPooling();
+    void setPooling(boolean pooling);
+}
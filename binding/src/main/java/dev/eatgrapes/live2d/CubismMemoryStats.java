@@ -0,0 +1,32 @@
+package dev.eatgrapes.live2d;
+
+public final class CubismMemoryStats {
+    private final long liveBytes;
+    private final long peakBytes;
+    private final long liveAllocations;
+    private final long totalAllocations;
+    private final long reservedBytes;
+
+    CubismMemoryStats(long[] stats) {
+        this.liveBytes = stats[0];
+        this.peakBytes = stats[1];
+        this.liveAllocations = stats[2];
+        this.totalAllocations = stats[3];
+        this.reservedBytes = stats[4];
+    }
+
+    static long[] buffer() { return new long[5]; }
+
+    public long getLiveBytes() { return liveBytes; }
+    public long getPeakBytes() { return peakBytes; }
+    public long getLiveAllocations() { return liveAllocations; }
+    public long getTotalAllocations() { return totalAllocations; }
+    // Memory held by pooled arenas, used or not. Zero unless pooling was on when the owner was created.
+    public long getReservedBytes() { return reservedBytes; }
+
+    @Override
+    public String toString() {
+        return "CubismMemoryStats[live=" + liveBytes + ", peak=" + peakBytes + ", allocations=" + liveAllocations
+            + "/" + totalAllocations + ", reserved=" + reservedBytes + "]";
+    }
+}
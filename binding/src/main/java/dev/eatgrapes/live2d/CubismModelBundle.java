@@ -0,0 +1,105 @@
+package dev.eatgrapes.live2d;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Everything a ModelLoader produced for one model3.json. The model is loaded but has no renderer
+// yet; call finish() on the GL thread to create it and upload the textures.
+public class CubismModelBundle implements AutoCloseable {
+    @FunctionalInterface
+    public interface TextureUploader {
+        // data holds the encoded file (usually PNG). Returns the GL texture id to register.
+        int upload(int index, String path, ByteBuffer data);
+    }
+
+    private final CubismModelDefinition definition;
+    private final CubismUserModel model;
+    private final Map<String, List<CubismMotion>> motions;
+    private final List<String> expressionNames;
+    private final List<String> texturePaths;
+    private ByteBuffer[] textureData;
+    private CubismTextureImage[] textureImages;
+    private int[] textureIds;
+
+    CubismModelBundle(CubismModelDefinition definition, CubismUserModel model, Map<String, List<CubismMotion>> motions,
+                      List<String> expressionNames, List<String> texturePaths, ByteBuffer[] textureData,
+                      CubismTextureImage[] textureImages) {
+        this.definition = definition;
+        this.model = model;
+        this.motions = motions;
+        this.expressionNames = expressionNames;
+        this.texturePaths = texturePaths;
+        this.textureData = textureData;
+        this.textureImages = textureImages;
+    }
+
+    public CubismModelDefinition getDefinition() { return definition; }
+    public CubismUserModel getModel() { return model; }
+
+    // Motion groups in model3.json order. Motions are parsed with loop = false.
+    public Map<String, List<CubismMotion>> getMotions() { return motions; }
+
+    public List<CubismMotion> getMotions(String group) {
+        List<CubismMotion> list = motions.get(group);
+        return list != null ? list : Collections.emptyList();
+    }
+
+    public List<String> getExpressionNames() { return expressionNames; }
+
+    public int getTextureCount() { return texturePaths.size(); }
+    public String getTexturePath(int index) { return texturePaths.get(index); }
+
+    public ByteBuffer getTextureData(int index) {
+        if (textureData == null) throw new IllegalStateException("Texture data is dropped by finish()");
+        return textureData[index].duplicate();
+    }
+
+    // Only available when the ModelLoader was given a CubismTextureLoader.
+    public CubismTextureImage getTextureImage(int index) {
+        if (textureImages == null) throw new IllegalStateException(textureData == null ? "Texture data is dropped by finish()" : "Textures were not decoded");
+        return textureImages[index];
+    }
+
+    public boolean isFinished() { return textureData == null; }
+
+    // Must be called on the render thread! Uploads the decoded textures; needs a CubismTextureLoader on the ModelLoader.
+    public void finish() {
+        if (textureData == null) throw new IllegalStateException("Bundle is already finished");
+        if (textureImages == null) throw new IllegalStateException("Textures were not decoded");
+        CubismTextureImage[] images = textureImages;
+        finish((index, path, data) -> images[index].upload());
+    }
+
+    // Must be called on the render thread! The texture bytes are dropped afterwards.
+    public void finish(TextureUploader uploader) {
+        if (textureData == null) throw new IllegalStateException("Bundle is already finished");
+        model.createRenderer();
+        int[] ids = new int[textureData.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = uploader.upload(i, texturePaths.get(i), textureData[i].duplicate());
+            model.registerTexture(i, ids[i]);
+        }
+        textureIds = ids;
+        textureData = null;
+        textureImages = null;
+    }
+
+    public int[] getTextureIds() {
+        if (textureIds == null) throw new IllegalStateException("Bundle is not finished");
+        return textureIds.clone();
+    }
+
+    // Closes the model, its definition and the motions. GL textures belong to the uploader.
+    @Override
+    public void close() {
+        for (List<CubismMotion> group : motions.values()) {
+            for (CubismMotion motion : group) motion.close();
+        }
+        model.close();
+        definition.close();
+        textureData = null;
+        textureImages = null;
+    }
+}
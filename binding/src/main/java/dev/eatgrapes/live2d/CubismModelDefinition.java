@@ -0,0 +1,110 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public class CubismModelDefinition extends Native {
+    public CubismModelDefinition(byte[] mocBuffer) {
+        this(mocBuffer, false);
+    }
+
+    public CubismModelDefinition(byte[] mocBuffer, boolean checkConsistency) {
+        super(requireMoc(createNative(mocBuffer, checkConsistency)), CubismModelDefinition::releaseNative);
+    }
+
+    public CubismModelDefinition(ByteBuffer mocBuffer) {
+        this(mocBuffer, false);
+    }
+
+    // checkConsistency validates the moc3 structure before reviving it; worth it for untrusted files.
+    public CubismModelDefinition(ByteBuffer mocBuffer, boolean checkConsistency) {
+        super(requireMoc(createDirectNative(Buffers.requireDirect(mocBuffer), mocBuffer.position(), mocBuffer.remaining(), checkConsistency)), CubismModelDefinition::releaseNative);
+    }
+
+    public CubismModelDefinition(Path mocPath) throws IOException {
+        this(Buffers.map(mocPath));
+    }
+
+    private static long requireMoc(long ptr) {
+        if (ptr == 0) throw new IllegalArgumentException("Invalid or inconsistent moc3 data");
+        return ptr;
+    }
+
+    private static native long createNative(byte[] buffer, boolean checkConsistency);
+    private static native long createDirectNative(ByteBuffer buffer, int offset, int length, boolean checkConsistency);
+
+    public void loadPhysics(byte[] buffer) {
+        try {
+            loadPhysicsNative(_ptr, buffer);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPhysicsNative(long ptr, byte[] buffer);
+
+    public void loadPhysics(ByteBuffer buffer) {
+        try {
+            loadPhysicsDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPhysicsDirectNative(long ptr, ByteBuffer buffer, int offset, int length);
+
+    public void loadPose(byte[] buffer) {
+        try {
+            loadPoseNative(_ptr, buffer);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPoseNative(long ptr, byte[] buffer);
+
+    public void loadPose(ByteBuffer buffer) {
+        try {
+            loadPoseDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPoseDirectNative(long ptr, ByteBuffer buffer, int offset, int length);
+
+    public void loadExpression(byte[] buffer, String name) {
+        try {
+            loadExpressionNative(_ptr, buffer, name);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadExpressionNative(long ptr, byte[] buffer, String name);
+
+    public void loadExpression(ByteBuffer buffer, String name) {
+        try {
+            loadExpressionDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining(), name);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadExpressionDirectNative(long ptr, ByteBuffer buffer, int offset, int length, String name);
+
+    public CubismMemoryStats getMemoryStats() {
+        try {
+            long[] stats = CubismMemoryStats.buffer();
+            getMemoryStatsNative(_ptr, stats);
+            return new CubismMemoryStats(stats);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void getMemoryStatsNative(long ptr, long[] stats);
+
+    public CubismUserModel createModel() {
+        return new CubismUserModel(this);
+    }
+
+    @Override
+    public void close() { release(); }
+    private static native void releaseNative(long ptr);
+}
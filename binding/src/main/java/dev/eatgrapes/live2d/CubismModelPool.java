@@ -0,0 +1,110 @@
+package dev.eatgrapes.live2d;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// Keeps released models warm so switching back to one only costs a reset(). Idle models are
+// evicted oldest first once there are more than maxIdle of them or they hold more than
+// maxIdleBytes of native memory.
+public class CubismModelPool<K> implements AutoCloseable {
+    private final Function<? super K, ? extends CubismUserModel> factory;
+    private final int maxIdle;
+    private final long maxIdleBytes;
+    private final Map<CubismUserModel, K> inUse = new IdentityHashMap<>();
+    private final Map<K, ArrayDeque<CubismUserModel>> idleByKey = new HashMap<>();
+    // Every idle model in release order.
+    private final LinkedHashMap<CubismUserModel, Idle<K>> idle = new LinkedHashMap<>();
+    private long idleBytes;
+    private BiConsumer<? super K, ? super CubismUserModel> evictionListener;
+
+    public CubismModelPool(Function<? super K, ? extends CubismUserModel> factory, int maxIdle, long maxIdleBytes) {
+        if (maxIdle < 0 || maxIdleBytes < 0) throw new IllegalArgumentException("Limits must not be negative");
+        this.factory = Objects.requireNonNull(factory);
+        this.maxIdle = maxIdle;
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    public CubismModelPool(Function<? super K, ? extends CubismUserModel> factory, int maxIdle) {
+        this(factory, maxIdle, Long.MAX_VALUE);
+    }
+
+    // Called right before an idle model is closed, e.g. to delete the textures registered on it.
+    public synchronized void setEvictionListener(BiConsumer<? super K, ? super CubismUserModel> listener) {
+        this.evictionListener = listener;
+    }
+
+    public synchronized CubismUserModel acquire(K key) {
+        ArrayDeque<CubismUserModel> models = idleByKey.get(key);
+        CubismUserModel model = models != null ? models.pollLast() : null;
+        if (model != null) {
+            if (models.isEmpty()) idleByKey.remove(key);
+            idleBytes -= idle.remove(model).bytes;
+        } else {
+            model = Objects.requireNonNull(factory.apply(key), "Factory returned null");
+        }
+        inUse.put(model, key);
+        return model;
+    }
+
+    public synchronized void release(CubismUserModel model) {
+        if (!inUse.containsKey(model)) throw new IllegalArgumentException("Model does not belong to this pool");
+        K key = inUse.remove(model);
+        model.reset();
+        if (model.getLod() != CubismLod.FULL) model.setLod(CubismLod.FULL);
+        long bytes = model.getMemoryStats().getLiveBytes();
+        idleByKey.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(model);
+        idle.put(model, new Idle<>(key, bytes));
+        idleBytes += bytes;
+        trim();
+    }
+
+    public synchronized int getIdleCount() { return idle.size(); }
+    public synchronized long getIdleBytes() { return idleBytes; }
+    public synchronized int getInUseCount() { return inUse.size(); }
+
+    // Closes every idle model. Models that are still acquired stay open and belong to the caller.
+    public synchronized void clear() {
+        while (!idle.isEmpty()) evictOldest();
+    }
+
+    @Override
+    public void close() { clear(); }
+
+    private void trim() {
+        while (!idle.isEmpty() && (idle.size() > maxIdle || idleBytes > maxIdleBytes)) evictOldest();
+    }
+
+    private void evictOldest() {
+        Iterator<Map.Entry<CubismUserModel, Idle<K>>> it = idle.entrySet().iterator();
+        Map.Entry<CubismUserModel, Idle<K>> oldest = it.next();
+        it.remove();
+        CubismUserModel model = oldest.getKey();
+        K key = oldest.getValue().key;
+        idleBytes -= oldest.getValue().bytes;
+
+        ArrayDeque<CubismUserModel> models = idleByKey.get(key);
+        models.remove(model);
+        if (models.isEmpty()) idleByKey.remove(key);
+
+        if (evictionListener != null) evictionListener.accept(key, model);
+        model.close();
+    }
+
+    // The native bytes are sampled when the model comes back, so the budget doesn't call into native code.
+    private static final class Idle<K> {
+        final K key;
+        final long bytes;
+
+        Idle(K key, long bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+}
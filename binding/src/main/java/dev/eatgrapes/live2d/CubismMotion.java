@@ -0,0 +1,65 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public class CubismMotion extends Native {
+    public CubismMotion(byte[] buffer, boolean loop) {
+        super(createNative(buffer, loop), CubismMotion::deleteNative);
+    }
+
+    public CubismMotion(ByteBuffer buffer, boolean loop) {
+        super(createDirectNative(Buffers.requireDirect(buffer), buffer.position(), buffer.remaining(), loop), CubismMotion::deleteNative);
+    }
+
+    public CubismMotion(Path path, boolean loop) throws IOException {
+        this(Buffers.map(path), loop);
+    }
+
+    private static native long createNative(byte[] buffer, boolean loop);
+    private static native long createDirectNative(ByteBuffer buffer, int offset, int length, boolean loop);
+
+    public float getDuration() {
+        try {
+            return getDurationNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native float getDurationNative(long ptr);
+
+    public float getLoopDuration() {
+        try {
+            return getLoopDurationNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native float getLoopDurationNative(long ptr);
+
+    public boolean isLoop() {
+        try {
+            return isLoopNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native boolean isLoopNative(long ptr);
+
+    public CubismMemoryStats getMemoryStats() {
+        try {
+            long[] stats = CubismMemoryStats.buffer();
+            getMemoryStatsNative(_ptr, stats);
+            return new CubismMemoryStats(stats);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void getMemoryStatsNative(long ptr, long[] stats);
+
+    @Override
+    public void close() { release(); }
+    private static native void deleteNative(long ptr);
+}
@@ -0,0 +1,18 @@
+package dev.eatgrapes.live2d;
+
+public final class CubismMotionCache {
+    static {
+        LibraryLoader.load();
+    }
+
+    private CubismMotionCache() {}
+
+    public static native void setCapacity(int capacity);
+    public static native int getCapacity();
+    public static native int getSize();
+    public static native long getHits();
+    public static native long getMisses();
+    public static native long getEvictions();
+    public static native void clear();
+    public static native void resetStatistics();
+}
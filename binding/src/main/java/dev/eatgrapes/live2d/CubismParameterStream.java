@@ -0,0 +1,136 @@
+package dev.eatgrapes.live2d;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Lock-free single-producer/single-consumer queue of parameter writes, for input that arrives on
+// its own thread at a high rate (face or body tracking). One thread writes with set/add/multiply
+// without allocating or blocking. The model drains the queue at the start of every update() and
+// applies everything that arrived since the last frame in one step, so a frame never sees half of
+// a tracking sample.
+//
+// Writes are coalesced per parameter before they're applied: several sets of the same parameter
+// cost the same as one, and the last one wins. When the queue is full, new writes are dropped and
+// counted instead of blocking the producer; size it for a few frames of input.
+//
+// Only one thread may write at a time. Attach with CubismUserModel.setParameterStream().
+public final class CubismParameterStream {
+    public enum Blend { SET, ADD, MULTIPLY }
+
+    private static final VarHandle HEAD, TAIL, DROPPED;
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(CubismParameterStream.class, "head", long.class);
+            TAIL = lookup.findVarHandle(CubismParameterStream.class, "tail", long.class);
+            DROPPED = lookup.findVarHandle(CubismParameterStream.class, "dropped", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int FIELDS = 4;
+
+    // Records of parameter index, blend, value bits and weight bits.
+    private final int[] records;
+    private final int mask;
+    // head is only written by the consumer, tail and dropped only by the producer.
+    private long head, tail, dropped;
+    private long coalesced;
+
+    // Consumer-side scratch: per touched parameter, the writes folded into value * scale + offset.
+    private float[] scales = new float[0], offsets = new float[0];
+    private int[] touched = new int[0], slots = new int[0];
+
+    public CubismParameterStream(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) throw new IllegalArgumentException("Capacity must be between 1 and 2^24");
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        records = new int[size * FIELDS];
+        mask = size - 1;
+    }
+
+    public int getCapacity() { return mask + 1; }
+
+    public boolean set(int parameter, float value) { return write(parameter, Blend.SET, value, 1.0f); }
+    public boolean set(int parameter, float value, float weight) { return write(parameter, Blend.SET, value, weight); }
+    public boolean add(int parameter, float value) { return write(parameter, Blend.ADD, value, 1.0f); }
+    public boolean add(int parameter, float value, float weight) { return write(parameter, Blend.ADD, value, weight); }
+    public boolean multiply(int parameter, float value) { return write(parameter, Blend.MULTIPLY, value, 1.0f); }
+    public boolean multiply(int parameter, float value, float weight) { return write(parameter, Blend.MULTIPLY, value, weight); }
+
+    // Producer thread. Blends work like the SDK's: SET moves the value towards the target by weight,
+    // ADD adds value * weight, MULTIPLY scales by 1 + (value - 1) * weight. Returns false if the
+    // queue was full and the write was dropped.
+    public boolean write(int parameter, Blend blend, float value, float weight) {
+        long t = (long) TAIL.getOpaque(this);
+        if (t - (long) HEAD.getAcquire(this) > mask) {
+            DROPPED.setOpaque(this, (long) DROPPED.getOpaque(this) + 1);
+            return false;
+        }
+        int i = (int) (t & mask) * FIELDS;
+        records[i] = parameter;
+        records[i + 1] = blend.ordinal();
+        records[i + 2] = Float.floatToRawIntBits(value);
+        records[i + 3] = Float.floatToRawIntBits(weight);
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    // Writes currently waiting for the next update().
+    public int getPendingCount() { return (int) ((long) TAIL.getAcquire(this) - (long) HEAD.getAcquire(this)); }
+
+    // Writes dropped because the queue was full.
+    public long getDroppedCount() { return (long) DROPPED.getOpaque(this); }
+
+    // Writes that were folded into another write of the same parameter. Update thread only.
+    public long getCoalescedCount() { return coalesced; }
+
+    // Consumer side, called by the model at the start of update(). Folds all pending writes into
+    // one affine step per parameter and returns how many parameters were touched; the results are
+    // in touched(), scales() and offsets().
+    int drain(int parameterCount) {
+        long h = (long) HEAD.getOpaque(this);
+        long t = (long) TAIL.getAcquire(this);
+        if (h == t) return 0;
+        if (slots.length != parameterCount) {
+            slots = new int[parameterCount];
+            touched = new int[parameterCount];
+            scales = new float[parameterCount];
+            offsets = new float[parameterCount];
+        }
+
+        int count = 0;
+        for (long n = h; n < t; n++) {
+            int i = (int) (n & mask) * FIELDS;
+            int parameter = records[i];
+            if (parameter < 0 || parameter >= parameterCount) continue;
+            float value = Float.intBitsToFloat(records[i + 2]);
+            float weight = Float.intBitsToFloat(records[i + 3]);
+            // Each write is x -> a * x + b, composed onto what the parameter already has this frame.
+            float a, b;
+            switch (records[i + 1]) {
+                case 0: a = 1.0f - weight; b = value * weight; break;
+                case 1: a = 1.0f; b = value * weight; break;
+                default: a = 1.0f + (value - 1.0f) * weight; b = 0.0f; break;
+            }
+            int slot = slots[parameter] - 1;
+            if (slot < 0 || slot >= count || touched[slot] != parameter) {
+                slot = count++;
+                slots[parameter] = slot + 1;
+                touched[slot] = parameter;
+                scales[slot] = a;
+                offsets[slot] = b;
+            } else {
+                scales[slot] *= a;
+                offsets[slot] = offsets[slot] * a + b;
+                coalesced++;
+            }
+        }
+        HEAD.setRelease(this, t);
+        return count;
+    }
+
+    int[] touched() { return touched; }
+    float[] scales() { return scales; }
+    float[] offsets() { return offsets; }
+}
@@ -0,0 +1,20 @@
+package dev.eatgrapes.live2d;
+
+public final class CubismProfiler {
+    static {
+        LibraryLoader.load();
+    }
+
+    private static volatile boolean enabled;
+
+    private CubismProfiler() {}
+
+    // Off by default. While off, update and draw never read the clock.
+    public static void setEnabled(boolean enabled) {
+        setEnabledNative(enabled);
+        CubismProfiler.enabled = enabled;
+    }
+    private static native void setEnabledNative(boolean enabled);
+
+    public static boolean isEnabled() { return enabled; }
+}
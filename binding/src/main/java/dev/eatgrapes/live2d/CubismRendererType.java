@@ -0,0 +1,6 @@
+package dev.eatgrapes.live2d;
+
+public enum CubismRendererType {
+    OPENGL,
+    SOFTWARE
+}
@@ -0,0 +1,12 @@
+package dev.eatgrapes.live2d;
+
+// Order matches the native stage table.
+public enum CubismStage {
+    MOTION,
+    EXPRESSION,
+    POSE,
+    DRAG,
+    PHYSICS,
+    MODEL_UPDATE,
+    DRAW
+}
@@ -0,0 +1,58 @@
+package dev.eatgrapes.live2d;
+
+import java.util.Arrays;
+
+public final class CubismStageStats {
+    static final int BUCKETS = 32;
+    static final int FIELDS = 4 + BUCKETS;
+
+    private final long[] data;
+
+    CubismStageStats(long[] data) {
+        this.data = data;
+    }
+
+    static long[] buffer() { return new long[CubismStage.values().length * FIELDS]; }
+
+    public long getCount(CubismStage stage) { return data[stage.ordinal() * FIELDS]; }
+    public long getTotalNanos(CubismStage stage) { return data[stage.ordinal() * FIELDS + 1]; }
+    public long getMaxNanos(CubismStage stage) { return data[stage.ordinal() * FIELDS + 2]; }
+    public long getLastNanos(CubismStage stage) { return data[stage.ordinal() * FIELDS + 3]; }
+
+    public double getMeanNanos(CubismStage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : (double) getTotalNanos(stage) / count;
+    }
+
+    // Bucket i counts durations below 2^i ns (and at least 2^(i-1) ns); the last bucket is open-ended.
+    public long[] getHistogram(CubismStage stage) {
+        int from = stage.ordinal() * FIELDS + 4;
+        return Arrays.copyOfRange(data, from, from + BUCKETS);
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), so at most 2x the real value.
+    public long getPercentileNanos(CubismStage stage, double percentile) {
+        long count = getCount(stage);
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100.0);
+        int from = stage.ordinal() * FIELDS + 4;
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += data[from + b];
+            if (seen >= Math.max(rank, 1)) return b == BUCKETS - 1 ? getMaxNanos(stage) : 1L << b;
+        }
+        return getMaxNanos(stage);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CubismStageStats[");
+        for (CubismStage stage : CubismStage.values()) {
+            if (getCount(stage) == 0) continue;
+            if (sb.charAt(sb.length() - 1) != '[') sb.append(", ");
+            sb.append(stage).append(": mean=").append((long) getMeanNanos(stage)).append("ns p99<=")
+                .append(getPercentileNanos(stage, 99)).append("ns max=").append(getMaxNanos(stage)).append("ns");
+        }
+        return sb.append(']').toString();
+    }
+}
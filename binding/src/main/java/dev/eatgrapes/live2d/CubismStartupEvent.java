@@ -0,0 +1,23 @@
+package dev.eatgrapes.live2d;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("dev.eatgrapes.live2d.Startup")
+@Label("Live2D Startup")
+@Category("Live2D")
+@Description("From CubismFramework.startUp() to the end of the first createRenderer(). Emitted once.")
+@StackTrace(false)
+class CubismStartupEvent extends jdk.jfr.Event {
+    @Label("Native Library Load") @Timespan long libraryLoad;
+
+    @Label("Library Cached")
+    @Description("The native library was already extracted by an earlier run.")
+    boolean libraryCached;
+
+    @Label("Shader Preload") @Timespan long shaderPreload;
+}
@@ -0,0 +1,121 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Decoded RGBA on disk, keyed by a hash of the encoded file. Hits are memory-mapped, so a repeat
+// load costs a page-in instead of a PNG decode. Entries are written to a temp file and moved into
+// place, so concurrent processes sharing a directory never see half-written files.
+public class CubismTextureCache {
+    private static final int MAGIC = 0x4C324454; // "L2DT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final String SUFFIX = ".rgba";
+
+    private final Path directory;
+
+    public CubismTextureCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() { return directory; }
+
+    // Returns null on a miss. Unreadable or stale entries are deleted and count as a miss.
+    public CubismTextureImage get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return invalid(file);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            return invalid(file);
+        }
+
+        int width = mapped.getInt(4), height = mapped.getInt(8), count = mapped.getInt(12);
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(16) != VERSION || width <= 0 || height <= 0 || count <= 0 || count > 32) {
+            return invalid(file);
+        }
+        ByteBuffer[] levels = new ByteBuffer[count];
+        long offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            long size = 4L * Math.max(1, width >> i) * Math.max(1, height >> i);
+            if (offset + size > mapped.capacity()) return invalid(file);
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) offset).limit((int) (offset + size));
+            levels[i] = view.slice();
+            offset += size;
+        }
+        return new CubismTextureImage(width, height, levels);
+    }
+
+    public void put(String key, CubismTextureImage image) throws IOException {
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getLevelCount()).putInt(VERSION).flip();
+                writeFully(channel, header);
+                for (int i = 0; i < image.getLevelCount(); i++) writeFully(channel, image.getLevel(i));
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Entries that are mapped by a live CubismTextureImage can't be deleted on Windows; they are skipped.
+    public void clear() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // SHA-256 of the encoded bytes, plus a marker for the mip chain so both variants can be cached.
+    static String key(ByteBuffer encoded, boolean mipmaps) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(encoded.duplicate());
+        StringBuilder sb = new StringBuilder(66);
+        for (byte b : digest.digest()) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return mipmaps ? sb.append("-m").toString() : sb.toString();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static CubismTextureImage invalid(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+}
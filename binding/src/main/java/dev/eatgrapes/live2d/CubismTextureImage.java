@@ -0,0 +1,95 @@
+package dev.eatgrapes.live2d;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// A decoded texture: straight-alpha RGBA8 in direct buffers, one per mip level. Level 0 is the
+// full image; each further level halves both sides down to 1x1.
+public class CubismTextureImage {
+    private final int width;
+    private final int height;
+    private final ByteBuffer[] levels;
+
+    CubismTextureImage(int width, int height, ByteBuffer[] levels) {
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+    }
+
+    public static CubismTextureImage decodePng(ByteBuffer png) {
+        return PngDecoder.decode(png);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getLevelCount() { return levels.length; }
+    public int getLevelWidth(int level) { return Math.max(1, width >> level); }
+    public int getLevelHeight(int level) { return Math.max(1, height >> level); }
+
+    public ByteBuffer getLevel(int level) { return levels[level].duplicate(); }
+
+    public long getByteSize() {
+        long size = 0;
+        for (ByteBuffer level : levels) size += level.capacity();
+        return size;
+    }
+
+    // Box-filters the full chain on the CPU. Colors are weighted by alpha so transparent texels
+    // around the edge of a part don't bleed dark fringes into smaller levels.
+    public CubismTextureImage withMipmaps() {
+        if (levels.length > 1 || (width == 1 && height == 1)) return this;
+        List<ByteBuffer> chain = new ArrayList<>();
+        chain.add(levels[0]);
+        ByteBuffer src = levels[0];
+        int w = width, h = height;
+        while (w > 1 || h > 1) {
+            int nw = Math.max(1, w / 2), nh = Math.max(1, h / 2);
+            src = downsample(src, w, h, nw, nh);
+            chain.add(src);
+            w = nw;
+            h = nh;
+        }
+        return new CubismTextureImage(width, height, chain.toArray(new ByteBuffer[0]));
+    }
+
+    private static ByteBuffer downsample(ByteBuffer src, int w, int h, int nw, int nh) {
+        ByteBuffer dst = ByteBuffer.allocateDirect(nw * nh * 4);
+        ByteBuffer in = src.duplicate();
+        byte[] row0 = new byte[w * 4], row1 = new byte[w * 4], out = new byte[nw * 4];
+        for (int y = 0; y < nh; y++) {
+            in.position(Math.min(y * 2, h - 1) * w * 4);
+            in.get(row0);
+            in.position(Math.min(y * 2 + 1, h - 1) * w * 4);
+            in.get(row1);
+            for (int x = 0; x < nw; x++) {
+                int x0 = Math.min(x * 2, w - 1) * 4, x1 = Math.min(x * 2 + 1, w - 1) * 4;
+                int a00 = row0[x0 + 3] & 0xFF, a01 = row0[x1 + 3] & 0xFF;
+                int a10 = row1[x0 + 3] & 0xFF, a11 = row1[x1 + 3] & 0xFF;
+                int alpha = a00 + a01 + a10 + a11;
+                for (int c = 0; c < 3; c++) {
+                    int v00 = row0[x0 + c] & 0xFF, v01 = row0[x1 + c] & 0xFF;
+                    int v10 = row1[x0 + c] & 0xFF, v11 = row1[x1 + c] & 0xFF;
+                    int v = alpha == 0
+                            ? (v00 + v01 + v10 + v11 + 2) >> 2
+                            : (v00 * a00 + v01 * a01 + v10 * a10 + v11 * a11 + alpha / 2) / alpha;
+                    out[x * 4 + c] = (byte) v;
+                }
+                out[x * 4 + 3] = (byte) ((alpha + 2) >> 2);
+            }
+            dst.put(out);
+        }
+        dst.flip();
+        return dst;
+    }
+
+    // Must be called on the render thread! Creates a GL texture holding every level and returns its id.
+    public int upload() {
+        return uploadNative(levels, width, height);
+    }
+    private static native int uploadNative(ByteBuffer[] levels, int width, int height);
+
+    // Must be called on the render thread!
+    public static void deleteTexture(int textureId) { deleteTextureNative(textureId); }
+    private static native void deleteTextureNative(int textureId);
+}
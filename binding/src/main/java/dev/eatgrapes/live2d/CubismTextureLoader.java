@@ -0,0 +1,61 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Decodes PNG textures off the GL thread, optionally builds mipmaps and caches the result on disk.
+// The GL thread only has to call CubismUserModel.registerTexture(index, image).
+public class CubismTextureLoader {
+    private final Executor executor;
+    private final CubismTextureCache cache;
+    private final boolean mipmaps;
+
+    public CubismTextureLoader() {
+        this(ModelLoader.defaultExecutor(), null, false);
+    }
+
+    // cache may be null to always decode.
+    public CubismTextureLoader(Executor executor, CubismTextureCache cache, boolean mipmaps) {
+        if (executor == null) throw new IllegalArgumentException("Executor must not be null");
+        this.executor = executor;
+        this.cache = cache;
+        this.mipmaps = mipmaps;
+    }
+
+    public CompletableFuture<CubismTextureImage> load(ByteBuffer png) {
+        return CompletableFuture.supplyAsync(() -> decode(png), executor);
+    }
+
+    public CompletableFuture<CubismTextureImage> load(Path png) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return decode(Buffers.map(png));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + png, e);
+            }
+        }, executor);
+    }
+
+    // Runs on the calling thread.
+    public CubismTextureImage decode(ByteBuffer png) {
+        String key = cache != null ? CubismTextureCache.key(png, mipmaps) : null;
+        if (key != null) {
+            CubismTextureImage cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+        CubismTextureImage image = PngDecoder.decode(png);
+        if (mipmaps) image = image.withMipmaps();
+        if (key != null) {
+            try {
+                cache.put(key, image);
+            } catch (IOException ignored) {
+                // A read-only or full cache directory only costs the next load a decode.
+            }
+        }
+        return image;
+    }
+}
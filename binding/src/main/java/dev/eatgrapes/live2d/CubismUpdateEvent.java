@@ -0,0 +1,33 @@
+package dev.eatgrapes.live2d;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("dev.eatgrapes.live2d.Update")
+@Label("Live2D Model Update")
+@Category("Live2D")
+@Description("One model update. Stage fields are filled only while CubismProfiler is enabled.")
+@StackTrace(false)
+class CubismUpdateEvent extends jdk.jfr.Event {
+    // Checked before creating one, so updates don't allocate while nothing is recording.
+    static final EventType TYPE = EventType.getEventType(CubismUpdateEvent.class);
+
+    @Label("Model")
+    long model;
+
+    @Label("Grouped")
+    @Description("Updated in parallel through CubismUpdateGroup; the duration is then that of the whole group update.")
+    boolean grouped;
+
+    @Label("Motion") @Timespan long motion;
+    @Label("Expression") @Timespan long expression;
+    @Label("Pose") @Timespan long pose;
+    @Label("Drag") @Timespan long drag;
+    @Label("Physics") @Timespan long physics;
+    @Label("Model Update") @Timespan long modelUpdate;
+}
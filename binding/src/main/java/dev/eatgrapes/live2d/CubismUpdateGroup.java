@@ -0,0 +1,102 @@
+package dev.eatgrapes.live2d;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+public class CubismUpdateGroup {
+    static {
+        LibraryLoader.load();
+    }
+
+    // Models update in parallel, so the same model twice would be updated by two threads at once.
+    private final List<CubismUserModel> models = new ArrayList<>();
+    private final Set<CubismUserModel> members = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long[] ptrs = new long[0];
+    private int[] pendingEvents = new int[0];
+    private boolean dirty;
+
+    public CubismUpdateGroup() {}
+
+    public void add(CubismUserModel model) {
+        if (!members.add(model)) throw new IllegalArgumentException("Model is already in this group");
+        models.add(model);
+        dirty = true;
+    }
+
+    public boolean remove(CubismUserModel model) {
+        boolean removed = members.remove(model);
+        if (removed) models.remove(model);
+        dirty |= removed;
+        return removed;
+    }
+
+    public void clear() {
+        models.clear();
+        members.clear();
+        dirty = true;
+    }
+
+    public int size() { return models.size(); }
+
+    public void update(float deltaTime) {
+        if (dirty) {
+            ptrs = new long[models.size()];
+            for (int i = 0; i < ptrs.length; i++) ptrs[i] = models.get(i).getPtr();
+            pendingEvents = new int[ptrs.length];
+            dirty = false;
+        }
+        for (CubismUserModel model : models) model.beforeUpdate();
+        CubismUpdateEvent[] events = beginEvents(ptrs.length);
+        updateAllNative(ptrs, ptrs.length, deltaTime, pendingEvents);
+        endEvents(events);
+        for (int i = 0; i < ptrs.length; i++) afterUpdate(models.get(i), pendingEvents[i], events != null ? events[i] : null);
+    }
+
+    static void updateAll(CubismUserModel[] models, float deltaTime) {
+        long[] ptrs = new long[models.length];
+        int[] pending = new int[models.length];
+        Set<CubismUserModel> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CubismUserModel model : models) {
+            if (!seen.add(model)) throw new IllegalArgumentException("Model appears more than once");
+        }
+        for (int i = 0; i < ptrs.length; i++) {
+            ptrs[i] = models[i].getPtr();
+            models[i].beforeUpdate();
+        }
+        CubismUpdateEvent[] events = beginEvents(ptrs.length);
+        updateAllNative(ptrs, ptrs.length, deltaTime, pending);
+        endEvents(events);
+        for (int i = 0; i < models.length; i++) afterUpdate(models[i], pending[i], events != null ? events[i] : null);
+    }
+
+    // One event per model, each spanning the whole parallel update: the worker threads don't
+    // report when each model started or finished. Null while nothing is recording.
+    private static CubismUpdateEvent[] beginEvents(int count) {
+        if (!CubismUpdateEvent.TYPE.isEnabled()) return null;
+        CubismUpdateEvent[] events = new CubismUpdateEvent[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = new CubismUpdateEvent();
+            events[i].grouped = true;
+            events[i].begin();
+        }
+        return events;
+    }
+
+    private static void endEvents(CubismUpdateEvent[] events) {
+        if (events == null) return;
+        for (CubismUpdateEvent event : events) event.end();
+    }
+
+    private static void afterUpdate(CubismUserModel model, int pendingEvents, CubismUpdateEvent event) {
+        if (event != null) model.commitUpdateEvent(event);
+        model.afterUpdate(pendingEvents);
+    }
+
+    private static native void updateAllNative(long[] ptrs, int count, float deltaTime, int[] pendingEvents);
+
+    public static native void setThreadCount(int count);
+    public static native int getThreadCount();
+}
@@ -1,82 +1,967 @@
 package dev.eatgrapes.live2d;
 
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 
 public class CubismUserModel extends Native {
-    private Consumer<String> motionFinishedCallback;
+    // EVENT_CAPACITY matches the native queue.
+    private static final int EVENT_BATCH = 64, EVENT_CAPACITY = 256, EVENT_FIELDS = 5;
+    private static volatile String[] internedStrings = new String[0];
+    // Non-null when the FFM backend is active; a constant, so the JIT drops the unused branch.
+    private static final CubismFfm FFM = CubismFfm.INSTANCE;
+    private static final Set<Long> glModels = ConcurrentHashMap.newKeySet();
+    private static final Queue<Long> abandonedGlModels = new ConcurrentLinkedQueue<>();
+
+    private final Map<Integer, Consumer<String>> motionFinishedCallbacks = new HashMap<>();
+    // Events taken from the native queue for the startMotion callbacks, kept for pollEvents().
+    private int[] events;
+    private int queuedEvents;
+    private boolean pollingEvents;
+    private String[] parameterIds = new String[0];
+    private float[] parameterMinimumValues = new float[0];
+    private float[] parameterMaximumValues = new float[0];
+    private float[] parameterDefaultValues = new float[0];
+    private final Map<String, Integer> parameterIndices = new HashMap<>();
+    private String[] partIds = new String[0];
+    private final Map<String, Integer> partIndices = new HashMap<>();
+    private FloatBuffer parameterValues, partOpacities;
+    private CubismDrawableLayout drawableLayout;
+    private CubismLod lod = CubismLod.FULL;
+    private String[] hitAreaNames = new String[0];
+    private CubismParameterStream parameterStream;
+    private int[] hitAreaResults = new int[0];
+    private CubismRendererType rendererType;
+    private LongBuffer stageTimes;
 
     public CubismUserModel() {
-        super(createNative());
-        linkNative();
+        super(createNative(), CubismUserModel::releaseNative);
+    }
+
+    public CubismUserModel(CubismModelDefinition definition) {
+        super(createFromDefinitionNative(definition.getPtr()), CubismUserModel::releaseNative);
+        try {
+            loadModelInfo();
+        } finally {
+            Reference.reachabilityFence(definition);
+        }
     }
 
     private static native long createNative();
-    private native void linkNative();
+    private static native long createFromDefinitionNative(long definitionPtr);
 
-    public void loadModel(byte[] buffer) { loadModelNative(_ptr, buffer); }
+    public void loadModel(byte[] buffer) {
+        try {
+            loadModelNative(_ptr, buffer);
+            loadModelInfo();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void loadModelNative(long ptr, byte[] buffer);
 
-    public void loadPhysics(byte[] buffer) { loadPhysicsNative(_ptr, buffer); }
+    public void loadModel(ByteBuffer buffer) {
+        try {
+            loadModelDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining());
+            loadModelInfo();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadModelDirectNative(long ptr, ByteBuffer buffer, int offset, int length);
+
+    public void loadModel(Path path) throws IOException {
+        loadModel(Buffers.map(path));
+    }
+
+    private void loadModelInfo() {
+        String[] ids = getParameterIdsNative(_ptr);
+        float[] min = new float[ids.length], max = new float[ids.length], def = new float[ids.length];
+        getParameterRangesNative(_ptr, min, max, def);
+
+        parameterIndices.clear();
+        for (int i = 0; i < ids.length; i++) parameterIndices.put(ids[i], i);
+        parameterIds = ids;
+        parameterMinimumValues = min;
+        parameterMaximumValues = max;
+        parameterDefaultValues = def;
+
+        partIds = getPartIdsNative(_ptr);
+        partIndices.clear();
+        for (int i = 0; i < partIds.length; i++) partIndices.put(partIds[i], i);
+
+        parameterValues = null;
+        partOpacities = null;
+        drawableLayout = null;
+    }
+    private static native String[] getParameterIdsNative(long ptr);
+    private static native void getParameterRangesNative(long ptr, float[] min, float[] max, float[] def);
+    private static native String[] getPartIdsNative(long ptr);
+
+    public void loadPhysics(byte[] buffer) {
+        try {
+            loadPhysicsNative(_ptr, buffer);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void loadPhysicsNative(long ptr, byte[] buffer);
 
-    public void loadPose(byte[] buffer) { loadPoseNative(_ptr, buffer); }
+    public void loadPhysics(ByteBuffer buffer) {
+        try {
+            loadPhysicsDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPhysicsDirectNative(long ptr, ByteBuffer buffer, int offset, int length);
+
+    public void loadPose(byte[] buffer) {
+        try {
+            loadPoseNative(_ptr, buffer);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void loadPoseNative(long ptr, byte[] buffer);
 
-    public void loadExpression(byte[] buffer, String name) { loadExpressionNative(_ptr, buffer, name); }
+    public void loadPose(ByteBuffer buffer) {
+        try {
+            loadPoseDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadPoseDirectNative(long ptr, ByteBuffer buffer, int offset, int length);
+
+    public void loadExpression(byte[] buffer, String name) {
+        try {
+            loadExpressionNative(_ptr, buffer, name);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void loadExpressionNative(long ptr, byte[] buffer, String name);
 
-    public void setExpression(String name) { setExpressionNative(_ptr, name); }
-    private static native void setExpressionNative(long ptr, String name);
+    public void loadExpression(ByteBuffer buffer, String name) {
+        try {
+            loadExpressionDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining(), name);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void loadExpressionDirectNative(long ptr, ByteBuffer buffer, int offset, int length, String name);
+
+    public int setExpression(String name) {
+        try {
+            return setExpressionNative(_ptr, name);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int setExpressionNative(long ptr, String name);
+
+    // Lets update() and draw() run on different threads at the same time. update() publishes the
+    // finished frame and draw() renders the newest published one, so the render thread never waits
+    // for the simulation. Call after loading the moc and before createRenderer().
+    //
+    // Render thread: createRenderer, registerTexture, draw.
+    // Update thread: everything else (update, parameters, motions, expressions, dragging, events,
+    // hit tests, readDrawables, reset, snapshots). Methods of the same group must not run concurrently.
+    public void setPipelined(boolean pipelined) {
+        try {
+            if (!setPipelinedNative(_ptr, pipelined)) {
+                throw new IllegalStateException("setPipelined() must be called after loadModel() and before createRenderer()");
+            }
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native boolean setPipelinedNative(long ptr, boolean pipelined);
 
-    public void createRenderer() { createRendererNative(_ptr); }
+    public boolean isPipelined() {
+        try {
+            return isPipelinedNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native boolean isPipelinedNative(long ptr);
+
+    public void createRenderer() { createRenderer(CubismRendererType.OPENGL); }
+
+    public void createRenderer(CubismRendererType type) {
+        try {
+            if (type == CubismRendererType.SOFTWARE) createSoftwareRendererNative(_ptr);
+            else {
+                createRendererNative(_ptr);
+                glModels.add(_ptr);
+            }
+            rendererType = type;
+            CubismFramework.rendererCreated();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void createRendererNative(long ptr);
+    private static native void createSoftwareRendererNative(long ptr);
 
-    public void registerTexture(int index, int textureId) { registerTextureNative(_ptr, index, textureId); }
+    public void registerTexture(int index, int textureId) {
+        try {
+            registerTextureNative(_ptr, index, textureId);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void registerTextureNative(long ptr, int index, int textureId);
 
-    public void setDragging(float x, float y) { setDraggingNative(_ptr, x, y); }
+    // Must be called on the render thread! Uploads the image and returns the new GL texture id.
+    public int registerTexture(int index, CubismTextureImage image) {
+        int textureId = image.upload();
+        registerTexture(index, textureId);
+        return textureId;
+    }
+
+    // Pixels start at the buffer's position.
+    public void registerTexture(int index, ByteBuffer rgba, int width, int height) {
+        try {
+            requireSoftwareRenderer();
+            requirePixels(rgba, width, height, "Texture buffer too small");
+            registerSoftwareTextureNative(_ptr, index, Buffers.requireDirect(rgba), rgba.position(), width, height);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void registerSoftwareTextureNative(long ptr, int index, ByteBuffer rgba, int offset, int width, int height);
+
+    private static void requirePixels(ByteBuffer buffer, int width, int height, String message) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        if (buffer.remaining() < (long) width * height * 4) throw new IllegalArgumentException(message);
+    }
+
+    public void setSoftwareRenderOptions(boolean multithreaded, boolean premultipliedOutput) {
+        try {
+            requireSoftwareRenderer();
+            setSoftwareRenderOptionsNative(_ptr, multithreaded, premultipliedOutput);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void setSoftwareRenderOptionsNative(long ptr, boolean multithreaded, boolean premultipliedOutput);
+
+    private void requireSoftwareRenderer() {
+        if (rendererType != CubismRendererType.SOFTWARE) throw new IllegalStateException("Software renderer not created");
+    }
+
+    public void setDragging(float x, float y) {
+        try {
+            if (FFM != null) FFM.setDragging(_ptr, x, y);
+            else setDraggingNative(_ptr, x, y);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void setDraggingNative(long ptr, float x, float y);
 
-    public boolean isHit(String drawableId, float x, float y) { return isHitNative(_ptr, drawableId, x, y); }
+    public boolean isHit(String drawableId, float x, float y) {
+        try {
+            return isHitNative(_ptr, drawableId, x, y);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native boolean isHitNative(long ptr, String drawableId, float x, float y);
 
-    public void startMotion(byte[] buffer, int priority, boolean loop, Consumer<String> onFinished) {
-        this.motionFinishedCallback = onFinished;
-        startMotionNative(_ptr, buffer, priority, loop);
+    // Indices of the visible drawables under the point, topmost first. Coordinates are the same as
+    // for isHit(). Precise mode tests the mesh triangles and clipping masks instead of just the
+    // bounding box; bounds are cached per drawable, so this is cheap enough for every mouse move.
+    public int[] hitTest(float x, float y) { return hitTest(x, y, false); }
+
+    public int[] hitTest(float x, float y, boolean precise) {
+        try {
+            int[] out = new int[8];
+            int count;
+            while ((count = hitTestNative(_ptr, x, y, precise, out)) > out.length) out = new int[count];
+            return Arrays.copyOf(out, count);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    // Allocation-free variant: writes up to out.length drawable indices and returns the total
+    // number of hits, which may be larger.
+    public int hitTest(float x, float y, boolean precise, int[] out) {
+        try {
+            return hitTestNative(_ptr, x, y, precise, out);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int hitTestNative(long ptr, float x, float y, boolean precise, int[] out);
+
+    // Hit areas by name, e.g. the "HitAreas" of a model3.json (Name -> Id). Areas whose drawable
+    // doesn't exist are ignored. Replaces the previous set.
+    public void setHitAreas(Map<String, String> areas) {
+        try {
+            Map<String, Integer> drawables = new HashMap<>();
+            String[] ids = getDrawableIds();
+            for (int i = 0; i < ids.length; i++) drawables.put(ids[i], i);
+            List<String> names = new ArrayList<>();
+            int[] indices = new int[areas.size()];
+            for (Map.Entry<String, String> area : areas.entrySet()) {
+                Integer index = drawables.get(area.getValue());
+                if (index == null) continue;
+                indices[names.size()] = index;
+                names.add(area.getKey());
+            }
+            setHitAreasNative(_ptr, Arrays.copyOf(indices, names.size()));
+            hitAreaNames = names.toArray(new String[0]);
+            hitAreaResults = new int[hitAreaNames.length];
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void setHitAreasNative(long ptr, int[] drawables);
+
+    public String[] getHitAreaNames() { return hitAreaNames.clone(); }
+
+    // Names of the hit areas under the point, topmost first. Hit-area drawables are usually
+    // invisible, so unlike hitTest() visibility doesn't matter here.
+    public String[] hitTestAreas(float x, float y, boolean precise) {
+        try {
+            int count = hitTestAreasNative(_ptr, x, y, precise, hitAreaResults);
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) names[i] = hitAreaNames[hitAreaResults[i]];
+            return names;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    // The topmost hit area under the point, or null.
+    public String hitTestArea(float x, float y, boolean precise) {
+        try {
+            if (hitAreaNames.length == 0) return null;
+            return hitTestAreasNative(_ptr, x, y, precise, hitAreaResults) > 0 ? hitAreaNames[hitAreaResults[0]] : null;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int hitTestAreasNative(long ptr, float x, float y, boolean precise, int[] out);
+
+    public int startMotion(byte[] buffer, int priority, boolean loop, Consumer<String> onFinished) {
+        try {
+            return onFinished(startMotionNative(_ptr, buffer, priority, loop), onFinished);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int startMotionNative(long ptr, byte[] buffer, int priority, boolean loop);
+
+    public int startMotion(ByteBuffer buffer, int priority, boolean loop, Consumer<String> onFinished) {
+        try {
+            return onFinished(startMotionDirectNative(_ptr, Buffers.requireDirect(buffer), buffer.position(), buffer.remaining(), priority, loop), onFinished);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int startMotionDirectNative(long ptr, ByteBuffer buffer, int offset, int length, int priority, boolean loop);
+
+    public int startMotion(CubismMotion motion, int priority, Consumer<String> onFinished) {
+        try {
+            return onFinished(startMotionHandleNative(_ptr, motion.getPtr(), priority, null, -1), onFinished);
+        } finally {
+            Reference.reachabilityFence(this);
+            Reference.reachabilityFence(motion);
+        }
+    }
+
+    public int startMotion(CubismMotion motion, int priority, String group, int index) {
+        try {
+            return startMotionHandleNative(_ptr, motion.getPtr(), priority, group, index);
+        } finally {
+            Reference.reachabilityFence(this);
+            Reference.reachabilityFence(motion);
+        }
+    }
+    private static native int startMotionHandleNative(long ptr, long motionPtr, int priority, String group, int index);
+
+    private int onFinished(int handle, Consumer<String> callback) {
+        if (handle >= 0 && callback != null) motionFinishedCallbacks.put(handle, callback);
+        return handle;
     }
-    private static native void startMotionNative(long ptr, byte[] buffer, int priority, boolean loop);
 
-    public boolean isMotionFinished() { return isMotionFinishedNative(_ptr); }
+    public boolean isMotionFinished() {
+        try {
+            return isMotionFinishedNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native boolean isMotionFinishedNative(long ptr);
 
-    private void onMotionFinished(String name) {
-        if (motionFinishedCallback != null) {
-            motionFinishedCallback.accept(name);
+    public void update(float deltaTime) {
+        try {
+            beforeUpdate();
+            CubismUpdateEvent event = CubismUpdateEvent.TYPE.isEnabled() ? new CubismUpdateEvent() : null;
+            if (event != null) event.begin();
+            int pendingEvents = FFM != null ? FFM.update(_ptr, deltaTime) : updateNative(_ptr, deltaTime);
+            if (event != null) {
+                event.end();
+                commitUpdateEvent(event);
+            }
+            afterUpdate(pendingEvents);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int updateNative(long ptr, float deltaTime);
+
+    void commitUpdateEvent(CubismUpdateEvent event) {
+        try {
+            if (!event.shouldCommit()) return;
+            event.model = _ptr;
+            if (CubismProfiler.isEnabled()) {
+                if (stageTimes == null) stageTimes = getStageTimesBufferNative(_ptr).order(ByteOrder.nativeOrder()).asLongBuffer();
+                event.motion = stageTimes.get(CubismStage.MOTION.ordinal());
+                event.expression = stageTimes.get(CubismStage.EXPRESSION.ordinal());
+                event.pose = stageTimes.get(CubismStage.POSE.ordinal());
+                event.drag = stageTimes.get(CubismStage.DRAG.ordinal());
+                event.physics = stageTimes.get(CubismStage.PHYSICS.ordinal());
+                event.modelUpdate = stageTimes.get(CubismStage.MODEL_UPDATE.ordinal());
+            }
+            event.commit();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getStageTimesBufferNative(long ptr);
+
+    public CubismStageStats getStageStats() {
+        try {
+            long[] data = CubismStageStats.buffer();
+            getStageStatsNative(_ptr, data);
+            return new CubismStageStats(data);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void getStageStatsNative(long ptr, long[] data);
+
+    public void resetStageStats() {
+        try {
+            resetStageStatsNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void resetStageStatsNative(long ptr);
+
+    // Writes everything that arrived on the parameter stream since the last update in one call,
+    // before the simulation picks the values up.
+    void beforeUpdate() {
+        try {
+            CubismParameterStream stream = parameterStream;
+            if (stream == null) return;
+            int count = stream.drain(parameterIds.length);
+            if (count > 0) applyParameterStreamNative(_ptr, stream.touched(), stream.scales(), stream.offsets(), count);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void applyParameterStreamNative(long ptr, int[] indices, float[] scales, float[] offsets, int count);
+
+    // Attaches a stream whose writes are applied at the start of every update(), or detaches it
+    // with null. Update thread only; the stream's producer can be any one other thread.
+    public void setParameterStream(CubismParameterStream stream) { parameterStream = stream; }
+
+    public CubismParameterStream getParameterStream() { return parameterStream; }
+
+    void afterUpdate(int pendingEvents) {
+        // startMotion callbacks run here whether or not the caller polls. Events that pollEvents()
+        // will want stay queued; without polling they are dropped once the callbacks ran.
+        if (pendingEvents > 0 && (!pollingEvents || !motionFinishedCallbacks.isEmpty())) drainEvents();
+        if (!pollingEvents) queuedEvents = 0;
+    }
+
+    public int pollEvents(CubismEventSink sink) {
+        pollingEvents = true;
+        drainEvents();
+        int count = queuedEvents;
+        queuedEvents = 0;
+        for (int i = 0, o = 0; i < count; i++, o += EVENT_FIELDS) {
+            sink.onEvent(events[o], events[o + 1], internedString(events[o + 2]), events[o + 3], internedString(events[o + 4]));
+        }
+        return count;
+    }
+
+    // Moves events from the native queue to the Java one, running startMotion callbacks on the
+    // way. Once EVENT_CAPACITY events wait for pollEvents(), the rest stays in the native queue.
+    private void drainEvents() {
+        try {
+            if (events == null) events = new int[EVENT_BATCH * EVENT_FIELDS];
+            int count;
+            do {
+                if (queuedEvents * EVENT_FIELDS == events.length) {
+                    if (!pollingEvents) queuedEvents = 0;
+                    else if (queuedEvents < EVENT_CAPACITY) events = Arrays.copyOf(events, Math.min(events.length * 2, EVENT_CAPACITY * EVENT_FIELDS));
+                    else return;
+                }
+                count = drainEventsNative(_ptr, events, queuedEvents * EVENT_FIELDS);
+                for (int i = 0, o = queuedEvents * EVENT_FIELDS; i < count; i++, o += EVENT_FIELDS) {
+                    if (events[o] == CubismEventSink.MOTION_FINISHED && !motionFinishedCallbacks.isEmpty()) {
+                        Consumer<String> callback = motionFinishedCallbacks.remove(events[o + 1]);
+                        if (callback != null) callback.accept("motion");
+                    }
+                }
+                queuedEvents += count;
+            } while (count > 0);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int drainEventsNative(long ptr, int[] events, int offset);
+
+    // Events that didn't fit because nobody drained the queue in time.
+    public long getDroppedEventCount() {
+        try {
+            return getDroppedEventCountNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
         }
     }
+    private static native long getDroppedEventCountNative(long ptr);
 
-    public void update(float deltaTime) { updateNative(_ptr, deltaTime); }
-    private static native void updateNative(long ptr, float deltaTime);
+    private static String internedString(int id) {
+        if (id < 0) return null;
+        String[] strings = internedStrings;
+        if (id < strings.length && strings[id] != null) return strings[id];
+        synchronized (CubismUserModel.class) {
+            strings = internedStrings;
+            if (id >= strings.length) strings = internedStrings = Arrays.copyOf(strings, Math.max(id + 1, strings.length * 2));
+            if (strings[id] == null) strings[id] = getInternedStringNative(id);
+            return strings[id];
+        }
+    }
+    private static native String getInternedStringNative(int id);
 
-    public void setParameterValue(String id, float value) { setParameterValueNative(_ptr, id, value); }
+    public static void updateAll(CubismUserModel[] models, float deltaTime) {
+        CubismUpdateGroup.updateAll(models, deltaTime);
+    }
+
+    public void setParameterValue(String id, float value) {
+        try {
+            if (FFM == null) setParameterValueNative(_ptr, id, value);
+            else {
+                // Known ids don't need to be encoded at all.
+                int index = getParameterIndex(id);
+                if (index >= 0) FFM.setParameter(_ptr, index, value);
+                else FFM.setParameter(_ptr, id, value);
+            }
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void setParameterValueNative(long ptr, String id, float value);
 
-    public float getParameterValue(String id) { return getParameterValueNative(_ptr, id); }
+    public float getParameterValue(String id) {
+        try {
+            if (FFM == null) return getParameterValueNative(_ptr, id);
+            int index = getParameterIndex(id);
+            return index >= 0 ? FFM.getParameter(_ptr, index) : FFM.getParameter(_ptr, id);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native float getParameterValueNative(long ptr, String id);
 
-    public float getCanvasWidth() { return getCanvasWidthNative(_ptr); }
+    public ParameterHandle parameter(String id) {
+        int index = getParameterIndex(id);
+        if (index < 0) throw new IllegalArgumentException("Unknown parameter: " + id);
+        return new ParameterHandle(this, index);
+    }
+
+    public int getParameterIndex(String id) {
+        Integer index = parameterIndices.get(id);
+        return index != null ? index : -1;
+    }
+
+    public int getParameterCount() { return parameterIds.length; }
+    public String getParameterId(int index) { return parameterIds[index]; }
+    public String[] getParameterIds() { return parameterIds.clone(); }
+    public float getParameterMinimumValue(int index) { return parameterMinimumValues[index]; }
+    public float getParameterMaximumValue(int index) { return parameterMaximumValues[index]; }
+    public float getParameterDefaultValue(int index) { return parameterDefaultValues[index]; }
+
+    public void setParameterValue(int index, float value) {
+        try {
+            Objects.checkIndex(index, parameterIds.length);
+            if (FFM != null) FFM.setParameter(_ptr, index, value);
+            else setParameterValueByIndexNative(_ptr, index, value);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void setParameterValueByIndexNative(long ptr, int index, float value);
+
+    public float getParameterValue(int index) {
+        try {
+            Objects.checkIndex(index, parameterIds.length);
+            return FFM != null ? FFM.getParameter(_ptr, index) : getParameterValueByIndexNative(_ptr, index);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native float getParameterValueByIndexNative(long ptr, int index);
+
+    // The direct buffers below are views over the model's own arrays, not copies. They stay
+    // valid until close() or the next loadModel(), which free the arrays; using one after that
+    // reads or writes freed memory, so fetch them again after reloading. Holding one does keep
+    // the cleaner from freeing a model that was never closed. Writes through the parameter view
+    // are only picked up by update() after markParametersDirty().
+    public FloatBuffer getParameterValuesBuffer() {
+        try {
+            if (parameterValues == null) parameterValues = view(keepAlive(getParameterValuesBufferNative(_ptr)));
+            return parameterValues.duplicate();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getParameterValuesBufferNative(long ptr);
+
+    public void markParametersDirty() {
+        try {
+            markParametersDirtyNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void markParametersDirtyNative(long ptr);
+
+    public FloatBuffer getParameterMinimumValuesBuffer() {
+        try {
+            return view(keepAlive(getParameterMinimumValuesBufferNative(_ptr))).asReadOnlyBuffer();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getParameterMinimumValuesBufferNative(long ptr);
+
+    public FloatBuffer getParameterMaximumValuesBuffer() {
+        try {
+            return view(keepAlive(getParameterMaximumValuesBufferNative(_ptr))).asReadOnlyBuffer();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getParameterMaximumValuesBufferNative(long ptr);
+
+    public FloatBuffer getParameterDefaultValuesBuffer() {
+        try {
+            return view(keepAlive(getParameterDefaultValuesBufferNative(_ptr))).asReadOnlyBuffer();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getParameterDefaultValuesBufferNative(long ptr);
+
+    public FloatBuffer getPartOpacitiesBuffer() {
+        try {
+            if (partOpacities == null) partOpacities = view(keepAlive(getPartOpacitiesBufferNative(_ptr)));
+            return partOpacities.duplicate();
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native ByteBuffer getPartOpacitiesBufferNative(long ptr);
+
+    public void writeParameters(FloatBuffer src) {
+        try {
+            if (parameterValues == null) parameterValues = view(keepAlive(getParameterValuesBufferNative(_ptr)));
+            parameterValues.duplicate().put(src);
+            markParametersDirtyNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public void writeParameters(FloatBuffer src, int[] indices) {
+        try {
+            if (parameterValues == null) parameterValues = view(keepAlive(getParameterValuesBufferNative(_ptr)));
+            int base = src.position();
+            for (int i = 0; i < indices.length; i++) {
+                parameterValues.put(indices[i], src.get(base + i));
+            }
+            src.position(base + indices.length);
+            markParametersDirtyNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public void readParameters(FloatBuffer dst, int[] indices) {
+        try {
+            if (parameterValues == null) parameterValues = view(keepAlive(getParameterValuesBufferNative(_ptr)));
+            int base = dst.position();
+            for (int i = 0; i < indices.length; i++) {
+                dst.put(base + i, parameterValues.get(indices[i]));
+            }
+            dst.position(base + indices.length);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    public int getPartCount() { return partIds.length; }
+    public String getPartId(int index) { return partIds[index]; }
+    public String[] getPartIds() { return partIds.clone(); }
+
+    public int getPartIndex(String id) {
+        Integer index = partIndices.get(id);
+        return index != null ? index : -1;
+    }
+
+    private static FloatBuffer view(ByteBuffer buffer) {
+        if (buffer == null) throw new IllegalStateException("Model is not loaded");
+        return buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    public float getCanvasWidth() {
+        try {
+            return getCanvasWidthNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native float getCanvasWidthNative(long ptr);
 
-    public float getCanvasHeight() { return getCanvasHeightNative(_ptr); }
+    public float getCanvasHeight() {
+        try {
+            return getCanvasHeightNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native float getCanvasHeightNative(long ptr);
 
-    public String[] getDrawableIds() { return getDrawableIdsNative(_ptr); }
+    public String[] getDrawableIds() {
+        try {
+            return getDrawableIdsNative(_ptr);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native String[] getDrawableIdsNative(long ptr);
 
-    public void draw(float[] mvpMatrix) { drawNative(_ptr, mvpMatrix); }
+    public CubismDrawableLayout getDrawableLayout() {
+        try {
+            if (drawableLayout == null) {
+                String[] ids = getDrawableIds();
+                int count = ids.length;
+                int[] vertexCounts = new int[count], indexCounts = new int[count], textureIndices = new int[count];
+                int[] constantFlags = new int[count], maskCounts = new int[count];
+                getDrawableLayoutNative(_ptr, vertexCounts, indexCounts, textureIndices, constantFlags, maskCounts);
+                int maskTotal = 0;
+                for (int c : maskCounts) maskTotal += c;
+                int[] masks = new int[maskTotal];
+                getDrawableMasksNative(_ptr, masks);
+                drawableLayout = new CubismDrawableLayout(ids, vertexCounts, indexCounts, textureIndices, constantFlags, maskCounts, masks);
+            }
+            return drawableLayout;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void getDrawableLayoutNative(long ptr, int[] vertexCounts, int[] indexCounts, int[] textureIndices, int[] constantFlags, int[] maskCounts);
+    private static native void getDrawableMasksNative(long ptr, int[] masks);
+
+    public void readDrawableStatic(CubismDrawableBuffers buffers) {
+        try {
+            requireLayout(buffers);
+            readDrawableStaticNative(_ptr, buffers.getUvs(), buffers.getIndices());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void readDrawableStaticNative(long ptr, Buffer uvs, Buffer indices);
+
+    public int readDrawables(CubismDrawableBuffers buffers) {
+        try {
+            requireLayout(buffers);
+            return readDrawableDynamicNative(_ptr, buffers.getPositions(), buffers.getOpacities(), buffers.getDrawOrders(), buffers.getRenderOrders(),
+                buffers.getMultiplyColors(), buffers.getScreenColors(), buffers.getChanges());
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int readDrawableDynamicNative(long ptr, Buffer positions, Buffer opacities, Buffer drawOrders, Buffer renderOrders,
+                                                        Buffer multiplyColors, Buffer screenColors, Buffer changes);
+
+    private void requireLayout(CubismDrawableBuffers buffers) {
+        CubismDrawableLayout expected = getDrawableLayout(), actual = buffers.getLayout();
+        if (actual != expected && (actual.getDrawableCount() != expected.getDrawableCount()
+                || actual.getVertexTotal() != expected.getVertexTotal() || actual.getIndexTotal() != expected.getIndexTotal())) {
+            throw new IllegalArgumentException("Buffers were created for a different model layout");
+        }
+    }
+
+    public CubismMemoryStats getMemoryStats() {
+        try {
+            long[] stats = CubismMemoryStats.buffer();
+            getMemoryStatsNative(_ptr, stats);
+            return new CubismMemoryStats(stats);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void getMemoryStatsNative(long ptr, long[] stats);
+
+    public void draw(float[] mvpMatrix) {
+        try {
+            releaseAbandonedModels();
+            CubismDrawEvent event = CubismDrawEvent.TYPE.isEnabled() ? new CubismDrawEvent() : null;
+            if (event != null) event.begin();
+            if (FFM != null) FFM.draw(_ptr, mvpMatrix);
+            else drawNative(_ptr, mvpMatrix);
+            commitDrawEvent(event, false);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
     private static native void drawNative(long ptr, float[] mvpMatrix);
 
+    // Renders into the buffer starting at its position; the position is left as it is.
+    public void draw(float[] mvpMatrix, ByteBuffer target, int width, int height) {
+        try {
+            requireSoftwareRenderer();
+            if (target.isReadOnly()) throw new ReadOnlyBufferException();
+            requirePixels(target, width, height, "Target buffer too small");
+            CubismDrawEvent event = CubismDrawEvent.TYPE.isEnabled() ? new CubismDrawEvent() : null;
+            if (event != null) event.begin();
+            drawSoftwareNative(_ptr, mvpMatrix, Buffers.requireDirect(target), target.position(), width, height);
+            commitDrawEvent(event, true);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    private void commitDrawEvent(CubismDrawEvent event, boolean software) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.model = _ptr;
+        event.software = software;
+        event.commit();
+    }
+    private static native void drawSoftwareNative(long ptr, float[] mvpMatrix, ByteBuffer target, int offset, int width, int height);
+
+    // Update thread only. Takes effect with the next update().
+    public void setLod(CubismLod lod) {
+        try {
+            setLodNative(_ptr, lod.getUpdateInterval(), lod.isPhysics(), lod.getPhysicsStep(), lod.isTracking(), lod.isFrozen());
+            this.lod = lod;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void setLodNative(long ptr, int updateInterval, boolean physics, float physicsStep, boolean tracking, boolean frozen);
+
+    public CubismLod getLod() { return lod; }
+
+    // Back to the state right after loading: default parameters and part opacities, no motions or
+    // expressions playing, physics, pose and dragging at rest. The renderer, textures and loaded
+    // expressions are kept, which is what makes this much cheaper than loading again.
+    public void reset() {
+        try {
+            resetNative(_ptr);
+            motionFinishedCallbacks.clear();
+            queuedEvents = 0;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native void resetNative(long ptr);
+
+    // Runtime state as a compact blob: parameter values, part opacities, the motion and expression
+    // queues with their positions, dragging and physics particles. restore() puts it back into
+    // this model or another instance of the same model, without reloading; both take microseconds,
+    // which is what rollback or cloning a live avatar needs. Blobs are in native byte order and
+    // meant for the same build. Motions are found again by content, so they have to be playing or
+    // in the motion cache when the snapshot is restored; expressions by name. Update thread only.
+    public int getSnapshotSize() {
+        try {
+            return snapshotNative(_ptr, null, 0, 0);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    // Writes at the buffer's position and advances it; returns the number of bytes written.
+    public int snapshot(ByteBuffer dst) {
+        try {
+            if (dst.isReadOnly()) throw new ReadOnlyBufferException();
+            int size = snapshotNative(_ptr, Buffers.requireDirect(dst), dst.position(), dst.remaining());
+            if (size > dst.remaining()) throw new BufferOverflowException();
+            dst.position(dst.position() + size);
+            return size;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int snapshotNative(long ptr, ByteBuffer buffer, int offset, int capacity);
+
+    // Reads from the buffer's position and advances it. A damaged snapshot leaves the model reset.
+    public void restore(ByteBuffer src) {
+        try {
+            int read = restoreNative(_ptr, Buffers.requireDirect(src), src.position(), src.remaining());
+            if (read == -1) throw new IllegalArgumentException("Not a model snapshot");
+            if (read == -2) throw new IllegalArgumentException("Snapshot was taken from a different model");
+            if (read < 0) throw new IllegalArgumentException("Snapshot is damaged or truncated");
+            queuedEvents = 0;
+            src.position(src.position() + read);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+    private static native int restoreNative(long ptr, ByteBuffer buffer, int offset, int length);
+
     @Override
-    public void close() { deleteNative(_ptr); }
+    public void close() {
+        // Views handed out can't be taken back, but nothing in here uses them again.
+        parameterValues = null;
+        partOpacities = null;
+        stageTimes = null;
+        glModels.remove(_ptr);
+        release();
+    }
+
+    // The GL renderer has to be freed on the GL thread, so models the cleaner finds are handed to the next draw().
+    private static void releaseNative(long ptr) {
+        if (glModels.remove(ptr)) abandonedGlModels.add(ptr);
+        else deleteNative(ptr);
+    }
+
+    private static void releaseAbandonedModels() {
+        Long ptr;
+        while ((ptr = abandonedGlModels.poll()) != null) deleteNative(ptr);
+    }
     private static native void deleteNative(long ptr);
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package dev.eatgrapes.live2d;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal JSON reader for model3.json and the files CubismAssetCompiler reads. Objects become
+// LinkedHashMap, arrays ArrayList, numbers Double; the binding has no dependencies, so this stays
+// small and private.
+final class Json {
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    static Object parse(String text) {
+        Json json = new Json(text);
+        // model3.json written by Cubism Editor starts with a UTF-8 BOM
+        if (!text.isEmpty() && text.charAt(0) == '\uFEFF') json.pos = 1;
+        Object value = json.value();
+        json.skipWhitespace();
+        if (json.pos != text.length()) throw json.error("Trailing characters");
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(Object value, String key) {
+        Object child = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+        return child instanceof Map ? (Map<String, Object>) child : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> array(Object value, String key) {
+        Object child = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+        return child instanceof List ? (List<Object>) child : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static String string(Object value, String key) {
+        Object child = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+        return child instanceof String ? (String) child : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static double number(Object value, String key, double fallback) {
+        Object child = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+        return child instanceof Number ? ((Number) child).doubleValue() : fallback;
+    }
+
+    @SuppressWarnings("unchecked")
+    static boolean bool(Object value, String key) {
+        Object child = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+        return Boolean.TRUE.equals(child);
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (pos >= text.length()) throw error("Unexpected end of input");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': literal("true"); return Boolean.TRUE;
+            case 'f': literal("false"); return Boolean.FALSE;
+            case 'n': literal("null"); return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') { pos++; return map; }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') throw error("Expected object key");
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            map.put(key, value());
+            skipWhitespace();
+            if (peek() == ',') { pos++; continue; }
+            expect('}');
+            return map;
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') { pos++; return list; }
+        while (true) {
+            list.add(value());
+            skipWhitespace();
+            if (peek() == ',') { pos++; continue; }
+            expect(']');
+            return list;
+        }
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder sb = null;
+        int start = pos;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                String s = sb == null ? text.substring(start, pos) : sb.append(text, start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c != '\\') { pos++; continue; }
+            if (sb == null) sb = new StringBuilder();
+            sb.append(text, start, pos);
+            if (++pos >= text.length()) break;
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("Bad unicode escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append(e);
+            }
+            start = pos;
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double number() {
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+        try {
+            return Double.valueOf(text.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Bad number");
+        }
+    }
+
+    private void literal(String word) {
+        if (!text.startsWith(word, pos)) throw error("Expected " + word);
+        pos += word.length();
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : '\0';
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+}
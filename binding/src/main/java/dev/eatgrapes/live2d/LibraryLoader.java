@@ -1,18 +1,36 @@
 package dev.eatgrapes.live2d;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
 public class LibraryLoader {
     private static boolean loaded = false;
+    private static long loadNanos = -1;
+    private static boolean cached;
 
+    // The library is extracted once into <cache>/<platform>-<sha256>/ and reused by every later
+    // run, so startup only pays for System.load(). The directory name changes with the library's
+    // content, so a new build never picks up a stale copy. Override the location with
+    // -Dlive2d.native.cacheDir=..., or point -Dlive2d.native.path=... at an already extracted library.
     public static synchronized void load() {
         if (loaded) return;
+        long start = System.nanoTime();
+
+        String explicit = System.getProperty("live2d.native.path");
+        if (explicit != null) {
+            System.load(Paths.get(explicit).toAbsolutePath().toString());
+            finish(start, true);
+            return;
+        }
 
         String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
         String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
-        
+
         String os;
         if (osName.contains("win")) os = "windows";
         else if (osName.contains("mac")) os = "macos";
@@ -28,18 +46,123 @@ public class LibraryLoader {
         String libName = System.mapLibraryName("live2d_jni");
         String resourcePath = "/" + platformTag + "/" + libName;
 
+        try {
+            // build.py stores the hash next to the library; without it the library is read and
+            // hashed here, which still beats writing it out again.
+            byte[] bytes = null;
+            String hash = readHash(resourcePath + ".sha256");
+            if (hash == null) {
+                bytes = readLibrary(resourcePath);
+                hash = sha256(bytes);
+            }
+
+            Path lib = cacheRoot(os).resolve(platformTag + "-" + hash.substring(0, 16)).resolve(libName);
+            boolean hit = Files.isRegularFile(lib);
+            if (!hit) {
+                try {
+                    extract(bytes != null ? bytes : readLibrary(resourcePath), lib);
+                } catch (IOException e) {
+                    // Read-only home, full disk, ...: fall back to a private temp copy for this run.
+                    lib = extractTemp(bytes != null ? bytes : readLibrary(resourcePath), libName);
+                }
+            }
+            System.load(lib.toAbsolutePath().toString());
+            finish(start, hit);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to extract native lib", e);
+        }
+    }
+
+    private static void finish(long start, boolean hit) {
+        loaded = true;
+        cached = hit;
+        loadNanos = System.nanoTime() - start;
+    }
+
+    // Time spent in load(), or -1 before the library was loaded.
+    static synchronized long getLoadNanos() { return loadNanos; }
+
+    // Whether load() found the library already extracted.
+    static synchronized boolean wasCached() { return cached; }
+
+    private static Path cacheRoot(String os) {
+        String dir = System.getProperty("live2d.native.cacheDir");
+        if (dir != null) return Paths.get(dir);
+        String home = System.getProperty("user.home");
+        if (os.equals("windows")) {
+            String local = System.getenv("LOCALAPPDATA");
+            return (local != null ? Paths.get(local) : Paths.get(home, "AppData", "Local")).resolve("live2d-jni");
+        }
+        if (os.equals("macos")) return Paths.get(home, "Library", "Caches", "live2d-jni");
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        return (xdg != null && !xdg.isEmpty() ? Paths.get(xdg) : Paths.get(home, ".cache")).resolve("live2d-jni");
+    }
+
+    // Several processes may start at once: each writes its own temp file and moves it into place
+    // atomically, so a half-written library is never visible under the final name. Losing the
+    // race is fine, the winner's file has the same content.
+    private static void extract(byte[] bytes, Path lib) throws IOException {
+        Path dir = lib.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, lib.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, lib, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AccessDeniedException e) {
+                // Another process got there first (Windows refuses to replace a loaded DLL).
+                if (!Files.isRegularFile(lib)) throw e;
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static Path extractTemp(byte[] bytes, String libName) throws IOException {
+        Path tempDir = Files.createTempDirectory("live2d_native");
+        File tempFile = tempDir.resolve(libName).toFile();
+        tempFile.deleteOnExit();
+        tempDir.toFile().deleteOnExit();
+        Files.write(tempFile.toPath(), bytes);
+        return tempFile.toPath();
+    }
+
+    private static byte[] readLibrary(String resourcePath) throws IOException {
         try (InputStream is = LibraryLoader.class.getResourceAsStream(resourcePath)) {
             if (is == null) throw new RuntimeException("Native lib not found: " + resourcePath);
+            return is.readAllBytes();
+        }
+    }
 
-            Path tempDir = Files.createTempDirectory("live2d_native");
-            File tempFile = tempDir.resolve(libName).toFile();
-            tempFile.deleteOnExit();
+    private static String readHash(String resourcePath) throws IOException {
+        try (InputStream is = LibraryLoader.class.getResourceAsStream(resourcePath)) {
+            if (is == null) return null;
+            String hash = new String(is.readAllBytes(), StandardCharsets.US_ASCII).trim();
+            return hash.matches("[0-9a-f]{64}") ? hash : null;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-            Files.copy(is, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            System.load(tempFile.getAbsolutePath());
-            loaded = true;
+    // All shaders in one resource, written by build.py. Returns null when running without it
+    // (e.g. from an IDE), shaders are then fetched one by one through loadResource.
+    static ByteBuffer readShaderBundle() {
+        try (InputStream is = LibraryLoader.class.getResourceAsStream("/live2d/shaders.bin")) {
+            if (is == null) return null;
+            byte[] bytes = is.readAllBytes();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer;
         } catch (IOException e) {
-            throw new RuntimeException("Failed to extract native lib", e);
+            return null;
         }
     }
 
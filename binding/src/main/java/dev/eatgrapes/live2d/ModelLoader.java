@@ -0,0 +1,236 @@
+package dev.eatgrapes.live2d;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Loads a model3.json and everything it references in parallel: every file is read concurrently,
+// the moc is revived (with a consistency check) and expressions and motions are parsed on the
+// executor. Only CubismModelBundle.finish() has to run on the GL thread. The model's hit areas
+// are set from the model3.json.
+//
+// Parsing registers ids with the framework, which isn't thread-safe, so that part is serialized
+// natively across loads. Reading files and reviving the moc are not.
+public class ModelLoader {
+    private final Executor executor;
+    private final boolean checkConsistency;
+    private final CubismTextureLoader textures;
+
+    public ModelLoader() {
+        this(DefaultExecutor.INSTANCE, true);
+    }
+
+    public ModelLoader(Executor executor) {
+        this(executor, true);
+    }
+
+    public ModelLoader(Executor executor, boolean checkConsistency) {
+        this(executor, checkConsistency, null);
+    }
+
+    // With a texture loader, textures are decoded in parallel as well and CubismModelBundle.finish()
+    // only uploads them.
+    public ModelLoader(Executor executor, boolean checkConsistency, CubismTextureLoader textures) {
+        if (executor == null) throw new IllegalArgumentException("Executor must not be null");
+        this.executor = executor;
+        this.checkConsistency = checkConsistency;
+        this.textures = textures;
+    }
+
+    // Virtual threads when the runtime has them (JDK 21+), otherwise a cached daemon pool.
+    public static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    // Files are memory-mapped and resolved relative to the model3.json.
+    public CompletableFuture<CubismModelBundle> load(Path model3Json) {
+        Path dir = model3Json.toAbsolutePath().getParent();
+        return load(model3Json.getFileName().toString(), file -> Buffers.map(dir.resolve(file)));
+    }
+
+    // Same as load(Path) for a model packaged as resources, e.g. "model/Hiyori/Hiyori.model3.json".
+    public CompletableFuture<CubismModelBundle> loadResource(ClassLoader loader, String model3Json) {
+        int slash = model3Json.lastIndexOf('/');
+        String dir = model3Json.substring(0, slash + 1);
+        return load(model3Json.substring(slash + 1), file -> readResource(loader, dir + file));
+    }
+
+    private interface Source {
+        ByteBuffer read(String file) throws IOException;
+    }
+
+    private CompletableFuture<CubismModelBundle> load(String model3Json, Source source) {
+        Created created = new Created();
+        return read(source, model3Json)
+                .thenCompose(json -> assemble(Json.parse(json), source, created))
+                .whenComplete((bundle, error) -> {
+                    if (error != null) created.closeAll();
+                });
+    }
+
+    private CompletableFuture<CubismModelBundle> assemble(Object settings, Source source, Created created) {
+        Map<String, Object> refs = Json.object(settings, "FileReferences");
+        String moc = Json.string(refs, "Moc");
+        if (moc == null) throw new IllegalArgumentException("model3.json has no FileReferences.Moc");
+
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        CompletableFuture<CubismModelDefinition> definition = read(source, moc)
+                .thenApplyAsync(buffer -> created.add(new CubismModelDefinition(buffer, checkConsistency)), executor);
+        pending.add(definition);
+
+        // Physics and pose are copied as-is and parsed per instance, so they don't need the executor.
+        String physics = Json.string(refs, "Physics");
+        if (physics != null) pending.add(read(source, physics).thenAcceptBoth(definition, (buffer, def) -> def.loadPhysics(buffer)));
+        String pose = Json.string(refs, "Pose");
+        if (pose != null) pending.add(read(source, pose).thenAcceptBoth(definition, (buffer, def) -> def.loadPose(buffer)));
+
+        List<String> expressionNames = new ArrayList<>();
+        List<Object> expressions = Json.array(refs, "Expressions");
+        if (expressions != null) {
+            for (Object expression : expressions) {
+                String name = Json.string(expression, "Name");
+                String file = Json.string(expression, "File");
+                if (name == null || file == null) continue;
+                expressionNames.add(name);
+                pending.add(read(source, file).thenAcceptBothAsync(definition, (buffer, def) -> def.loadExpression(buffer, name), executor));
+            }
+        }
+
+        Map<String, List<CompletableFuture<CubismMotion>>> motionFutures = new LinkedHashMap<>();
+        Map<String, Object> motions = Json.object(refs, "Motions");
+        if (motions != null) {
+            for (String group : motions.keySet()) {
+                List<CompletableFuture<CubismMotion>> futures = new ArrayList<>();
+                List<Object> entries = Json.array(motions, group);
+                if (entries != null) {
+                    for (Object entry : entries) {
+                        String file = Json.string(entry, "File");
+                        if (file == null) continue;
+                        CompletableFuture<CubismMotion> motion = read(source, file)
+                                .thenApplyAsync(buffer -> created.add(new CubismMotion(buffer, false)), executor);
+                        futures.add(motion);
+                        pending.add(motion);
+                    }
+                }
+                motionFutures.put(group, futures);
+            }
+        }
+
+        Map<String, String> hitAreas = new LinkedHashMap<>();
+        List<Object> hitAreaEntries = Json.array(settings, "HitAreas");
+        if (hitAreaEntries != null) {
+            for (Object area : hitAreaEntries) {
+                String name = Json.string(area, "Name");
+                String id = Json.string(area, "Id");
+                if (name != null && id != null) hitAreas.put(name, id);
+            }
+        }
+
+        List<String> texturePaths = new ArrayList<>();
+        List<CompletableFuture<ByteBuffer>> textureFutures = new ArrayList<>();
+        List<CompletableFuture<CubismTextureImage>> imageFutures = new ArrayList<>();
+        List<Object> textureFiles = Json.array(refs, "Textures");
+        if (textureFiles != null) {
+            for (Object texture : textureFiles) {
+                if (!(texture instanceof String)) throw new IllegalArgumentException("Texture path must be a string");
+                texturePaths.add((String) texture);
+                CompletableFuture<ByteBuffer> data = read(source, (String) texture);
+                textureFutures.add(data);
+                pending.add(data);
+                if (textures != null) {
+                    CompletableFuture<CubismTextureImage> image = data.thenApplyAsync(textures::decode, executor);
+                    imageFutures.add(image);
+                    pending.add(image);
+                }
+            }
+        }
+
+        // allOf only completes once every task has finished, so a failure never races a task
+        // that is still creating native objects.
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            CubismModelDefinition def = definition.join();
+            CubismUserModel model = created.add(def.createModel());
+            model.setHitAreas(hitAreas);
+
+            Map<String, List<CubismMotion>> motionGroups = new LinkedHashMap<>();
+            for (Map.Entry<String, List<CompletableFuture<CubismMotion>>> group : motionFutures.entrySet()) {
+                List<CubismMotion> list = new ArrayList<>();
+                for (CompletableFuture<CubismMotion> motion : group.getValue()) list.add(motion.join());
+                motionGroups.put(group.getKey(), Collections.unmodifiableList(list));
+            }
+
+            ByteBuffer[] textureData = new ByteBuffer[textureFutures.size()];
+            for (int i = 0; i < textureData.length; i++) textureData[i] = textureFutures.get(i).join();
+            CubismTextureImage[] images = null;
+            if (textures != null) {
+                images = new CubismTextureImage[imageFutures.size()];
+                for (int i = 0; i < images.length; i++) images[i] = imageFutures.get(i).join();
+            }
+
+            return new CubismModelBundle(def, model, Collections.unmodifiableMap(motionGroups),
+                    Collections.unmodifiableList(expressionNames), Collections.unmodifiableList(texturePaths), textureData, images);
+        });
+    }
+
+    private CompletableFuture<ByteBuffer> read(Source source, String file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return source.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + file, e);
+            }
+        }, executor);
+    }
+
+    private static ByteBuffer readResource(ClassLoader loader, String name) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            if (in == null) throw new IOException("Resource not found: " + name);
+            byte[] bytes = in.readAllBytes();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            return buffer;
+        }
+    }
+
+    // Native objects created by a load that may still fail.
+    private static final class Created {
+        private final List<Native> objects = new ArrayList<>();
+
+        synchronized <T extends Native> T add(T object) {
+            objects.add(object);
+            return object;
+        }
+
+        synchronized void closeAll() {
+            // Reverse order: instances and motions before the definition they came from.
+            for (int i = objects.size() - 1; i >= 0; i--) objects.get(i).close();
+            objects.clear();
+        }
+    }
+
+    private static final class DefaultExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(r, "live2d-model-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+}
@@ -1,17 +1,76 @@
 package dev.eatgrapes.live2d;
 
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+// Methods that hand _ptr to native code end with Reference.reachabilityFence(this) in a finally
+// block; otherwise the object can become unreachable, and be cleaned, while the call still runs.
 public abstract class Native implements AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+
     protected final long _ptr;
+    private final Owner owner;
+    private final Cleaner.Cleanable cleanable;
 
     protected Native(long ptr) {
+        this(ptr, null);
+    }
+
+    // release runs exactly once: from release(), or on the cleaner thread once the object and
+    // every buffer passed to keepAlive() are collected. It must not hold on to this object.
+    @SuppressWarnings("this-escape")
+    protected Native(long ptr, LongConsumer release) {
         if (ptr == 0) throw new RuntimeException("Native pointer is null");
         this._ptr = ptr;
+        this.owner = release != null ? new Owner(ptr, release) : null;
+        this.cleanable = owner != null ? CLEANER.register(this, owner) : null;
     }
 
     public long getPtr() {
         return _ptr;
     }
 
+    // For direct buffers over memory this object owns: the cleaner leaves the memory alone while
+    // the buffer, or any view derived from it, is still reachable. close() frees it regardless.
+    protected final ByteBuffer keepAlive(ByteBuffer view) {
+        if (view != null && owner != null) {
+            owner.holders.incrementAndGet();
+            CLEANER.register(view, owner);
+        }
+        return view;
+    }
+
+    protected final void release() {
+        if (cleanable == null) return;
+        cleanable.clean();
+        owner.free();
+    }
+
     @Override
     public abstract void close();
-}
\ No newline at end of file
+
+    // Runs once for the object and once for every kept-alive buffer as each becomes unreachable.
+    private static final class Owner implements Runnable {
+        final AtomicInteger holders = new AtomicInteger(1);
+        private final AtomicBoolean freed = new AtomicBoolean();
+        private final long ptr;
+        private final LongConsumer release;
+
+        Owner(long ptr, LongConsumer release) {
+            this.ptr = ptr;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            if (holders.decrementAndGet() == 0) free();
+        }
+
+        void free() {
+            if (freed.compareAndSet(false, true)) release.accept(ptr);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package dev.eatgrapes.live2d;
+
+public final class ParameterHandle {
+    private final CubismUserModel model;
+    private final int index;
+
+    ParameterHandle(CubismUserModel model, int index) {
+        this.model = model;
+        this.index = index;
+    }
+
+    public int getIndex() { return index; }
+    public String getId() { return model.getParameterId(index); }
+    public float getMinimumValue() { return model.getParameterMinimumValue(index); }
+    public float getMaximumValue() { return model.getParameterMaximumValue(index); }
+    public float getDefaultValue() { return model.getParameterDefaultValue(index); }
+
+    public void set(float value) { model.setParameterValue(index, value); }
+    public float get() { return model.getParameterValue(index); }
+}
@@ -0,0 +1,256 @@
+package dev.eatgrapes.live2d;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Decodes non-interlaced PNGs of any color type into straight-alpha RGBA8. Written against the
+// spec rather than pulling in a dependency; Cubism Editor only exports 8-bit RGBA, the other
+// formats are here so hand-edited textures still load.
+final class PngDecoder {
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    private PngDecoder() {}
+
+    static CubismTextureImage decode(ByteBuffer data) {
+        ByteBuffer in = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < 8 || in.getLong() != SIGNATURE) throw new IllegalArgumentException("Not a PNG file");
+
+        int width = 0, height = 0, bitDepth = 0, colorType = -1;
+        byte[] palette = null, transparency = null;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream(in.remaining());
+        byte[] chunk = new byte[8192];
+        while (true) {
+            if (in.remaining() < 12) throw new IllegalArgumentException("Truncated PNG");
+            int length = in.getInt();
+            int type = in.getInt();
+            int start = in.position();
+            if (length < 0 || length > in.remaining() - 4) throw new IllegalArgumentException("Truncated PNG");
+            if (type == IEND) break;
+            switch (type) {
+                case IHDR:
+                    width = in.getInt();
+                    height = in.getInt();
+                    bitDepth = in.get() & 0xFF;
+                    colorType = in.get() & 0xFF;
+                    in.get();
+                    in.get();
+                    if (in.get() != 0) throw new IllegalArgumentException("Interlaced PNGs are not supported");
+                    break;
+                case PLTE:
+                    palette = bytes(in, length);
+                    break;
+                case TRNS:
+                    transparency = bytes(in, length);
+                    break;
+                case IDAT:
+                    for (int left = length; left > 0; ) {
+                        int n = Math.min(left, chunk.length);
+                        in.get(chunk, 0, n);
+                        idat.write(chunk, 0, n);
+                        left -= n;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            in.position(start + length + 4);
+        }
+
+        int channels = channels(colorType, bitDepth);
+        if (width <= 0 || height <= 0 || (long) width * height * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid PNG size " + width + "x" + height);
+        }
+        if (colorType == 3 && palette == null) throw new IllegalArgumentException("Indexed PNG without a palette");
+
+        int stride = (int) (((long) width * channels * bitDepth + 7) / 8);
+        int bpp = Math.max(1, channels * bitDepth / 8);
+        byte[] current = new byte[stride + 1];
+        byte[] previous = new byte[stride + 1];
+        byte[] rgba = new byte[width * 4];
+        ByteBuffer out = ByteBuffer.allocateDirect(width * height * 4);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(idat.toByteArray());
+            for (int y = 0; y < height; y++) {
+                inflateFully(inflater, current);
+                unfilter(current, previous, bpp, stride);
+                toRgba(current, rgba, width, colorType, bitDepth, palette, transparency);
+                out.put(rgba);
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+        } finally {
+            inflater.end();
+        }
+        out.flip();
+        return new CubismTextureImage(width, height, new ByteBuffer[] { out });
+    }
+
+    private static int channels(int colorType, int bitDepth) {
+        switch (colorType) {
+            case 0:
+                if (bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16) return 1;
+                break;
+            case 3:
+                if (bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8) return 1;
+                break;
+            case 2:
+            case 4:
+            case 6:
+                if (bitDepth == 8 || bitDepth == 16) return colorType == 2 ? 3 : colorType == 4 ? 2 : 4;
+                break;
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("Unsupported PNG format: color type " + colorType + ", bit depth " + bitDepth);
+    }
+
+    private static byte[] bytes(ByteBuffer in, int length) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void inflateFully(Inflater inflater, byte[] row) {
+        try {
+            for (int off = 0; off < row.length; ) {
+                int n = inflater.inflate(row, off, row.length - off);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated PNG image data");
+                }
+                off += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt PNG image data", e);
+        }
+    }
+
+    // Rows start with their filter type byte; pixel data begins at index 1 in both arrays.
+    private static void unfilter(byte[] row, byte[] prev, int bpp, int stride) {
+        int filter = row[0];
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = 1 + bpp; i <= stride; i++) row[i] += row[i - bpp];
+                break;
+            case 2:
+                for (int i = 1; i <= stride; i++) row[i] += prev[i];
+                break;
+            case 3:
+                for (int i = 1; i <= stride; i++) {
+                    int left = i > bpp ? row[i - bpp] & 0xFF : 0;
+                    row[i] = (byte) (row[i] + ((left + (prev[i] & 0xFF)) >>> 1));
+                }
+                break;
+            case 4:
+                for (int i = 1; i <= stride; i++) {
+                    int a = i > bpp ? row[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i > bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+                    row[i] = (byte) (row[i] + (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid PNG filter type " + filter);
+        }
+    }
+
+    private static void toRgba(byte[] row, byte[] out, int width, int colorType, int bitDepth, byte[] palette, byte[] trns) {
+        switch (colorType) {
+            case 6:
+                if (bitDepth == 8) {
+                    System.arraycopy(row, 1, out, 0, width * 4);
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        out[x * 4] = row[1 + x * 8];
+                        out[x * 4 + 1] = row[1 + x * 8 + 2];
+                        out[x * 4 + 2] = row[1 + x * 8 + 4];
+                        out[x * 4 + 3] = row[1 + x * 8 + 6];
+                    }
+                }
+                break;
+            case 2: {
+                int size = bitDepth / 8 * 3;
+                for (int x = 0; x < width; x++) {
+                    int r = sample(row, x * 3, bitDepth), g = sample(row, x * 3 + 1, bitDepth), b = sample(row, x * 3 + 2, bitDepth);
+                    boolean transparent = trns != null && trns.length >= 6
+                            && r == u16(trns, 0) && g == u16(trns, 2) && b == u16(trns, 4);
+                    int p = 1 + x * size;
+                    out[x * 4] = row[p];
+                    out[x * 4 + 1] = row[p + size / 3];
+                    out[x * 4 + 2] = row[p + size / 3 * 2];
+                    out[x * 4 + 3] = (byte) (transparent ? 0 : 255);
+                }
+                break;
+            }
+            case 4: {
+                int size = bitDepth / 8;
+                for (int x = 0; x < width; x++) {
+                    byte v = row[1 + x * 2 * size];
+                    out[x * 4] = v;
+                    out[x * 4 + 1] = v;
+                    out[x * 4 + 2] = v;
+                    out[x * 4 + 3] = row[1 + (x * 2 + 1) * size];
+                }
+                break;
+            }
+            case 0: {
+                int max = (1 << Math.min(bitDepth, 8)) - 1;
+                int key = trns != null && trns.length >= 2 ? u16(trns, 0) : -1;
+                for (int x = 0; x < width; x++) {
+                    int s = sample(row, x, bitDepth);
+                    byte v = (byte) (bitDepth == 16 ? s >>> 8 : s * 255 / max);
+                    out[x * 4] = v;
+                    out[x * 4 + 1] = v;
+                    out[x * 4 + 2] = v;
+                    out[x * 4 + 3] = (byte) (s == key ? 0 : 255);
+                }
+                break;
+            }
+            case 3:
+                for (int x = 0; x < width; x++) {
+                    int i = sample(row, x, bitDepth);
+                    if (i * 3 + 2 < palette.length) {
+                        out[x * 4] = palette[i * 3];
+                        out[x * 4 + 1] = palette[i * 3 + 1];
+                        out[x * 4 + 2] = palette[i * 3 + 2];
+                    } else {
+                        out[x * 4] = out[x * 4 + 1] = out[x * 4 + 2] = 0;
+                    }
+                    out[x * 4 + 3] = trns != null && i < trns.length ? trns[i] : (byte) 255;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Sample index within the row (not counting the filter byte) at the given bit depth.
+    private static int sample(byte[] row, int index, int bitDepth) {
+        switch (bitDepth) {
+            case 8: return row[1 + index] & 0xFF;
+            case 16: return u16(row, 1 + index * 2);
+            default: {
+                int bit = index * bitDepth;
+                return ((row[1 + (bit >>> 3)] & 0xFF) >>> (8 - bitDepth - (bit & 7))) & ((1 << bitDepth) - 1);
+            }
+        }
+    }
+
+    private static int u16(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
@@ -1,3 +1,6 @@
 module dev.eatgrapes.live2d {
+    requires java.management;
+    requires jdk.jfr;
+
     exports dev.eatgrapes.live2d;
-}
\ No newline at end of file
+}
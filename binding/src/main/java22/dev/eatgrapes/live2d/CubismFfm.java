@@ -0,0 +1,18 @@
+package dev.eatgrapes.live2d;
+
+// java.lang.foreign backend for the hot CubismUserModel calls; null unless picked with
+// -Dlive2d.backend=ffm and the downcalls link. Must keep the same members as the base version,
+// or jar rejects the multi-release jar.
+interface CubismFfm {
+    CubismFfm INSTANCE = CubismFfmDowncalls.load();
+
+    int update(long ptr, float deltaTime);
+    void draw(long ptr, float[] mvp);
+    void setParameter(long ptr, int index, float value);
+    float getParameter(long ptr, int index);
+    void setParameter(long ptr, String id, float value);
+    float getParameter(long ptr, String id);
+    void setDragging(long ptr, float x, float y);
+    boolean isStarted();
+    boolean isInitialized();
+}
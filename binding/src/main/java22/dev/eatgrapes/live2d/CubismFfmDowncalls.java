@@ -0,0 +1,149 @@
+package dev.eatgrapes.live2d;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.*;
+
+// CubismFfm over java.lang.foreign, picked with -Dlive2d.backend=ffm. Calls go to the plain C
+// entry points of the already loaded library instead of JNI functions: no JNIEnv, no pinning,
+// and strings are encoded straight into native memory.
+//
+// Parameter access and dragging only touch model memory, so they are critical downcalls that
+// skip the thread state transition. update() and draw() are not: they can log through a Java
+// upcall and draw() can run for a long time, which critical calls must not do.
+//
+// Needs --enable-native-access=dev.eatgrapes.live2d (or ALL-UNNAMED on the class path) to run
+// without a warning. Any failure to link falls back to JNI.
+final class CubismFfmDowncalls implements CubismFfm {
+    private final MethodHandle update, draw, setParameter, getParameter, setParameterId, getParameterId, setDragging;
+    private final MethodHandle isStarted, isInitialized;
+    // draw() is render-thread only, but there may be more than one render thread.
+    private final ThreadLocal<MemorySegment> mvp = ThreadLocal.withInitial(() -> Arena.global().allocate(JAVA_FLOAT, 16));
+
+    static CubismFfm load() {
+        if (!"ffm".equalsIgnoreCase(System.getProperty("live2d.backend"))) return null;
+        LibraryLoader.load();
+        try {
+            return new CubismFfmDowncalls(SymbolLookup.loaderLookup());
+        } catch (RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private CubismFfmDowncalls(SymbolLookup lookup) {
+        Linker linker = Linker.nativeLinker();
+        Linker.Option critical = Linker.Option.critical(false);
+        update = linker.downcallHandle(symbol(lookup, "live2d_model_update"), FunctionDescriptor.of(JAVA_INT, JAVA_LONG, JAVA_FLOAT));
+        draw = linker.downcallHandle(symbol(lookup, "live2d_model_draw"), FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS));
+        setParameter = linker.downcallHandle(symbol(lookup, "live2d_model_set_parameter"),
+                FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_INT, JAVA_FLOAT), critical);
+        getParameter = linker.downcallHandle(symbol(lookup, "live2d_model_get_parameter"),
+                FunctionDescriptor.of(JAVA_FLOAT, JAVA_LONG, JAVA_INT), critical);
+        setParameterId = linker.downcallHandle(symbol(lookup, "live2d_model_set_parameter_id"),
+                FunctionDescriptor.ofVoid(JAVA_LONG, ADDRESS, JAVA_FLOAT));
+        getParameterId = linker.downcallHandle(symbol(lookup, "live2d_model_get_parameter_id"),
+                FunctionDescriptor.of(JAVA_FLOAT, JAVA_LONG, ADDRESS));
+        setDragging = linker.downcallHandle(symbol(lookup, "live2d_model_set_dragging"),
+                FunctionDescriptor.ofVoid(JAVA_LONG, JAVA_FLOAT, JAVA_FLOAT), critical);
+        isStarted = linker.downcallHandle(symbol(lookup, "live2d_framework_is_started"), FunctionDescriptor.of(JAVA_INT), critical);
+        isInitialized = linker.downcallHandle(symbol(lookup, "live2d_framework_is_initialized"), FunctionDescriptor.of(JAVA_INT), critical);
+    }
+
+    private static MemorySegment symbol(SymbolLookup lookup, String name) {
+        return lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError("Missing native symbol " + name));
+    }
+
+    @Override
+    public int update(long ptr, float deltaTime) {
+        try {
+            return (int) update.invokeExact(ptr, deltaTime);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void draw(long ptr, float[] mvp) {
+        MemorySegment matrix = this.mvp.get();
+        MemorySegment.copy(mvp, 0, matrix, JAVA_FLOAT, 0, 16);
+        try {
+            draw.invokeExact(ptr, matrix);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setParameter(long ptr, int index, float value) {
+        try {
+            setParameter.invokeExact(ptr, index, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public float getParameter(long ptr, int index) {
+        try {
+            return (float) getParameter.invokeExact(ptr, index);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setParameter(long ptr, String id, float value) {
+        try (Arena arena = Arena.ofConfined()) {
+            setParameterId.invokeExact(ptr, arena.allocateFrom(id), value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public float getParameter(long ptr, String id) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (float) getParameterId.invokeExact(ptr, arena.allocateFrom(id));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setDragging(long ptr, float x, float y) {
+        try {
+            setDragging.invokeExact(ptr, x, y);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public boolean isStarted() {
+        try {
+            return (int) isStarted.invokeExact() != 0;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public boolean isInitialized() {
+        try {
+            return (int) isInitialized.invokeExact() != 0;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -1,27 +1,23 @@
 package dev.eatgrapes.live2d.example;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpServer;
 import dev.eatgrapes.live2d.CubismFramework;
+import dev.eatgrapes.live2d.CubismModelBundle;
+import dev.eatgrapes.live2d.CubismModelPool;
+import dev.eatgrapes.live2d.CubismParameterStream;
+import dev.eatgrapes.live2d.CubismMotion;
+import dev.eatgrapes.live2d.CubismTextureCache;
+import dev.eatgrapes.live2d.CubismTextureImage;
+import dev.eatgrapes.live2d.CubismTextureLoader;
 import dev.eatgrapes.live2d.CubismUserModel;
+import dev.eatgrapes.live2d.ModelLoader;
 import org.lwjgl.opengl.GL;
-import org.lwjgl.stb.STBImage;
 import org.lwjgl.system.MemoryStack;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,16 +25,25 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
 
 public class Main {
     private long window;
     private CubismUserModel model;
-    private final Map<String, List<byte[]>> motionGroups = new HashMap<>();
-    private final List<Integer> loadedTextures = new ArrayList<>();
+    // Parameter writes from the control server's thread go straight into the model's stream
+    // instead of through the task queue. Swapped together with the model.
+    private volatile ParameterInput parameterInput;
+
+    private record ParameterInput(CubismUserModel model, CubismParameterStream stream) {}
+    private Map<String, List<CubismMotion>> motionGroups = new HashMap<>();
+    private final Map<String, Map<String, List<CubismMotion>>> motionGroupsByModel = new HashMap<>();
+    private final Map<CubismUserModel, CubismModelBundle> bundles = new HashMap<>();
+    private final ModelLoader modelLoader = createModelLoader();
+    // Switching back to a recently used model only resets it instead of loading it again.
+    private final CubismModelPool<String> modelPool = new CubismModelPool<>(this::createModel, 3);
     private final float[] mvp = new float[]{1,0,0,0, 0,1,0,0, 0,0,1,0, 0,0,0,1};
     private final ConcurrentLinkedQueue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
     private float modelScale = 1.0f;
+    private float cursorX, cursorY;
 
     public void run() throws Exception {
         init();
@@ -58,7 +63,7 @@ public class Main {
                 String key = id.toLowerCase();
                 if (key.equals("tap_body")) key = "tapbody";
                 
-                List<byte[]> group = null;
+                List<CubismMotion> group = null;
                 for (String k : motionGroups.keySet()) {
                     if (k.equalsIgnoreCase(key)) {
                         group = motionGroups.get(k);
@@ -68,7 +73,7 @@ public class Main {
                 
                 if (group != null && !group.isEmpty()) {
                     int idx = (int) (Math.random() * group.size());
-                    model.startMotion(group.get(idx), 3, false, null);
+                    model.startMotion(group.get(idx), 3, null);
                 }
             });
             t.sendResponseHeaders(200, 0);
@@ -91,9 +96,9 @@ public class Main {
                 if (kv[0].equals("id")) id = kv[1];
                 else if (kv[0].equals("value")) value = Float.parseFloat(kv[1]);
             }
-            String finalId = id;
-            float finalValue = value;
-            taskQueue.add(() -> model.setParameterValue(finalId, finalValue));
+            ParameterInput input = parameterInput;
+            int index = input != null ? input.model().getParameterIndex(id) : -1;
+            if (index >= 0) input.stream().set(index, value);
             t.sendResponseHeaders(200, 0);
             t.close();
         });
@@ -139,9 +144,20 @@ public class Main {
                 float aspect = (float) wb.get(0) / hb.get(0);
                 float nx = (float) (x / (wb.get(0) / 2.0) - 1.0) * aspect;
                 float ny = (float) (1.0 - y / (hb.get(0) / 2.0));
+                cursorX = nx;
+                cursorY = ny;
                 if (model != null) model.setDragging(nx, ny);
             }
         });
+
+        glfwSetMouseButtonCallback(window, (win, button, action, mods) -> {
+            if (model == null || button != GLFW_MOUSE_BUTTON_LEFT || action != GLFW_PRESS) return;
+            String area = model.hitTestArea(cursorX / modelScale, cursorY / modelScale, true);
+            if (area == null) return;
+            System.out.println("Hit: " + area);
+            List<CubismMotion> group = motionGroups.get("Tap" + area);
+            if (group != null && !group.isEmpty()) model.startMotion(group.get((int) (Math.random() * group.size())), 3, null);
+        });
         
         CubismFramework.startUp(msg -> {
             if (!msg.contains("Live2D Cubism SDK Core Version")) {
@@ -149,6 +165,15 @@ public class Main {
             }
         }, CubismFramework.LogLevel.WARNING);
         CubismFramework.initialize();
+
+        modelPool.setEvictionListener((name, evicted) -> {
+            CubismModelBundle bundle = bundles.remove(evicted);
+            if (bundle != null) {
+                for (int tex : bundle.getTextureIds()) CubismTextureImage.deleteTexture(tex);
+                motionGroupsByModel.remove(name);
+                bundle.close();
+            }
+        });
     }
 
     private void setup() throws Exception {
@@ -157,68 +182,49 @@ public class Main {
     
     private void loadModel(String name) throws Exception {
         if (model != null) {
-            model.close();
+            modelPool.release(model);
             model = null;
         }
-        for (int tex : loadedTextures) {
-            glDeleteTextures(tex);
-        }
-        loadedTextures.clear();
-        motionGroups.clear();
-        
-        String baseDir = "/model/" + name + "/";
-        String model3Path = baseDir + name + ".model3.json";
-        
-        Gson gson = new Gson();
-        JsonObject settings;
-        try (InputStream is = getClass().getResourceAsStream(model3Path)) {
-            if (is == null) throw new RuntimeException("Model config not found: " + model3Path);
-            try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
-                settings = gson.fromJson(reader, JsonObject.class);
-            }
-        }
-        
-        model = new CubismUserModel();
-        
-        JsonObject refs = settings.getAsJsonObject("FileReferences");
-        
-        String mocFile = refs.get("Moc").getAsString();
-        model.loadModel(load(baseDir + mocFile));
-        
-        if (refs.has("Pose")) {
-            model.loadPose(load(baseDir + refs.get("Pose").getAsString()));
-        }
-        
-        if (refs.has("Physics")) {
-            model.loadPhysics(load(baseDir + refs.get("Physics").getAsString()));
+        model = modelPool.acquire(name);
+        motionGroups = motionGroupsByModel.getOrDefault(name, new HashMap<>());
+        CubismParameterStream stream = model.getParameterStream();
+        if (stream == null) {
+            stream = new CubismParameterStream(256);
+            model.setParameterStream(stream);
         }
-        
-        model.createRenderer();
-        
-        JsonArray textures = refs.getAsJsonArray("Textures");
-        for (int i = 0; i < textures.size(); i++) {
-            String texFile = textures.get(i).getAsString();
-            model.registerTexture(i, loadTex(baseDir + texFile));
+        parameterInput = new ParameterInput(model, stream);
+    }
+
+    // Decoded textures are cached on disk, so starting the example again skips PNG decoding.
+    private static ModelLoader createModelLoader() {
+        CubismTextureCache cache = null;
+        try {
+            cache = new CubismTextureCache(Path.of(System.getProperty("java.io.tmpdir"), "live2d-texture-cache"));
+        } catch (IOException e) {
+            System.out.println("Texture cache disabled: " + e.getMessage());
         }
-        
-        if (refs.has("Motions")) {
-            JsonObject motionsObj = refs.getAsJsonObject("Motions");
-            for (String groupName : motionsObj.keySet()) {
-                JsonArray groupArr = motionsObj.getAsJsonArray(groupName);
-                List<byte[]> loadedGroup = new ArrayList<>();
-                for (JsonElement elem : groupArr) {
-                    JsonObject m = elem.getAsJsonObject();
-                    String mFile = m.get("File").getAsString();
-                    try {
-                        loadedGroup.add(load(baseDir + mFile));
-                    } catch (Exception e) {
-                    }
-                }
-                motionGroups.put(groupName, loadedGroup);
-            }
+        CubismTextureLoader textures = new CubismTextureLoader(ModelLoader.defaultExecutor(), cache, true);
+        return new ModelLoader(ModelLoader.defaultExecutor(), true, textures);
+    }
+
+    private CubismUserModel createModel(String name) {
+        try {
+            return loadModelFiles(name);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load model " + name, e);
         }
     }
 
+    private CubismUserModel loadModelFiles(String name) throws Exception {
+        String model3Path = "model/" + name + "/" + name + ".model3.json";
+        // Files are read and parsed on background threads; only finish() touches GL.
+        CubismModelBundle bundle = modelLoader.loadResource(Main.class.getClassLoader(), model3Path).join();
+        bundle.finish();
+        bundles.put(bundle.getModel(), bundle);
+        motionGroupsByModel.put(name, bundle.getMotions());
+        return bundle.getModel();
+    }
+
     private void loop() {
         while (!glfwWindowShouldClose(window)) {
             Runnable task;
@@ -243,44 +249,11 @@ public class Main {
     }
 
     private void cleanup() {
-        if (model != null) model.close();
+        if (model != null) modelPool.release(model);
+        modelPool.close();
         CubismFramework.dispose();
         glfwTerminate();
     }
 
-    private byte[] load(String p) throws Exception {
-        try (InputStream is = getClass().getResourceAsStream(p)) {
-            if (is == null) throw new RuntimeException("Resource not found: " + p);
-            return is.readAllBytes(); 
-        }
-    }
-
-    private int loadTex(String p) throws Exception {
-        Path tmp = Files.createTempFile("l2d", ".png");
-        try (InputStream is = getClass().getResourceAsStream(p)) {
-            if (is == null) throw new RuntimeException("Texture not found: " + p);
-            Files.copy(is, tmp, StandardCopyOption.REPLACE_EXISTING); 
-        }
-        int w, h, tex;
-        ByteBuffer img;
-        try (MemoryStack s = MemoryStack.stackPush()) {
-            IntBuffer wb = s.mallocInt(1), hb = s.mallocInt(1), cb = s.mallocInt(1);
-            img = STBImage.stbi_load(tmp.toString(), wb, hb, cb, 4);
-            if (img == null) throw new RuntimeException("Failed to load texture image: " + p);
-            w = wb.get(); h = hb.get();
-        }
-        tex = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, tex);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, w, h, 0, GL_RGBA, GL_UNSIGNED_BYTE, img);
-        STBImage.stbi_image_free(img);
-        Files.delete(tmp);
-        loadedTextures.add(tex);
-        return tex;
-    }
-
     public static void main(String[] args) throws Exception { new Main().run(); }
 }
\ No newline at end of file
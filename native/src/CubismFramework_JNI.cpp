@@ -1,12 +1,20 @@
 #include <jni.h>
 #include <CubismFramework.hpp>
 #include <ICubismAllocator.hpp>
+#include <Id/CubismIdManager.hpp>
+#include "JniWorkerPool.hpp"
+#include "JniAllocator.hpp"
+#include "JniFrameworkLock.hpp"
 #include <cstdlib>
 #include <cstdio>
+#include <cstdint>
+#include <cstring>
+#include <mutex>
 #include <string>
+#include <unordered_map>
+#include <vector>
 
 #ifdef _WIN32
-#include <malloc.h>
 extern "C" void init_gles2_shim();
 #endif
 
@@ -18,7 +26,31 @@ static jmethodID g_loadResourceMethod = nullptr;
 static jclass g_cubismFrameworkClass = nullptr;
 static jmethodID g_onLogMethod = nullptr;
 
+// Shaders handed over by preloadShadersNative, keyed by file name without the directory.
+static std::mutex g_shaderMutex;
+static std::unordered_map<std::string, std::vector<csmByte>> g_shaders;
+
+static csmByte* LoadPreloaded(const std::string& filePath, csmSizeInt* outSize) {
+    std::string name = filePath.substr(filePath.find_last_of("/\\") + 1);
+    std::lock_guard<std::mutex> lock(g_shaderMutex);
+    auto it = g_shaders.find(name);
+    if (it == g_shaders.end()) return nullptr;
+    csmByte* buffer = (csmByte*)malloc(it->second.size() + 1);
+    if (!buffer) return nullptr;
+    memcpy(buffer, it->second.data(), it->second.size());
+    *outSize = static_cast<csmSizeInt>(it->second.size());
+    return buffer;
+}
+
+static uint32_t ReadLe(const unsigned char* p, int bytes) {
+    uint32_t value = 0;
+    for (int i = bytes - 1; i >= 0; i--) value = (value << 8) | p[i];
+    return value;
+}
+
 static csmByte* LoadFile(const std::string filePath, csmSizeInt* outSize) {
+    if (csmByte* preloaded = LoadPreloaded(filePath, outSize)) return preloaded;
+
     JNIEnv* env;
     bool attached = false;
     jint res = g_jvm->GetEnv((void**)&env, JNI_VERSION_1_6);
@@ -49,29 +81,6 @@ static csmByte* LoadFile(const std::string filePath, csmSizeInt* outSize) {
 
 static void ReleaseBytes(csmByte* byteData) { free(byteData); }
 
-class JniAllocator : public ICubismAllocator {
-public:
-    void* Allocate(const csmSizeType size) override { return malloc(size); }
-    void Deallocate(void* memory) override { free(memory); }
-    void* AllocateAligned(const csmSizeType size, const csmUint32 alignment) override {
-#ifdef _WIN32
-        return _aligned_malloc(size, alignment);
-#else
-        void* ptr = nullptr;
-        posix_memalign(&ptr, alignment, size);
-        return ptr;
-#endif
-    }
-    void DeallocateAligned(void* alignedMemory) override {
-#ifdef _WIN32
-        _aligned_free(alignedMemory);
-#else
-        free(alignedMemory);
-#endif
-    }
-};
-
-static JniAllocator allocator;
 static CubismFramework::Option option;
 static bool g_useJavaLogger = false;
 
@@ -121,28 +130,72 @@ JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm, void* reserved) {
     return JNI_VERSION_1_6;
 }
 
+// Bundle written by build.py: "L2DS", u32 count, then per shader u16 name length, name,
+// u32 size, data. All little-endian. A malformed bundle is ignored as a whole.
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismFramework_preloadShadersNative(JNIEnv* env, jclass, jobject bundle, jint length) {
+    const unsigned char* p = (const unsigned char*)env->GetDirectBufferAddress(bundle);
+    if (!p || length < 8 || memcmp(p, "L2DS", 4) != 0) return;
+    const unsigned char* end = p + length;
+    uint32_t count = ReadLe(p + 4, 4);
+    p += 8;
+
+    std::unordered_map<std::string, std::vector<csmByte>> shaders;
+    for (uint32_t i = 0; i < count; i++) {
+        if (end - p < 2) return;
+        uint32_t nameLength = ReadLe(p, 2);
+        p += 2;
+        if ((uint32_t)(end - p) < nameLength + 4) return;
+        std::string name((const char*)p, nameLength);
+        p += nameLength;
+        uint32_t size = ReadLe(p, 4);
+        p += 4;
+        if ((uint32_t)(end - p) < size) return;
+        shaders[name].assign(p, p + size);
+        p += size;
+    }
+
+    std::lock_guard<std::mutex> lock(g_shaderMutex);
+    g_shaders.swap(shaders);
+}
+
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismFramework_startUpNative(JNIEnv* env, jclass clazz, jboolean hasCallback, jint logLevel) {
     g_useJavaLogger = hasCallback;
     option.LogFunction = LogFunction;
     option.LoggingLevel = static_cast<CubismFramework::Option::LogLevel>(logLevel);
     option.LoadFileFunction = LoadFile;
     option.ReleaseBytesFunction = ReleaseBytes;
-    CubismFramework::StartUp(&allocator, &option);
+    CubismFramework::StartUp(GetJniAllocator(), &option);
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismFramework_initialize(JNIEnv* env, jclass clazz) {
+    FrameworkLock lock(FrameworkMutex());
     CubismFramework::Initialize();
+    // CubismMotion registers these lazily on first update; doing it here keeps parallel updates off the id manager's write path.
+    auto* idm = CubismFramework::GetIdManager();
+    idm->GetId("EyeBlink");
+    idm->GetId("LipSync");
+    idm->GetId("Opacity");
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismFramework_dispose(JNIEnv* env, jclass clazz) {
+    JniWorkerPool::instance().shutdown();
     CubismFramework::Dispose();
 }
 
-JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismFramework_isStarted(JNIEnv* env, jclass clazz) {
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismFramework_isStartedNative(JNIEnv* env, jclass clazz) {
+    return CubismFramework::IsStarted();
+}
+
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismFramework_isInitializedNative(JNIEnv* env, jclass clazz) {
+    return CubismFramework::IsInitialized();
+}
+
+// C entry points for the java.lang.foreign backend, see CubismUserModel_JNI.cpp.
+JNIEXPORT int32_t live2d_framework_is_started() {
     return CubismFramework::IsStarted();
 }
 
-JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismFramework_isInitialized(JNIEnv* env, jclass clazz) {
+JNIEXPORT int32_t live2d_framework_is_initialized() {
     return CubismFramework::IsInitialized();
 }
 
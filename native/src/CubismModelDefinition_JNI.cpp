@@ -0,0 +1,91 @@
+#include <jni.h>
+#include "JniModelDefinition.hpp"
+#include "JniBuffers.hpp"
+#include "JniFrameworkLock.hpp"
+#include "JniBinaryAsset.hpp"
+
+using namespace Live2D::Cubism::Framework;
+
+// Reviving a moc doesn't touch the id manager, so this can run in parallel with other loads.
+static jlong CreateDefinition(const csmByte* buffer, csmSizeInt size, bool checkConsistency) {
+    auto* def = new JniModelDefinition();
+    JniMemoryScope scope(def->memory);
+    def->moc = CubismMoc::Create(buffer, size, checkConsistency);
+    if (!def->moc) {
+        def->release();
+        return 0;
+    }
+    return (jlong)def;
+}
+
+extern "C" {
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_createNative(JNIEnv* env, jclass, jbyteArray buffer, jboolean checkConsistency) {
+    jsize len = env->GetArrayLength(buffer);
+    jbyte* data = env->GetByteArrayElements(buffer, nullptr);
+    jlong def = CreateDefinition((const csmByte*)data, len, checkConsistency);
+    env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
+    return def;
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_createDirectNative(JNIEnv* env, jclass, jobject buffer, jint offset, jint length, jboolean checkConsistency) {
+    return CreateDefinition(DirectBytes(env, buffer, offset), length, checkConsistency);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_releaseNative(JNIEnv*, jclass, jlong ptr) {
+    ((JniModelDefinition*)ptr)->release();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadPhysicsNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer) {
+    auto* def = (JniModelDefinition*)ptr;
+    jsize len = env->GetArrayLength(buffer);
+    def->physics.resize(len);
+    env->GetByteArrayRegion(buffer, 0, len, (jbyte*)def->physics.data());
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadPoseNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer) {
+    auto* def = (JniModelDefinition*)ptr;
+    jsize len = env->GetArrayLength(buffer);
+    def->pose.resize(len);
+    env->GetByteArrayRegion(buffer, 0, len, (jbyte*)def->pose.data());
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadPhysicsDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    const csmByte* data = DirectBytes(env, buffer, offset);
+    ((JniModelDefinition*)ptr)->physics.assign(data, data + length);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadPoseDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    const csmByte* data = DirectBytes(env, buffer, offset);
+    ((JniModelDefinition*)ptr)->pose.assign(data, data + length);
+}
+
+static void LoadExpression(JniModelDefinition* def, const csmByte* buffer, csmSizeInt size, const char* name) {
+    JniMemoryScope scope(def->memory);
+    FrameworkLock lock(FrameworkMutex());
+    ACubismMotion* expr = CreateExpression(buffer, size);
+    if (expr) {
+        def->expressions[name] = ExpressionRef(expr, [](ACubismMotion* m) { ACubismMotion::Delete(m); });
+    }
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadExpressionNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer, jstring name) {
+    const char* n = env->GetStringUTFChars(name, nullptr);
+    jsize len = env->GetArrayLength(buffer);
+    jbyte* data = env->GetByteArrayElements(buffer, nullptr);
+    LoadExpression((JniModelDefinition*)ptr, (const csmByte*)data, len, n);
+    env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
+    env->ReleaseStringUTFChars(name, n);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_loadExpressionDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length, jstring name) {
+    const char* n = env->GetStringUTFChars(name, nullptr);
+    LoadExpression((JniModelDefinition*)ptr, DirectBytes(env, buffer, offset), length, n);
+    env->ReleaseStringUTFChars(name, n);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismModelDefinition_getMemoryStatsNative(JNIEnv* env, jclass, jlong ptr, jlongArray out) {
+    WriteMemoryStats(env, out, ((JniModelDefinition*)ptr)->memory);
+}
+
+}
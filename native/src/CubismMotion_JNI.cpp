@@ -0,0 +1,231 @@
+#include <jni.h>
+#include "JniMotion.hpp"
+#include "JniBinaryAsset.hpp"
+#include "JniBuffers.hpp"
+#include "JniStrings.hpp"
+#include "JniFrameworkLock.hpp"
+#include <list>
+#include <mutex>
+#include <unordered_map>
+
+using namespace Live2D::Cubism::Framework;
+
+static uint64_t HashMotion(const csmByte* buffer, csmSizeInt size, bool loop) {
+    uint64_t h = 1469598103934665603ULL;
+    for (csmSizeInt i = 0; i < size; i++) {
+        h ^= buffer[i];
+        h *= 1099511628211ULL;
+    }
+    h ^= ((uint64_t)size << 1) | (loop ? 1 : 0);
+    h *= 1099511628211ULL;
+    return h;
+}
+
+class MotionCache {
+public:
+    MotionRef acquire(const csmByte* buffer, csmSizeInt size, bool loop, uint64_t* outKey) {
+        uint64_t key = HashMotion(buffer, size, loop);
+        if (outKey) *outKey = key;
+
+        {
+            std::lock_guard<std::mutex> lock(_mutex);
+            if (MotionRef cached = touch(key)) {
+                _hits++;
+                return cached;
+            }
+            _misses++;
+        }
+
+        // Parsed without holding the cache lock, so a large motion doesn't hold up every hit.
+        // Declared before the lock below so a copy that lost the race is deleted after unlocking.
+        MotionRef motion = parse(buffer, size, loop, key);
+        if (!motion) return nullptr;
+
+        std::lock_guard<std::mutex> lock(_mutex);
+        if (_capacity == 0) return motion;
+        // Another thread may have parsed the same bytes meanwhile; everyone shares its copy.
+        if (MotionRef cached = touch(key)) return cached;
+        _lru.emplace_front(key, motion);
+        _index[key] = _lru.begin();
+        trim();
+        return motion;
+    }
+
+    MotionRef find(uint64_t key) {
+        std::lock_guard<std::mutex> lock(_mutex);
+        auto it = _index.find(key);
+        return it != _index.end() ? it->second->second : nullptr;
+    }
+
+    void setCapacity(int capacity) {
+        std::lock_guard<std::mutex> lock(_mutex);
+        _capacity = capacity < 0 ? 0 : (size_t)capacity;
+        trim();
+    }
+
+    void clear() {
+        std::lock_guard<std::mutex> lock(_mutex);
+        _lru.clear();
+        _index.clear();
+    }
+
+    void resetStatistics() {
+        std::lock_guard<std::mutex> lock(_mutex);
+        _hits = _misses = _evictions = 0;
+    }
+
+    long long hits() { std::lock_guard<std::mutex> lock(_mutex); return _hits; }
+    long long misses() { std::lock_guard<std::mutex> lock(_mutex); return _misses; }
+    long long evictions() { std::lock_guard<std::mutex> lock(_mutex); return _evictions; }
+    int size() { std::lock_guard<std::mutex> lock(_mutex); return (int)_index.size(); }
+    int capacity() { std::lock_guard<std::mutex> lock(_mutex); return (int)_capacity; }
+
+private:
+    static MotionRef parse(const csmByte* buffer, csmSizeInt size, bool loop, uint64_t key) {
+        MotionRef motion = std::make_shared<SharedMotion>();
+        motion->key = key;
+        JniMemoryScope scope(motion->memory);
+        FrameworkLock frameworkLock(FrameworkMutex());
+        CubismMotion* raw = CreateMotion(buffer, size);
+        if (!raw) return nullptr;
+        raw->SetLoop(loop);
+        motion->motion = raw;
+        // The cached motion never plays, so asking it for the whole timeline is safe and lists
+        // every event it can fire.
+        const csmVector<const csmString*>& events = raw->GetFiredEvent(-1.0f, raw->GetLoopDuration() + 1.0f);
+        for (csmUint32 i = 0; i < events.GetSize(); i++) {
+            motion->events.emplace_back(events[i], InternString(events[i]->GetRawString()));
+        }
+        return motion;
+    }
+
+    // Moves the entry to the front of the LRU list. Callers hold _mutex.
+    MotionRef touch(uint64_t key) {
+        auto it = _index.find(key);
+        if (it == _index.end()) return nullptr;
+        _lru.splice(_lru.begin(), _lru, it->second);
+        return it->second->second;
+    }
+
+    void trim() {
+        while (_index.size() > _capacity) {
+            _index.erase(_lru.back().first);
+            _lru.pop_back();
+            _evictions++;
+        }
+    }
+
+    std::mutex _mutex;
+    std::list<std::pair<uint64_t, MotionRef>> _lru;
+    std::unordered_map<uint64_t, std::list<std::pair<uint64_t, MotionRef>>::iterator> _index;
+    size_t _capacity = 256;
+    long long _hits = 0, _misses = 0, _evictions = 0;
+};
+
+static MotionCache g_motionCache;
+
+MotionRef AcquireMotion(const csmByte* buffer, csmSizeInt size, bool loop, uint64_t* outKey) {
+    return g_motionCache.acquire(buffer, size, loop, outKey);
+}
+
+MotionRef FindMotion(uint64_t key) {
+    return g_motionCache.find(key);
+}
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+// A member-wise copy: the playback state starts out as the parser left it and the curve data
+// pointer is shared. Instances are deleted before the cached motion they were copied from,
+// because each playback holds a reference to it.
+CubismMotion* JniMotionAccess::newInstance(const CubismMotion* motion) {
+    return CSM_NEW CubismMotion(*motion);
+}
+
+void JniMotionAccess::deleteInstance(CubismMotion* instance) {
+    if (!instance) return;
+    instance->_motionData = nullptr;
+    CubismMotion::Delete(instance);
+}
+
+csmVector<const csmString*>& JniMotionAccess::firedEvents(CubismMotion* instance) {
+    return instance->_firedEventValues;
+}
+
+CubismExpressionMotion* JniMotionAccess::newInstance(const CubismExpressionMotion* expression) {
+    return CSM_NEW CubismExpressionMotion(*expression);
+}
+
+}}}
+
+extern "C" {
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismMotion_createNative(JNIEnv* env, jclass, jbyteArray buffer, jboolean loop) {
+    jsize len = env->GetArrayLength(buffer);
+    jbyte* data = env->GetByteArrayElements(buffer, nullptr);
+    uint64_t key = 0;
+    MotionRef motion = AcquireMotion((const csmByte*)data, len, loop, &key);
+    env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
+    if (!motion) return 0;
+    return (jlong) new JniMotion{motion, key};
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismMotion_createDirectNative(JNIEnv* env, jclass, jobject buffer, jint offset, jint length, jboolean loop) {
+    uint64_t key = 0;
+    MotionRef motion = AcquireMotion(DirectBytes(env, buffer, offset), length, loop, &key);
+    if (!motion) return 0;
+    return (jlong) new JniMotion{motion, key};
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMotion_deleteNative(JNIEnv*, jclass, jlong ptr) {
+    delete (JniMotion*)ptr;
+}
+
+JNIEXPORT jfloat JNICALL Java_dev_eatgrapes_live2d_CubismMotion_getDurationNative(JNIEnv*, jclass, jlong ptr) {
+    return ((JniMotion*)ptr)->motion->motion->GetDuration();
+}
+
+JNIEXPORT jfloat JNICALL Java_dev_eatgrapes_live2d_CubismMotion_getLoopDurationNative(JNIEnv*, jclass, jlong ptr) {
+    return ((JniMotion*)ptr)->motion->motion->GetLoopDuration();
+}
+
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismMotion_isLoopNative(JNIEnv*, jclass, jlong ptr) {
+    return ((JniMotion*)ptr)->motion->motion->IsLoop();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMotion_getMemoryStatsNative(JNIEnv* env, jclass, jlong ptr, jlongArray out) {
+    WriteMemoryStats(env, out, ((JniMotion*)ptr)->motion->memory);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_setCapacity(JNIEnv*, jclass, jint capacity) {
+    g_motionCache.setCapacity(capacity);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_getCapacity(JNIEnv*, jclass) {
+    return g_motionCache.capacity();
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_getSize(JNIEnv*, jclass) {
+    return g_motionCache.size();
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_getHits(JNIEnv*, jclass) {
+    return g_motionCache.hits();
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_getMisses(JNIEnv*, jclass) {
+    return g_motionCache.misses();
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_getEvictions(JNIEnv*, jclass) {
+    return g_motionCache.evictions();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_clear(JNIEnv*, jclass) {
+    g_motionCache.clear();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMotionCache_resetStatistics(JNIEnv*, jclass) {
+    g_motionCache.resetStatistics();
+}
+
+}
@@ -0,0 +1,43 @@
+#include <jni.h>
+#include <Rendering/OpenGL/CubismRenderer_OpenGLES2.hpp>
+#include <algorithm>
+
+#ifdef _WIN32
+extern "C" void init_gles2_shim();
+#endif
+
+#ifndef GL_CLAMP_TO_EDGE
+#define GL_CLAMP_TO_EDGE 0x812F
+#endif
+
+extern "C" {
+
+// Levels are tightly packed RGBA8, so the default unpack alignment of 4 always fits.
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismTextureImage_uploadNative(JNIEnv* env, jclass, jobjectArray levels, jint width, jint height) {
+#ifdef _WIN32
+    init_gles2_shim();
+#endif
+    jsize count = env->GetArrayLength(levels);
+    GLuint texture = 0;
+    glGenTextures(1, &texture);
+    glBindTexture(GL_TEXTURE_2D, texture);
+    for (jsize i = 0; i < count; i++) {
+        jobject level = env->GetObjectArrayElement(levels, i);
+        const void* pixels = env->GetDirectBufferAddress(level);
+        glTexImage2D(GL_TEXTURE_2D, i, GL_RGBA, std::max(1, width >> i), std::max(1, height >> i), 0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        env->DeleteLocalRef(level);
+    }
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, count > 1 ? GL_LINEAR_MIPMAP_LINEAR : GL_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+    glBindTexture(GL_TEXTURE_2D, 0);
+    return (jint)texture;
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismTextureImage_deleteTextureNative(JNIEnv*, jclass, jint textureId) {
+    GLuint texture = (GLuint)textureId;
+    glDeleteTextures(1, &texture);
+}
+
+}
@@ -4,11 +4,28 @@
 #include <Rendering/OpenGL/CubismRenderer_OpenGLES2.hpp>
 #include <Motion/CubismMotion.hpp>
 #include <Motion/CubismExpressionMotion.hpp>
+#include <Math/CubismTargetPoint.hpp>
+#include "JniMotion.hpp"
+#include "JniModelDefinition.hpp"
+#include "JniBuffers.hpp"
+#include "JniWorkerPool.hpp"
+#include "JniSoftwareRenderer.hpp"
+#include "JniEventRing.hpp"
+#include "JniStrings.hpp"
+#include "JniAllocator.hpp"
+#include "JniProfiler.hpp"
+#include "JniFrameworkLock.hpp"
+#include "JniDrawableSnapshot.hpp"
+#include "JniModelState.hpp"
+#include "JniBinaryAsset.hpp"
 #include <vector>
 #include <string>
 #include <map>
-#include <mutex>
+#include <cstring>
+#include <memory>
+#include <atomic>
 #include <algorithm>
+#include <cmath>
 
 #ifdef _WIN32
 extern "C" void init_gles2_shim();
@@ -16,135 +33,958 @@ extern "C" void init_gles2_shim();
 
 using namespace Live2D::Cubism::Framework;
 using namespace Live2D::Cubism::Framework::Rendering;
+namespace CubismCore = Live2D::Cubism::Core;
+
+// Level of detail, see CubismLod.
+struct JniLod {
+    int updateInterval = 1;
+    bool physics = true;
+    float physicsStep = 0.0f;
+    bool tracking = true;
+    bool frozen = false;
+};
 
 class JniUserModel : public CubismUserModel {
 public:
-    JniUserModel(JNIEnv* env) {
-        env->GetJavaVM(&_jvm);
+    // The base constructor already allocates, so the memory scope has to be open before the object exists.
+    static JniUserModel* create(JNIEnv* env) {
+        JniMemoryAccount* memory = JniMemoryAccount::create();
+        JniMemoryScope scope(memory);
+        FrameworkLock lock(FrameworkMutex());
+        return new JniUserModel(env, memory);
     }
 
-    void link(JNIEnv* env, jobject obj) {
-        _javaObj = env->NewGlobalRef(obj);
+    JniUserModel(JNIEnv* env, JniMemoryAccount* memory) : _memory(memory) {
+        env->GetJavaVM(&_jvm);
+        // Resolved up front so update() never touches the id manager, which isn't thread-safe.
+        auto* idm = CubismFramework::GetIdManager();
+        _idAngleX = idm->GetId("ParamAngleX");
+        _idAngleY = idm->GetId("ParamAngleY");
+        _idEyeBallX = idm->GetId("ParamEyeBallX");
+        _idEyeBallY = idm->GetId("ParamEyeBallY");
+        _motionManager->SetEventCallback(&JniUserModel::onMotionEvent, this);
     }
 
     ~JniUserModel() {
         JNIEnv* env = getEnv();
-        if (env && _javaObj) env->DeleteGlobalRef(_javaObj);
-        for (auto& it : _motionBuffers) CubismMotion::Delete(it.first);
-        for (auto& it : _expressions) ACubismMotion::Delete(it.second);
+        if (env) for (jobject texture : _softwareTextures) if (texture) env->DeleteGlobalRef(texture);
+        _softwareRenderer.reset();
+        if (_renderModel) {
+            // The renderer points at the render model, so it has to go first.
+            DeleteRenderer();
+            _moc->DeleteModel(_renderModel);
+            _renderModel = nullptr;
+        }
+        if (_motionManager) _motionManager->StopAllMotions();
+        _activeMotions.clear();
+        _activeExpressions.clear();
+        _expressions.clear();
+        if (_definition) {
+            if (_model) _moc->DeleteModel(_model);
+            _model = nullptr;
+            _moc = nullptr;
+            _definition->release();
+        }
+        // Whatever the base destructor frees after this is still charged correctly; the account
+        // stays alive until its last block is gone.
+        _memory->release();
     }
 
-    void loadModelCopy(const csmByte* buffer, csmSizeInt size) {
-        _mocBuffer.assign(buffer, buffer + size);
-        LoadModel(_mocBuffer.data(), (csmSizeInt)_mocBuffer.size());
-        if (_model) _model->SaveParameters();
-    }
+    JniMemoryAccount* memory() { return _memory; }
 
-    void loadPhysicsCopy(const csmByte* buffer, csmSizeInt size) {
-        _physicsBuffer.assign(buffer, buffer + size);
-        LoadPhysics(_physicsBuffer.data(), (csmSizeInt)_physicsBuffer.size());
+    void loadFromDefinition(JniModelDefinition* def) {
+        JniMemoryScope scope(_memory);
+        FrameworkLock lock(FrameworkMutex());
+        def->retain();
+        _definition = def;
+        _moc = def->moc;
+        _model = _moc->CreateModel();
+        if (!_model) return;
+        _layoutHash = 0;
+        _model->SaveParameters();
+        captureInitialState();
+        _modelMatrix = CSM_NEW CubismModelMatrix(_model->GetCanvasWidth(), _model->GetCanvasHeight());
+
+        if (!def->physics.empty()) LoadPhysics(def->physics.data(), (csmSizeInt)def->physics.size());
+        if (!def->pose.empty()) LoadPose(def->pose.data(), (csmSizeInt)def->pose.size());
+        _expressions = def->expressions;
     }
 
-    void loadPoseCopy(const csmByte* buffer, csmSizeInt size) {
-        _poseBuffer.assign(buffer, buffer + size);
-        LoadPose(_poseBuffer.data(), (csmSizeInt)_poseBuffer.size());
+    // The SDK copies the moc into its own aligned block and parses JSON into its own
+    // structures, so none of these keep a reference to the caller's buffer.
+    void loadModel(const csmByte* buffer, csmSizeInt size) {
+        JniMemoryScope scope(_memory);
+        FrameworkLock lock(FrameworkMutex());
+        LoadModel(buffer, size);
+        _layoutHash = 0;
+        if (_model) {
+            _model->SaveParameters();
+            captureInitialState();
+        }
+        // LoadModel() replaces _model, which the software renderer would otherwise keep drawing.
+        if (_softwareRenderer) _softwareRenderer->setModel(_renderModel ? _renderModel : _model);
     }
 
-    void loadExpressionCopy(const csmByte* buffer, csmSizeInt size, const std::string& name) {
-        std::vector<csmByte> exprBuf(buffer, buffer + size);
-        auto* expr = LoadExpression(exprBuf.data(), (csmSizeInt)exprBuf.size(), name.c_str());
-        if (expr) {
-            _expressions[name] = expr;
-            _expressionBuffers[name] = std::move(exprBuf);
+    // Puts the instance back into the state it had right after loading, without touching the moc,
+    // renderer, textures or loaded expressions.
+    void reset() {
+        if (!_model) return;
+        JniMemoryScope scope(_memory);
+
+        _motionManager->StopAllMotions();
+        _activeMotions.clear();
+        if (_expressionManager) _expressionManager->StopAllMotions();
+        _activeExpressions.clear();
+        _events.clear();
+
+        auto* core = _model->GetModel();
+        int parameterCount = _model->GetParameterCount();
+        memcpy(CubismCore::csmGetParameterValues(core), CubismCore::csmGetParameterDefaultValues(core), parameterCount * sizeof(float));
+        if ((int)_initialPartOpacities.size() == _model->GetPartCount()) {
+            memcpy(CubismCore::csmGetPartOpacities(core), _initialPartOpacities.data(), _initialPartOpacities.size() * sizeof(float));
+        }
+
+        if (_pose) _pose->Reset(_model);
+        if (_physics) _physics->Reset();
+        if (_dragManager) {
+            CSM_DELETE(_dragManager);
+            _dragManager = CSM_NEW CubismTargetPoint();
         }
+        _dragX = _dragY = 0.0f;
+        _lodPendingTime = 0.0f;
+        _lodFrom.clear();
+        _lodTo.clear();
+        _physicsTime = 0.0f;
+        _physicsOutputs.clear();
+        _physicsHeld.clear();
+
+        _model->SaveParameters();
+        _parametersDirty = false;
+        updateDrawables();
+        _drawableChanges.assign(_drawableChanges.size(), DrawableChangeMask);
     }
 
-    void setExpression(const std::string& name) {
-        if (_expressions.count(name)) {
-            _expressionManager->StartMotionPriority(_expressions[name], false, 3);
+    enum { StateMagic = 0x4d44324c /* "L2DM" */, StateVersion = 1 };
+    enum { StateInvalid = -1, StateOtherModel = -2, StateDamaged = -3 };
+
+    // Runtime state as a flat blob: parameters (current and saved), part opacities, the motion
+    // and expression queues, dragging, physics particles and the held LOD physics outputs.
+    // Motion times are stored against the instance's own clock and shifted on restore, so a
+    // blob can be restored into another instance of the same model. Returns the size; data is
+    // only written when all of it fits into capacity.
+    size_t writeState(uint8_t* data, size_t capacity) {
+        if (!_model) return 0;
+        // Measured first, the same way getSnapshotSize() does, so a short buffer stays untouched.
+        if (data) {
+            size_t size = writeState(nullptr, 0);
+            if (size > capacity) return size;
         }
+        JniStateWriter out(data, capacity);
+        auto* core = _model->GetModel();
+        float* values = CubismCore::csmGetParameterValues(core);
+        int parameterCount = _model->GetParameterCount();
+
+        out.u32(StateMagic);
+        out.u32(StateVersion);
+        size_t sizeOffset = out.size();
+        out.u32(0);
+        out.u32(layoutHash());
+        out.f32(_motionTime);
+        out.u32(_parametersDirty ? 1 : 0);
+
+        // The values motions are applied to each update live in the model's private save slot.
+        if (data) {
+            _stateScratch.assign(values, values + parameterCount);
+            _model->LoadParameters();
+            out.floats(values, parameterCount);
+            memcpy(values, _stateScratch.data(), parameterCount * sizeof(float));
+        } else {
+            out.floats(values, parameterCount);
+        }
+        out.floats(values, parameterCount);
+        out.floats(CubismCore::csmGetPartOpacities(core), _model->GetPartCount());
+
+        uint32_t motionCount = 0;
+        for (const auto& active : _activeMotions) if (liveEntry(_motionManager, active.handle)) motionCount++;
+        out.u32(motionCount);
+        for (const auto& active : _activeMotions) {
+            CubismMotionQueueEntry* entry = liveEntry(_motionManager, active.handle);
+            if (!entry) continue;
+            out.u64(active.motion->key);
+            out.i32(active.id);
+            out.i32(active.priority);
+            out.i32(active.index);
+            out.u32(active.group >= 0 ? 1 : 0);
+            out.string(active.group >= 0 ? InternedString(active.group) : std::string());
+            writeEntry(out, entry);
+        }
+        out.i32(_motionManager->GetReservePriority());
+
+        uint32_t expressionCount = 0;
+        if (_expressionManager) {
+            for (const auto& active : _activeExpressions) if (liveEntry(_expressionManager, active.handle)) expressionCount++;
+        }
+        out.u32(expressionCount);
+        if (expressionCount > 0) {
+            for (const auto& active : _activeExpressions) {
+                CubismMotionQueueEntry* entry = liveEntry(_expressionManager, active.handle);
+                if (!entry) continue;
+                out.i32(active.id);
+                out.string(InternedString(active.name));
+                writeEntry(out, entry);
+            }
+        }
+
+        out.u32(_dragManager ? 1 : 0);
+        if (_dragManager) JniStateAccess::writeTarget(out, _dragManager);
+        if (_physics) JniStateAccess::writePhysics(out, _physics);
+
+        out.f32(_physicsTime);
+        out.u32((uint32_t)_physicsOutputs.size());
+        for (int i : _physicsOutputs) out.i32(i);
+        out.floats(_physicsHeld.data(), _physicsHeld.size());
+
+        out.patch(sizeOffset, (uint32_t)out.size());
+        return out.size();
     }
 
-    void startMotionCopy(const csmByte* buffer, csmSizeInt size, int priority, bool loop) {
-        std::vector<csmByte> motionBuf(buffer, buffer + size);
-        auto* motion = CubismMotion::Create(motionBuf.data(), (csmSizeInt)motionBuf.size());
-        if (!motion) return;
+    // Returns the number of bytes read, or one of the State* errors. A damaged blob resets the
+    // model rather than leaving it half restored.
+    int readState(const uint8_t* data, size_t size) {
+        if (!_model) return StateOtherModel;
+        JniStateReader header(data, size);
+        if (header.u32() != StateMagic || header.u32() != StateVersion) return StateInvalid;
+        uint32_t total = header.u32();
+        uint32_t hash = header.u32();
+        if (!header.ok() || total > size || total < header.offset()) return StateDamaged;
+        if (hash != layoutHash()) return StateOtherModel;
+
+        JniMemoryScope scope(_memory);
+        JniStateReader in(data + header.offset(), total - header.offset());
+        auto* core = _model->GetModel();
+        float* values = CubismCore::csmGetParameterValues(core);
+        int parameterCount = _model->GetParameterCount();
+
+        float shift = _motionTime - in.f32();
+        bool dirty = (in.u32() & 1) != 0;
+        in.floats(values, parameterCount);
+        _model->SaveParameters();
+        in.floats(values, parameterCount);
+        in.floats(CubismCore::csmGetPartOpacities(core), _model->GetPartCount());
+
+        // Restarting in the original order makes the manager fade out the same older entries the
+        // original queue was fading out. Motions are found among the ones this instance is
+        // playing, then in the motion cache; ones in neither are skipped.
+        std::vector<ActiveMotion> previous;
+        previous.swap(_activeMotions);
+        _motionManager->StopAllMotions();
+        int maxId = 0;
+        uint32_t motionCount = in.u32();
+        for (uint32_t k = 0; k < motionCount && in.ok(); k++) {
+            uint64_t key = in.u64();
+            int id = in.i32(), priority = in.i32(), index = in.i32();
+            bool grouped = in.u32() != 0;
+            std::string group = in.string();
+            MotionRef motion = findMotion(previous, key);
+            CubismMotionQueueEntry* entry = nullptr;
+            if (motion) {
+                entry = _motionManager->GetCubismMotionQueueEntry(playMotion(motion, priority, id, grouped ? InternString(group.c_str()) : -1, index));
+                maxId = std::max(maxId, id);
+            }
+            readEntry(in, entry, shift);
+        }
+        _motionManager->SetReservePriority(in.i32());
 
-        motion->SetLoop(loop);
-        _motionBuffers[motion] = std::move(motionBuf);
-        
-        motion->SetFinishedMotionHandlerAndMotionCustomData([](ACubismMotion* self) {
-            auto* m = static_cast<CubismMotion*>(self);
-            auto* model = static_cast<JniUserModel*>(m->GetFinishedMotionCustomData());
-            model->queueFinishedMotion(m);
-        }, this);
+        if (_expressionManager) _expressionManager->StopAllMotions();
+        _activeExpressions.clear();
+        uint32_t expressionCount = in.u32();
+        for (uint32_t k = 0; k < expressionCount && in.ok(); k++) {
+            int id = in.i32();
+            std::string name = in.string();
+            auto it = _expressions.find(name);
+            CubismMotionQueueEntry* entry = nullptr;
+            if (_expressionManager && it != _expressions.end()) {
+                entry = _expressionManager->GetCubismMotionQueueEntry(playExpression(it->second, id, InternString(name.c_str())));
+                maxId = std::max(maxId, id);
+            }
+            readEntry(in, entry, shift);
+        }
+        _nextHandle = std::max(_nextHandle, maxId + 1);
 
-        _motionManager->StartMotionPriority(motion, false, priority);
+        if (in.u32()) {
+            CubismTargetPoint discard;
+            JniStateAccess::readTarget(in, _dragManager ? _dragManager : &discard);
+        }
+        if (_physics) JniStateAccess::readPhysics(in, _physics);
+
+        _physicsTime = in.f32();
+        uint32_t held = in.u32();
+        if (held > (uint32_t)parameterCount) held = 0;
+        _physicsOutputs.resize(held);
+        _physicsHeld.resize(held);
+        for (uint32_t i = 0; i < held; i++) {
+            _physicsOutputs[i] = in.i32();
+            if (_physicsOutputs[i] < 0 || _physicsOutputs[i] >= parameterCount) _physicsOutputs[i] = 0;
+        }
+        in.floats(_physicsHeld.data(), held);
+
+        if (!in.ok()) {
+            reset();
+            return StateDamaged;
+        }
+
+        _events.clear();
+        _lodPendingTime = 0.0f;
+        _lodFrom.clear();
+        _lodTo.clear();
+        _parametersDirty = dirty;
+        updateDrawables();
+        _drawableChanges.assign(_drawableChanges.size(), DrawableChangeMask);
+        return (int)total;
     }
 
-    void queueFinishedMotion(CubismMotion* motion) {
-        std::lock_guard<std::mutex> lock(_pendingMutex);
-        if (std::find(_pendingDeletion.begin(), _pendingDeletion.end(), motion) == _pendingDeletion.end()) {
-            _pendingDeletion.push_back(motion);
+    // The SDK overwrites its pointer without deleting what was loaded before.
+    void loadPhysics(const csmByte* buffer, csmSizeInt size) {
+        JniMemoryScope scope(_memory);
+        FrameworkLock lock(FrameworkMutex());
+        if (_physics) CubismPhysics::Delete(_physics);
+        _physics = nullptr;
+        _physicsTime = 0.0f;
+        _physicsOutputs.clear();
+        _physicsHeld.clear();
+        LoadPhysics(buffer, size);
+        _layoutHash = 0;
+    }
+
+    void loadPose(const csmByte* buffer, csmSizeInt size) {
+        JniMemoryScope scope(_memory);
+        FrameworkLock lock(FrameworkMutex());
+        if (_pose) CubismPose::Delete(_pose);
+        _pose = nullptr;
+        LoadPose(buffer, size);
+    }
+
+    void loadExpression(const csmByte* buffer, csmSizeInt size, const std::string& name) {
+        JniMemoryScope scope(_memory);
+        FrameworkLock lock(FrameworkMutex());
+        auto* expr = CreateExpression(buffer, size);
+        if (expr) {
+            _expressions[name] = ExpressionRef(expr, [](ACubismMotion* m) { ACubismMotion::Delete(m); });
         }
     }
 
+    // Returns the handle reported in the expression's events, or -1 if no expression has that name.
+    int setExpression(const std::string& name) {
+        auto it = _expressions.find(name);
+        if (it == _expressions.end()) return -1;
+        JniMemoryScope scope(_memory);
+        int id = _nextHandle++;
+        playExpression(it->second, id, InternString(name.c_str()));
+        return id;
+    }
+
+    // Loaded expressions are shared with the definition and other instances, so like motions
+    // each playback gets its own copy.
+    CubismMotionQueueEntryHandle playExpression(const ExpressionRef& expression, int id, int name) {
+        ExpressionInstance instance(JniMotionAccess::newInstance(static_cast<const CubismExpressionMotion*>(expression.get())));
+        auto handle = _expressionManager->StartMotionPriority(instance.get(), false, 3);
+        _activeExpressions.push_back({handle, std::move(instance), id, name});
+        return handle;
+    }
+
+    int startMotion(const csmByte* buffer, csmSizeInt size, int priority, bool loop) {
+        return startMotion(AcquireMotion(buffer, size, loop), priority, -1, -1);
+    }
+
+    // Returns the handle reported in the motion's events, or -1 if the motion couldn't be parsed.
+    int startMotion(const MotionRef& motion, int priority, int group, int index) {
+        if (!motion) return -1;
+        JniMemoryScope scope(_memory);
+        int id = _nextHandle++;
+        playMotion(motion, priority, id, group, index);
+        return id;
+    }
+
+    // Models in an update group run in parallel and may play the same cached motion, so each
+    // playback gets its own instance over the shared curves (see JniMotionAccess).
+    CubismMotionQueueEntryHandle playMotion(const MotionRef& motion, int priority, int id, int group, int index) {
+        MotionInstance instance(JniMotionAccess::newInstance(motion->motion));
+        auto handle = _motionManager->StartMotionPriority(instance.get(), false, priority);
+        _activeMotions.push_back({handle, motion, std::move(instance), id, group, index, priority});
+        return handle;
+    }
+
+    void markParametersDirty() { _parametersDirty = true; }
+
     void update(float dt) {
-        if (!_model) return;
+        _stageStats.beginUpdate();
+        if (!_model || _lod.frozen) return;
+        JniMemoryScope scope(_memory);
+
+        if (_lod.updateInterval <= 1) {
+            simulate(dt);
+            JniStageTimer timer(_stageStats, JniStageStats::ModelUpdate);
+            updateDrawables();
+            return;
+        }
+
+        // Reduced rate: simulate every n-th update with the time that has passed since, and
+        // deform every update with parameters eased from the previous simulated frame to the last one.
+        _lodPendingTime += dt;
+        if (++_lodPhase >= _lod.updateInterval) {
+            _lodPhase = 0;
+            simulate(_lodPendingTime);
+            _lodPendingTime = 0.0f;
+            captureLodTarget();
+        }
+        JniStageTimer timer(_stageStats, JniStageStats::ModelUpdate);
+        updateInterpolated((float)(_lodPhase + 1) / _lod.updateInterval);
+    }
+
+    void setLod(const JniLod& lod) {
+        bool intervalChanged = lod.updateInterval != _lod.updateInterval;
+        _lod = lod;
+        if (_lod.updateInterval < 1) _lod.updateInterval = 1;
+        if (intervalChanged) {
+            // Spread models with the same interval over different frames so the cost doesn't spike.
+            static std::atomic<unsigned> stagger{0};
+            _lodPhase = (int)(stagger.fetch_add(1, std::memory_order_relaxed) % (unsigned)_lod.updateInterval);
+            _lodPendingTime = 0.0f;
+            _lodFrom.clear();
+            _lodTo.clear();
+        }
+        if (!_lod.physics || _lod.physicsStep <= 0.0f) {
+            _physicsTime = 0.0f;
+            _physicsOutputs.clear();
+            _physicsHeld.clear();
+        }
+    }
+
+    JniStageStats& stageStats() { return _stageStats; }
+
+    // Motions, expressions, pose, dragging and physics, without deforming the mesh.
+    void simulate(float dt) {
+        if (_parametersDirty) {
+            _model->SaveParameters();
+            _parametersDirty = false;
+        }
 
         {
-            std::lock_guard<std::mutex> lock(_pendingMutex);
-            for (auto* m : _pendingDeletion) {
-                if (_motionBuffers.count(m)) {
-                    _motionBuffers.erase(m);
-                    CubismMotion::Delete(m);
-                    notifyFinished();
-                }
+            JniStageTimer timer(_stageStats, JniStageStats::Motion);
+            // Same clock as the motion and expression managers, which don't expose theirs.
+            _motionTime += dt;
+            for (auto& active : _activeMotions) {
+                JniMotionAccess::firedEvents(active.instance.get()).Clear();
+                active.firedRead = 0;
             }
-            _pendingDeletion.clear();
+            _model->LoadParameters();
+            _motionManager->UpdateMotion(_model, dt);
+            _model->SaveParameters();
+            releaseFinishedMotions();
         }
 
-        _model->LoadParameters();
-        _motionManager->UpdateMotion(_model, dt);
-        _model->SaveParameters();
-
         if (_expressionManager) {
+            JniStageTimer timer(_stageStats, JniStageStats::Expression);
             _expressionManager->UpdateMotion(_model, dt);
+            releaseFinishedExpressions();
         }
 
-        if (_pose) _pose->UpdateParameters(_model, dt);
-        
-        if (_dragManager) {
+        if (_pose) {
+            JniStageTimer timer(_stageStats, JniStageStats::Pose);
+            _pose->UpdateParameters(_model, dt);
+        }
+
+        if (_dragManager && _lod.tracking) {
+            JniStageTimer timer(_stageStats, JniStageStats::Drag);
             _dragManager->Update(dt);
-            auto* idm = CubismFramework::GetIdManager();
-            _model->AddParameterValue(idm->GetId("ParamAngleX"), _dragManager->GetX() * 30.0f);
-            _model->AddParameterValue(idm->GetId("ParamAngleY"), _dragManager->GetY() * 30.0f);
-            _model->AddParameterValue(idm->GetId("ParamEyeBallX"), _dragManager->GetX());
-            _model->AddParameterValue(idm->GetId("ParamEyeBallY"), _dragManager->GetY());
+            _model->AddParameterValue(_idAngleX, _dragManager->GetX() * 30.0f);
+            _model->AddParameterValue(_idAngleY, _dragManager->GetY() * 30.0f);
+            _model->AddParameterValue(_idEyeBallX, _dragManager->GetX());
+            _model->AddParameterValue(_idEyeBallY, _dragManager->GetY());
         }
 
-        if (_physics) _physics->Evaluate(_model, dt);
-        _model->Update();
+        if (_physics && _lod.physics) {
+            JniStageTimer timer(_stageStats, JniStageStats::Physics);
+            if (_lod.physicsStep > 0.0f) evaluatePhysicsFixed(dt);
+            else _physics->Evaluate(_model, dt);
+        }
+    }
+
+    enum { MaxPhysicsSteps = 4 };
+
+    // Physics at its own fixed step: as many steps as the time since the last one allows, at
+    // most MaxPhysicsSteps so a long hitch doesn't stall the frame, with the remainder carried
+    // over. In between, the outputs of the last step are held, because LoadParameters() in the
+    // next update would otherwise drop them and snap everything to rest. The outputs come from
+    // the rig, so ones that happen to keep their value are held too.
+    void evaluatePhysicsFixed(float dt) {
+        float* values = CubismCore::csmGetParameterValues(_model->GetModel());
+        const float step = _lod.physicsStep;
+        _physicsTime += dt;
+        int steps = 0;
+        for (; _physicsTime >= step && steps < MaxPhysicsSteps; steps++) {
+            _physics->Evaluate(_model, step);
+            _physicsTime -= step;
+        }
+        // Further behind than the cap: keep the phase but give up on catching up.
+        if (_physicsTime >= step) _physicsTime = std::fmod(_physicsTime, step);
+
+        if (steps == 0) {
+            for (size_t i = 0; i < _physicsOutputs.size(); i++) values[_physicsOutputs[i]] = _physicsHeld[i];
+            return;
+        }
+        if (_physicsOutputs.empty()) JniStateAccess::physicsOutputs(_physics, _model, _physicsOutputs);
+        _physicsHeld.resize(_physicsOutputs.size());
+        for (size_t i = 0; i < _physicsOutputs.size(); i++) _physicsHeld[i] = values[_physicsOutputs[i]];
+    }
+
+    void captureLodTarget() {
+        const float* values = CubismCore::csmGetParameterValues(_model->GetModel());
+        int count = _model->GetParameterCount();
+        _lodFrom.swap(_lodTo);
+        _lodTo.assign(values, values + count);
+        if (_lodFrom.size() != _lodTo.size()) _lodFrom = _lodTo;
+    }
+
+    // Deforms with the eased parameters but leaves the real values untouched, so the next
+    // simulated update and getParameterValue() see exactly what the simulation produced.
+    // Values set from Java since then are kept on top of the easing.
+    void updateInterpolated(float t) {
+        float* values = CubismCore::csmGetParameterValues(_model->GetModel());
+        int count = _model->GetParameterCount();
+        if ((int)_lodTo.size() != count) {
+            _lodTo.assign(values, values + count);
+            _lodFrom = _lodTo;
+        }
+        if (t >= 1.0f) {
+            updateDrawables();
+            return;
+        }
+        _lodScratch.assign(values, values + count);
+        for (int i = 0; i < count; i++) values[i] += (_lodFrom[i] - _lodTo[i]) * (1.0f - t);
+        updateDrawables();
+        memcpy(values, _lodScratch.data(), count * sizeof(float));
+    }
+
+    // Same as CubismModel::Update(), but collects the drawable change flags before Core resets them.
+    void updateDrawables() {
+        auto* core = _model->GetModel();
+        CubismCore::csmUpdateModel(core);
+
+        int count = _model->GetDrawableCount();
+        if ((int)_drawableChanges.size() != count) _drawableChanges.assign(count, DrawableChangeMask);
+        const CubismCore::csmFlags* flags = CubismCore::csmGetDrawableDynamicFlags(core);
+        for (int i = 0; i < count; i++) _drawableChanges[i] |= flags[i] & DrawableChangeMask;
+        if ((int)_boundsStale.size() == count) {
+            for (int i = 0; i < count; i++) _boundsStale[i] |= flags[i] & CubismCore::csmVertexPositionsDidChange;
+        }
+
+        CubismCore::csmResetDrawableDynamicFlags(core);
+        if (_snapshots) publishSnapshot();
+    }
+
+    // Pipelined models render a second model whose drawables are overwritten from published
+    // snapshots, so update() for the next frame can run on another thread while draw() renders
+    // the last completed one. Only possible before a renderer exists.
+    bool setPipelined(bool pipelined) {
+        if (pipelined == (_renderModel != nullptr)) return true;
+        if (!_model || GetRenderer<CubismRenderer>() || _softwareRenderer) return false;
+        JniMemoryScope scope(_memory);
+        if (pipelined) {
+            _renderModel = _moc->CreateModel();
+            if (!_renderModel) return false;
+            _renderModel->Update();
+            _snapshots.reset(new JniSnapshotExchange());
+            publishSnapshot();
+        } else {
+            _snapshots.reset();
+            _moc->DeleteModel(_renderModel);
+            _renderModel = nullptr;
+        }
+        return true;
+    }
+
+    bool isPipelined() const { return _renderModel != nullptr; }
+
+    // Render thread only. Picks up the newest published frame, if there is one.
+    void applySnapshot() {
+        if (!_snapshots) return;
+        if (const JniDrawableSnapshot* snapshot = _snapshots->acquire()) snapshot->apply(_renderModel->GetModel());
+    }
+
+    // CubismUserModel::CreateRenderer() binds the renderer to _model, so point it at the render
+    // model for the duration of the call.
+    void createRenderer() {
+        CubismModel* model = _model;
+        if (_renderModel) _model = _renderModel;
+        CreateRenderer();
+        _model = model;
+    }
+
+    void readDrawableLayout(jint* vertexCounts, jint* indexCounts, jint* textureIndices, jint* constantFlags, jint* maskCounts) {
+        auto* core = _model->GetModel();
+        int count = _model->GetDrawableCount();
+        const int* vc = CubismCore::csmGetDrawableVertexCounts(core);
+        const int* ic = CubismCore::csmGetDrawableIndexCounts(core);
+        const int* ti = CubismCore::csmGetDrawableTextureIndices(core);
+        const CubismCore::csmFlags* cf = CubismCore::csmGetDrawableConstantFlags(core);
+        const int* mc = CubismCore::csmGetDrawableMaskCounts(core);
+        for (int i = 0; i < count; i++) {
+            vertexCounts[i] = vc[i];
+            indexCounts[i] = ic[i];
+            textureIndices[i] = ti[i];
+            constantFlags[i] = cf[i];
+            maskCounts[i] = mc[i];
+        }
+    }
+
+    void readDrawableMasks(jint* masks) {
+        auto* core = _model->GetModel();
+        int count = _model->GetDrawableCount();
+        const int* mc = CubismCore::csmGetDrawableMaskCounts(core);
+        const int** m = CubismCore::csmGetDrawableMasks(core);
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < mc[i]; j++) *masks++ = m[i][j];
+        }
+    }
+
+    void readDrawableStatic(float* uvs, csmUint16* indices) {
+        auto* core = _model->GetModel();
+        int count = _model->GetDrawableCount();
+        const int* vc = CubismCore::csmGetDrawableVertexCounts(core);
+        const int* ic = CubismCore::csmGetDrawableIndexCounts(core);
+        const CubismCore::csmVector2** uv = CubismCore::csmGetDrawableVertexUvs(core);
+        const unsigned short** idx = CubismCore::csmGetDrawableIndices(core);
+        for (int i = 0; i < count; i++) {
+            if (uvs) {
+                memcpy(uvs, uv[i], vc[i] * sizeof(CubismCore::csmVector2));
+                uvs += vc[i] * 2;
+            }
+            if (indices) {
+                memcpy(indices, idx[i], ic[i] * sizeof(csmUint16));
+                indices += ic[i];
+            }
+        }
+    }
+
+    // Copies only what changed since the last call; returns the number of drawables that changed.
+    int readDrawableDynamic(float* positions, float* opacities, jint* drawOrders, jint* renderOrders,
+                            float* multiplyColors, float* screenColors, jint* changes) {
+        auto* core = _model->GetModel();
+        int count = _model->GetDrawableCount();
+        if ((int)_drawableChanges.size() != count) _drawableChanges.assign(count, DrawableChangeMask);
+
+        const int* vc = CubismCore::csmGetDrawableVertexCounts(core);
+        const CubismCore::csmVector2** pos = CubismCore::csmGetDrawableVertexPositions(core);
+        const float* op = CubismCore::csmGetDrawableOpacities(core);
+        const int* dro = CubismCore::csmGetDrawableDrawOrders(core);
+        const int* ro = CubismCore::csmGetDrawableRenderOrders(core);
+        const CubismCore::csmFlags* dyn = CubismCore::csmGetDrawableDynamicFlags(core);
+
+        int changed = 0, vertexOffset = 0;
+        for (int i = 0; i < count; i++) {
+            csmUint8 c = _drawableChanges[i];
+            if (c) changed++;
+            if (positions && (c & CubismCore::csmVertexPositionsDidChange)) {
+                memcpy(positions + vertexOffset * 2, pos[i], vc[i] * sizeof(CubismCore::csmVector2));
+            }
+            if (opacities && (c & CubismCore::csmOpacityDidChange)) opacities[i] = op[i];
+            if (drawOrders && (c & CubismCore::csmDrawOrderDidChange)) drawOrders[i] = dro[i];
+            if (renderOrders && (c & CubismCore::csmRenderOrderDidChange)) renderOrders[i] = ro[i];
+            if (c & CubismCore::csmBlendColorDidChange) {
+                if (multiplyColors) writeColor(multiplyColors + i * 4, _model->GetDrawableMultiplyColor(i));
+                if (screenColors) writeColor(screenColors + i * 4, _model->GetDrawableScreenColor(i));
+            }
+            if (changes) changes[i] = c | (dyn[i] & CubismCore::csmIsVisible);
+            _drawableChanges[i] = 0;
+            vertexOffset += vc[i];
+        }
+        return changed;
     }
 
     bool isMotionFinished() { return _motionManager->IsFinished(); }
 
-    void notifyFinished() {
-        JNIEnv* env = getEnv();
-        if (!env || !_javaObj) return;
-        jclass cls = env->GetObjectClass(_javaObj);
-        jmethodID mid = env->GetMethodID(cls, "onMotionFinished", "(Ljava/lang/String;)V");
-        jstring name = env->NewStringUTF("motion");
-        env->CallVoidMethod(_javaObj, mid, name);
-        env->DeleteLocalRef(name);
+    // The manager drops finished entries during UpdateMotion(), so by now nothing refers to the
+    // instance any more.
+    void releaseFinishedMotions() {
+        for (auto it = _activeMotions.begin(); it != _activeMotions.end();) {
+            if (_motionManager->IsFinished(it->handle)) {
+                _events.push(JniEventRing::MotionFinished, it->id, it->group, it->index, -1);
+                it = _activeMotions.erase(it);
+            } else {
+                ++it;
+            }
+        }
+    }
+
+    // Expression entries only leave the queue once a newer one has faded in completely.
+    void releaseFinishedExpressions() {
+        for (auto it = _activeExpressions.begin(); it != _activeExpressions.end();) {
+            if (_expressionManager->IsFinished(it->handle)) {
+                _events.push(JniEventRing::ExpressionFinished, it->id, -1, -1, it->name);
+                it = _activeExpressions.erase(it);
+            } else {
+                ++it;
+            }
+        }
+    }
+
+    JniEventRing& events() { return _events; }
+
+    void publishSnapshot() {
+        _snapshots->back().capture(_model->GetModel());
+        _snapshots->publish();
+    }
+
+    void captureInitialState() {
+        const float* opacities = CubismCore::csmGetPartOpacities(_model->GetModel());
+        _initialPartOpacities.assign(opacities, opacities + _model->GetPartCount());
+    }
+
+    void createSoftwareRenderer() {
+        if (_model && !_softwareRenderer) _softwareRenderer.reset(new JniSoftwareRenderer(_renderModel ? _renderModel : _model));
+    }
+
+    JniSoftwareRenderer* getSoftwareRenderer() { return _softwareRenderer.get(); }
+
+    // Holds a global reference so the pixels stay valid for as long as the renderer samples them.
+    void registerSoftwareTexture(JNIEnv* env, int index, jobject buffer, int offset, int width, int height) {
+        if (!_softwareRenderer || index < 0) return;
+        if ((int)_softwareTextures.size() <= index) _softwareTextures.resize(index + 1, nullptr);
+        if (_softwareTextures[index]) env->DeleteGlobalRef(_softwareTextures[index]);
+        _softwareTextures[index] = env->NewGlobalRef(buffer);
+        _softwareRenderer->setTexture(index, DirectBytes(env, buffer, offset), width, height);
     }
 
     bool isHitTransformed(const char* id, float x, float y) {
         if (!_model || !_modelMatrix) return false;
+        FrameworkLock lock(FrameworkMutex());
         return IsHit(CubismFramework::GetIdManager()->GetId(id), _modelMatrix->InvertTransformX(x), _modelMatrix->InvertTransformY(y));
     }
 
+    // Visible drawables under the point, topmost first. Bounds are cached and only recomputed
+    // for drawables whose vertices moved since the last test, so hovering over a model that
+    // isn't updating costs a single pass over the bounds.
+    int hitTest(float x, float y, bool precise, jint* out, int capacity) {
+        if (!prepareHitTest()) return 0;
+        auto* core = _model->GetModel();
+        float mx = _modelMatrix->InvertTransformX(x), my = _modelMatrix->InvertTransformY(y);
+        const CubismCore::csmFlags* dyn = CubismCore::csmGetDrawableDynamicFlags(core);
+        const float* opacities = CubismCore::csmGetDrawableOpacities(core);
+        int count = _model->GetDrawableCount();
+
+        _hits.clear();
+        for (int i = 0; i < count; i++) {
+            if ((dyn[i] & CubismCore::csmIsVisible) && opacities[i] > 0.0f && hitDrawable(core, i, mx, my, precise)) _hits.push_back(i);
+        }
+        const int* renderOrders = CubismCore::csmGetDrawableRenderOrders(core);
+        std::sort(_hits.begin(), _hits.end(), [renderOrders](int a, int b) { return renderOrders[a] > renderOrders[b]; });
+        int n = std::min((int)_hits.size(), capacity);
+        std::copy(_hits.begin(), _hits.begin() + n, out);
+        return (int)_hits.size();
+    }
+
+    // Hit areas are usually invisible drawables, so unlike hitTest() these ignore visibility.
+    void setHitAreas(const jint* drawables, int count) {
+        _hitAreas.assign(drawables, drawables + count);
+    }
+
+    // Indices into the hit areas, ordered like hitTest().
+    int hitTestAreas(float x, float y, bool precise, jint* out, int capacity) {
+        if (!prepareHitTest()) return 0;
+        auto* core = _model->GetModel();
+        float mx = _modelMatrix->InvertTransformX(x), my = _modelMatrix->InvertTransformY(y);
+        int count = _model->GetDrawableCount();
+
+        _hits.clear();
+        for (int k = 0; k < (int)_hitAreas.size(); k++) {
+            int i = _hitAreas[k];
+            if (i >= 0 && i < count && hitDrawable(core, i, mx, my, precise)) _hits.push_back(k);
+        }
+        const int* renderOrders = CubismCore::csmGetDrawableRenderOrders(core);
+        const std::vector<int>& areas = _hitAreas;
+        std::sort(_hits.begin(), _hits.end(), [renderOrders, &areas](int a, int b) { return renderOrders[areas[a]] > renderOrders[areas[b]]; });
+        int n = std::min((int)_hits.size(), capacity);
+        std::copy(_hits.begin(), _hits.begin() + n, out);
+        return (int)_hits.size();
+    }
+
 private:
+    bool prepareHitTest() {
+        if (!_model || !_modelMatrix) return false;
+        int count = _model->GetDrawableCount();
+        if ((int)_boundsStale.size() != count) {
+            _boundsStale.assign(count, 1);
+            _bounds.assign(count * 4, 0.0f);
+        }
+        auto* core = _model->GetModel();
+        const int* vertexCounts = CubismCore::csmGetDrawableVertexCounts(core);
+        const CubismCore::csmVector2** positions = CubismCore::csmGetDrawableVertexPositions(core);
+        for (int i = 0; i < count; i++) {
+            if (!_boundsStale[i]) continue;
+            _boundsStale[i] = 0;
+            float* b = &_bounds[i * 4];
+            if (vertexCounts[i] == 0) {
+                b[0] = b[1] = 1.0f;
+                b[2] = b[3] = -1.0f;
+                continue;
+            }
+            b[0] = b[2] = positions[i][0].X;
+            b[1] = b[3] = positions[i][0].Y;
+            for (int v = 1; v < vertexCounts[i]; v++) {
+                b[0] = std::min(b[0], positions[i][v].X);
+                b[1] = std::min(b[1], positions[i][v].Y);
+                b[2] = std::max(b[2], positions[i][v].X);
+                b[3] = std::max(b[3], positions[i][v].Y);
+            }
+        }
+        return true;
+    }
+
+    bool inBounds(int i, float x, float y) const {
+        const float* b = &_bounds[i * 4];
+        return x >= b[0] && x <= b[2] && y >= b[1] && y <= b[3];
+    }
+
+    // Precise mode tests the mesh triangles and, for clipped drawables, the triangles of their
+    // masks, so a click on the transparent corner of a bounding box or on a clipped-away part misses.
+    bool hitDrawable(const CubismCore::csmModel* core, int i, float x, float y, bool precise) const {
+        if (!inBounds(i, x, y)) return false;
+        if (!precise) return true;
+        if (!inTriangles(core, i, x, y)) return false;
+
+        int maskCount = CubismCore::csmGetDrawableMaskCounts(core)[i];
+        if (maskCount == 0) return true;
+        const int* masks = CubismCore::csmGetDrawableMasks(core)[i];
+        bool inverted = (CubismCore::csmGetDrawableConstantFlags(core)[i] & CubismCore::csmIsInvertedMask) != 0;
+        bool inMask = false;
+        for (int j = 0; j < maskCount && !inMask; j++) {
+            int m = masks[j];
+            inMask = m >= 0 && inBounds(m, x, y) && inTriangles(core, m, x, y);
+        }
+        return inMask != inverted;
+    }
+
+    static bool inTriangles(const CubismCore::csmModel* core, int i, float x, float y) {
+        const CubismCore::csmVector2* v = CubismCore::csmGetDrawableVertexPositions(core)[i];
+        const unsigned short* indices = CubismCore::csmGetDrawableIndices(core)[i];
+        int indexCount = CubismCore::csmGetDrawableIndexCounts(core)[i];
+        for (int t = 0; t + 2 < indexCount; t += 3) {
+            const CubismCore::csmVector2& a = v[indices[t]];
+            const CubismCore::csmVector2& b = v[indices[t + 1]];
+            const CubismCore::csmVector2& c = v[indices[t + 2]];
+            float d1 = (x - b.X) * (a.Y - b.Y) - (a.X - b.X) * (y - b.Y);
+            float d2 = (x - c.X) * (b.Y - c.Y) - (b.X - c.X) * (y - c.Y);
+            float d3 = (x - a.X) * (c.Y - a.Y) - (c.X - a.X) * (y - a.Y);
+            bool negative = d1 < 0.0f || d2 < 0.0f || d3 < 0.0f;
+            bool positive = d1 > 0.0f || d2 > 0.0f || d3 > 0.0f;
+            if (!(negative && positive)) return true;
+        }
+        return false;
+    }
+
+    // Ties a state blob to the parameters, parts and physics rig it was taken from.
+    uint32_t layoutHash() {
+        if (_layoutHash) return _layoutHash;
+        uint32_t h = 2166136261u;
+        auto mix = [&h](const csmString& s) {
+            for (const char* c = s.GetRawString(); *c; c++) h = (h ^ (uint8_t)*c) * 16777619u;
+            h = (h ^ 0xff) * 16777619u;
+        };
+        for (int i = 0; i < _model->GetParameterCount(); i++) mix(_model->GetParameterId(i)->GetString());
+        h = (h ^ 0xfe) * 16777619u;
+        for (int i = 0; i < _model->GetPartCount(); i++) mix(_model->GetPartId(i)->GetString());
+        h = JniStateAccess::hashPhysics(h, _physics);
+        _layoutHash = h ? h : 1;
+        return _layoutHash;
+    }
+
+    static CubismMotionQueueEntry* liveEntry(CubismMotionQueueManager* manager, CubismMotionQueueEntryHandle handle) {
+        CubismMotionQueueEntry* entry = manager->GetCubismMotionQueueEntry(handle);
+        return entry && !entry->IsFinished() ? entry : nullptr;
+    }
+
+    static MotionRef findMotion(const std::vector<ActiveMotion>& playing, uint64_t key) {
+        for (const auto& active : playing) if (active.motion->key == key) return active.motion;
+        return FindMotion(key);
+    }
+
+    static void writeEntry(JniStateWriter& out, CubismMotionQueueEntry* entry) {
+        out.u32((entry->IsStarted() ? 1 : 0) | (entry->IsTriggeredFadeOut() ? 2 : 0));
+        out.f32(entry->GetStartTime());
+        out.f32(entry->GetFadeInStartTime());
+        out.f32(entry->GetEndTime());
+        out.f32(entry->GetStateTime());
+        out.f32(entry->GetStateWeight());
+        out.f32(entry->GetLastCheckEventTime());
+        out.f32(entry->GetFadeOutSeconds());
+    }
+
+    // Negative times mean "not set" to the SDK and stay as they are. Without an entry the
+    // fields are only skipped.
+    static void readEntry(JniStateReader& in, CubismMotionQueueEntry* entry, float shift) {
+        uint32_t flags = in.u32();
+        float start = in.f32(), fadeInStart = in.f32(), end = in.f32();
+        float stateTime = in.f32(), stateWeight = in.f32(), lastEventCheck = in.f32();
+        float fadeOut = in.f32();
+        if (!entry) return;
+        auto shifted = [shift](float t) { return t < 0.0f ? t : std::max(0.0f, t + shift); };
+        entry->IsStarted((flags & 1) != 0);
+        entry->SetStartTime(shifted(start));
+        entry->SetFadeInStartTime(shifted(fadeInStart));
+        entry->SetEndTime(shifted(end));
+        entry->SetState(shifted(stateTime), stateWeight);
+        entry->SetLastCheckEventTime(shifted(lastEventCheck));
+        if (flags & 2) entry->SetFadeout(fadeOut);
+    }
+
+    enum : csmUint8 {
+        DrawableChangeMask = CubismCore::csmVisibilityDidChange | CubismCore::csmOpacityDidChange | CubismCore::csmDrawOrderDidChange |
+                             CubismCore::csmRenderOrderDidChange | CubismCore::csmVertexPositionsDidChange | CubismCore::csmBlendColorDidChange
+    };
+
+    static void writeColor(float* dst, const CubismRenderer::CubismTextureColor& color) {
+        dst[0] = color.R;
+        dst[1] = color.G;
+        dst[2] = color.B;
+        dst[3] = color.A;
+    }
+
+    struct ActiveMotion {
+        CubismMotionQueueEntryHandle handle;
+        MotionRef motion;
+        MotionInstance instance;
+        int id, group, index, priority;
+        // Events of the current update already reported, see onMotionEvent().
+        csmUint32 firedRead = 0;
+    };
+
+    struct ActiveExpression {
+        CubismMotionQueueEntryHandle handle;
+        ExpressionInstance instance;
+        int id, name;
+    };
+
+    // The SDK only hands over the event value, which points into the shared curve data, so two
+    // playbacks of the same motion look alike. The manager builds each entry's fired list right
+    // before reporting its events in order, and simulate() empties the lists beforehand, so the
+    // event belongs to the playback whose list has it next.
+    static void onMotionEvent(const CubismMotionQueueManager*, const csmString& value, void* customData) {
+        auto* self = (JniUserModel*)customData;
+        for (auto& active : self->_activeMotions) {
+            const csmVector<const csmString*>& fired = JniMotionAccess::firedEvents(active.instance.get());
+            if (active.firedRead >= fired.GetSize() || fired[active.firedRead] != &value) continue;
+            active.firedRead++;
+            for (const auto& event : active.motion->events) {
+                if (event.first == &value) {
+                    self->_events.push(JniEventRing::MotionEvent, active.id, active.group, active.index, event.second);
+                    return;
+                }
+            }
+        }
+        self->_events.push(JniEventRing::MotionEvent, -1, -1, -1, InternString(value.GetRawString()));
+    }
+
     JNIEnv* getEnv() {
         JNIEnv* env;
         if (_jvm->GetEnv((void**)&env, JNI_VERSION_1_6) == JNI_EDETACHED) _jvm->AttachCurrentThread((void**)&env, nullptr);
@@ -152,26 +992,81 @@ private:
     }
 
     JavaVM* _jvm;
-    jobject _javaObj = nullptr;
-    std::vector<csmByte> _mocBuffer, _physicsBuffer, _poseBuffer;
-    std::map<CubismMotion*, std::vector<csmByte>> _motionBuffers;
-    std::map<std::string, std::vector<csmByte>> _expressionBuffers;
-    std::map<std::string, ACubismMotion*> _expressions;
-    std::vector<CubismMotion*> _pendingDeletion;
-    std::mutex _pendingMutex;
+    JniMemoryAccount* _memory;
+    std::map<std::string, ExpressionRef> _expressions;
+    JniModelDefinition* _definition = nullptr;
+    std::vector<ActiveMotion> _activeMotions;
+    std::vector<ActiveExpression> _activeExpressions;
+    JniEventRing _events;
+    JniStageStats _stageStats;
+    int _nextHandle = 1;
+    float _motionTime = 0.0f;
+    uint32_t _layoutHash = 0;
+    std::vector<float> _stateScratch;
+    bool _parametersDirty = false;
+    std::vector<csmUint8> _drawableChanges;
+    std::vector<float> _initialPartOpacities;
+    std::unique_ptr<JniSoftwareRenderer> _softwareRenderer;
+    std::vector<jobject> _softwareTextures;
+    CubismModel* _renderModel = nullptr;
+    JniLod _lod;
+    int _lodPhase = 0;
+    float _lodPendingTime = 0.0f;
+    float _physicsTime = 0.0f;
+    std::vector<float> _lodFrom, _lodTo, _lodScratch, _physicsHeld;
+    std::vector<int> _physicsOutputs;
+    std::unique_ptr<JniSnapshotExchange> _snapshots;
+    std::vector<float> _bounds;
+    std::vector<csmUint8> _boundsStale;
+    std::vector<int> _hitAreas, _hits;
+    CubismIdHandle _idAngleX, _idAngleY, _idEyeBallX, _idEyeBallY;
 };
 
+// Shared by the JNI functions and the plain C entry points at the end of this file.
+static CubismIdHandle LookupId(const char* id) {
+    FrameworkLock lock(FrameworkMutex());
+    return CubismFramework::GetIdManager()->GetId(id);
+}
+
+static void SetParameterById(JniUserModel* self, const char* id, float value) {
+    self->GetModel()->SetParameterValue(LookupId(id), value);
+    self->markParametersDirty();
+}
+
+static float GetParameterById(JniUserModel* self, const char* id) {
+    return self->GetModel()->GetParameterValue(LookupId(id));
+}
+
+static void DrawModel(JniUserModel* self, const float* mvp) {
+    auto* r = self->GetRenderer<CubismRenderer_OpenGLES2>();
+    if (!r) return;
+    CubismMatrix44 m;
+    m.SetMatrix(const_cast<float*>(mvp));
+    JniStageTimer timer(self->stageStats(), JniStageStats::Draw);
+    self->applySnapshot();
+    r->SetMvpMatrix(&m);
+    r->DrawModel();
+}
+
+static jobject NewFloatView(JNIEnv* env, const float* data, int count) {
+    if (!data) return nullptr;
+    return env->NewDirectByteBuffer(const_cast<float*>(data), (jlong)count * sizeof(float));
+}
+
 extern "C" {
 
 JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_createNative(JNIEnv* env, jclass) {
-    return (jlong) new JniUserModel(env);
+    return (jlong) JniUserModel::create(env);
 }
 
-JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_linkNative(JNIEnv* env, jobject thiz) {
-    jclass cls = env->GetObjectClass(thiz);
-    jfieldID fid = env->GetFieldID(cls, "_ptr", "J");
-    jlong ptr = env->GetLongField(thiz, fid);
-    ((JniUserModel*)ptr)->link(env, thiz);
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_createFromDefinitionNative(JNIEnv* env, jclass, jlong definitionPtr) {
+    auto* model = JniUserModel::create(env);
+    model->loadFromDefinition((JniModelDefinition*)definitionPtr);
+    if (!model->GetModel()) {
+        delete model;
+        return 0;
+    }
+    return (jlong)model;
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_deleteNative(JNIEnv*, jclass, jlong ptr) {
@@ -181,21 +1076,21 @@ JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_deleteNative(JN
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadModelNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer) {
     jsize len = env->GetArrayLength(buffer);
     jbyte* data = env->GetByteArrayElements(buffer, nullptr);
-    ((JniUserModel*)ptr)->loadModelCopy((const csmByte*)data, len);
+    ((JniUserModel*)ptr)->loadModel((const csmByte*)data, len);
     env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadPhysicsNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer) {
     jsize len = env->GetArrayLength(buffer);
     jbyte* data = env->GetByteArrayElements(buffer, nullptr);
-    ((JniUserModel*)ptr)->loadPhysicsCopy((const csmByte*)data, len);
+    ((JniUserModel*)ptr)->loadPhysics((const csmByte*)data, len);
     env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadPoseNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer) {
     jsize len = env->GetArrayLength(buffer);
     jbyte* data = env->GetByteArrayElements(buffer, nullptr);
-    ((JniUserModel*)ptr)->loadPoseCopy((const csmByte*)data, len);
+    ((JniUserModel*)ptr)->loadPose((const csmByte*)data, len);
     env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
 }
 
@@ -203,22 +1098,51 @@ JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadExpressionN
     const char* n = env->GetStringUTFChars(name, nullptr);
     jsize len = env->GetArrayLength(buffer);
     jbyte* data = env->GetByteArrayElements(buffer, nullptr);
-    ((JniUserModel*)ptr)->loadExpressionCopy((const csmByte*)data, len, n);
+    ((JniUserModel*)ptr)->loadExpression((const csmByte*)data, len, n);
     env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
     env->ReleaseStringUTFChars(name, n);
 }
 
-JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setExpressionNative(JNIEnv* env, jclass, jlong ptr, jstring name) {
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadModelDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    ((JniUserModel*)ptr)->loadModel(DirectBytes(env, buffer, offset), length);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadPhysicsDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    ((JniUserModel*)ptr)->loadPhysics(DirectBytes(env, buffer, offset), length);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadPoseDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    ((JniUserModel*)ptr)->loadPose(DirectBytes(env, buffer, offset), length);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_loadExpressionDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length, jstring name) {
     const char* n = env->GetStringUTFChars(name, nullptr);
-    ((JniUserModel*)ptr)->setExpression(n);
+    ((JniUserModel*)ptr)->loadExpression(DirectBytes(env, buffer, offset), length, n);
     env->ReleaseStringUTFChars(name, n);
 }
 
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setExpressionNative(JNIEnv* env, jclass, jlong ptr, jstring name) {
+    const char* n = env->GetStringUTFChars(name, nullptr);
+    int handle = ((JniUserModel*)ptr)->setExpression(n);
+    env->ReleaseStringUTFChars(name, n);
+    return handle;
+}
+
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_createRendererNative(JNIEnv*, jclass, jlong ptr) {
 #ifdef _WIN32
     init_gles2_shim();
 #endif
-    ((JniUserModel*)ptr)->CreateRenderer();
+    auto* self = (JniUserModel*)ptr;
+    JniMemoryScope scope(self->memory());
+    self->createRenderer();
+}
+
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setPipelinedNative(JNIEnv*, jclass, jlong ptr, jboolean pipelined) {
+    return ((JniUserModel*)ptr)->setPipelined(pipelined);
+}
+
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_isPipelinedNative(JNIEnv*, jclass, jlong ptr) {
+    return ((JniUserModel*)ptr)->isPipelined();
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_registerTextureNative(JNIEnv*, jclass, jlong ptr, jint index, jint textureId) {
@@ -226,6 +1150,56 @@ JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_registerTexture
     if (r) r->BindTexture(index, (GLuint)textureId);
 }
 
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_createSoftwareRendererNative(JNIEnv*, jclass, jlong ptr) {
+    ((JniUserModel*)ptr)->createSoftwareRenderer();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_registerSoftwareTextureNative(JNIEnv* env, jclass, jlong ptr, jint index, jobject rgba, jint offset, jint width, jint height) {
+    ((JniUserModel*)ptr)->registerSoftwareTexture(env, index, rgba, offset, width, height);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setSoftwareRenderOptionsNative(JNIEnv*, jclass, jlong ptr, jboolean multithreaded, jboolean premultipliedOutput) {
+    auto* r = ((JniUserModel*)ptr)->getSoftwareRenderer();
+    if (!r) return;
+    r->setMultithreaded(multithreaded);
+    r->setPremultipliedOutput(premultipliedOutput);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_drawSoftwareNative(JNIEnv* env, jclass, jlong ptr, jfloatArray matrix, jobject target, jint offset, jint width, jint height) {
+    auto* self = (JniUserModel*)ptr;
+    auto* r = self->getSoftwareRenderer();
+    if (!r) return;
+    JniStageTimer timer(self->stageStats(), JniStageStats::Draw);
+    self->applySnapshot();
+    jfloat m[16];
+    env->GetFloatArrayRegion(matrix, 0, 16, m);
+    r->render(m, (uint8_t*)DirectBytes(env, target, offset), width, height);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setLodNative(JNIEnv*, jclass, jlong ptr, jint updateInterval, jboolean physics, jfloat physicsStep, jboolean tracking, jboolean frozen) {
+    JniLod lod;
+    lod.updateInterval = updateInterval;
+    lod.physics = physics;
+    lod.physicsStep = physicsStep;
+    lod.tracking = tracking;
+    lod.frozen = frozen;
+    ((JniUserModel*)ptr)->setLod(lod);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_resetNative(JNIEnv*, jclass, jlong ptr) {
+    ((JniUserModel*)ptr)->reset();
+}
+
+// Without a buffer only the size is computed. A result larger than capacity means the buffer was left untouched.
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_snapshotNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint capacity) {
+    uint8_t* data = buffer ? (uint8_t*)env->GetDirectBufferAddress(buffer) + offset : nullptr;
+    return (jint)((JniUserModel*)ptr)->writeState(data, data ? capacity : 0);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_restoreNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length) {
+    return ((JniUserModel*)ptr)->readState(DirectBytes(env, buffer, offset), length);
+}
+
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setDraggingNative(JNIEnv*, jclass, jlong ptr, jfloat x, jfloat y) {
     ((JniUserModel*)ptr)->SetDragging(x, y);
 }
@@ -237,36 +1211,228 @@ JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_isHitNative
     return hit;
 }
 
-JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_startMotionNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer, jint priority, jboolean loop) {
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_hitTestNative(JNIEnv* env, jclass, jlong ptr, jfloat x, jfloat y, jboolean precise, jintArray out) {
+    int capacity = env->GetArrayLength(out);
+    jint* dst = (jint*)env->GetPrimitiveArrayCritical(out, nullptr);
+    int count = ((JniUserModel*)ptr)->hitTest(x, y, precise, dst, capacity);
+    env->ReleasePrimitiveArrayCritical(out, dst, 0);
+    return count;
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setHitAreasNative(JNIEnv* env, jclass, jlong ptr, jintArray drawables) {
+    int count = env->GetArrayLength(drawables);
+    std::vector<jint> data(count);
+    env->GetIntArrayRegion(drawables, 0, count, data.data());
+    ((JniUserModel*)ptr)->setHitAreas(data.data(), count);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_hitTestAreasNative(JNIEnv* env, jclass, jlong ptr, jfloat x, jfloat y, jboolean precise, jintArray out) {
+    int capacity = env->GetArrayLength(out);
+    jint* dst = (jint*)env->GetPrimitiveArrayCritical(out, nullptr);
+    int count = ((JniUserModel*)ptr)->hitTestAreas(x, y, precise, dst, capacity);
+    env->ReleasePrimitiveArrayCritical(out, dst, 0);
+    return count;
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_startMotionNative(JNIEnv* env, jclass, jlong ptr, jbyteArray buffer, jint priority, jboolean loop) {
     jsize len = env->GetArrayLength(buffer);
     jbyte* data = env->GetByteArrayElements(buffer, nullptr);
-    ((JniUserModel*)ptr)->startMotionCopy((const csmByte*)data, len, priority, loop);
+    int handle = ((JniUserModel*)ptr)->startMotion((const csmByte*)data, len, priority, loop);
     env->ReleaseByteArrayElements(buffer, data, JNI_ABORT);
+    return handle;
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_startMotionDirectNative(JNIEnv* env, jclass, jlong ptr, jobject buffer, jint offset, jint length, jint priority, jboolean loop) {
+    return ((JniUserModel*)ptr)->startMotion(DirectBytes(env, buffer, offset), length, priority, loop);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_startMotionHandleNative(JNIEnv* env, jclass, jlong ptr, jlong motionPtr, jint priority, jstring group, jint index) {
+    int groupId = -1;
+    if (group) {
+        const char* g = env->GetStringUTFChars(group, nullptr);
+        groupId = InternString(g);
+        env->ReleaseStringUTFChars(group, g);
+    }
+    return ((JniUserModel*)ptr)->startMotion(((JniMotion*)motionPtr)->motion, priority, groupId, index);
 }
 
 JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_isMotionFinishedNative(JNIEnv*, jclass, jlong ptr) {
     return ((JniUserModel*)ptr)->isMotionFinished();
 }
 
-JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_updateNative(JNIEnv*, jclass, jlong ptr, jfloat dt) {
-    ((JniUserModel*)ptr)->update(dt);
+// Both update paths return the number of queued events so Java only drains when there is something to read.
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_updateNative(JNIEnv*, jclass, jlong ptr, jfloat dt) {
+    auto* model = (JniUserModel*)ptr;
+    model->update(dt);
+    return model->events().size();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUpdateGroup_updateAllNative(JNIEnv* env, jclass, jlongArray ptrs, jint count, jfloat dt, jintArray pendingEvents) {
+    std::vector<jlong> models(count);
+    env->GetLongArrayRegion(ptrs, 0, count, models.data());
+    JniWorkerPool::instance().parallelFor(count, [&](int i) { ((JniUserModel*)models[i])->update(dt); });
+    std::vector<jint> pending(count);
+    for (int i = 0; i < count; i++) pending[i] = ((JniUserModel*)models[i])->events().size();
+    env->SetIntArrayRegion(pendingEvents, 0, count, pending.data());
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_drainEventsNative(JNIEnv* env, jclass, jlong ptr, jintArray out, jint offset) {
+    int max = (env->GetArrayLength(out) - offset) / JniEventRing::Fields;
+    jint* dst = (jint*)env->GetPrimitiveArrayCritical(out, nullptr);
+    int count = ((JniUserModel*)ptr)->events().drain(dst + offset, max);
+    env->ReleasePrimitiveArrayCritical(out, dst, 0);
+    return count;
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getMemoryStatsNative(JNIEnv* env, jclass, jlong ptr, jlongArray out) {
+    WriteMemoryStats(env, out, ((JniUserModel*)ptr)->memory());
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getStageTimesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto& stats = ((JniUserModel*)ptr)->stageStats();
+    return env->NewDirectByteBuffer(stats.last, sizeof(stats.last));
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getStageStatsNative(JNIEnv* env, jclass, jlong ptr, jlongArray out) {
+    int64_t data[JniStageStats::StageCount * JniStageStats::Fields];
+    ((JniUserModel*)ptr)->stageStats().copy(data);
+    jlong values[JniStageStats::StageCount * JniStageStats::Fields];
+    for (int i = 0; i < JniStageStats::StageCount * JniStageStats::Fields; i++) values[i] = (jlong)data[i];
+    env->SetLongArrayRegion(out, 0, JniStageStats::StageCount * JniStageStats::Fields, values);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_resetStageStatsNative(JNIEnv*, jclass, jlong ptr) {
+    ((JniUserModel*)ptr)->stageStats().reset();
+}
+
+JNIEXPORT jlong JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getDroppedEventCountNative(JNIEnv*, jclass, jlong ptr) {
+    return ((JniUserModel*)ptr)->events().dropped();
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUpdateGroup_setThreadCount(JNIEnv*, jclass, jint count) {
+    JniWorkerPool::instance().setThreadCount(count);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUpdateGroup_getThreadCount(JNIEnv*, jclass) {
+    return JniWorkerPool::instance().threadCount();
 }
 
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setParameterValueNative(JNIEnv* env, jclass, jlong ptr, jstring id, jfloat value) {
     const char* s = env->GetStringUTFChars(id, nullptr);
-    auto* model = ((JniUserModel*)ptr)->GetModel();
-    model->SetParameterValue(CubismFramework::GetIdManager()->GetId(s), value);
-    model->SaveParameters();
+    SetParameterById((JniUserModel*)ptr, s, value);
     env->ReleaseStringUTFChars(id, s);
 }
 
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_setParameterValueByIndexNative(JNIEnv*, jclass, jlong ptr, jint index, jfloat value) {
+    auto* self = (JniUserModel*)ptr;
+    self->GetModel()->SetParameterValue(index, value);
+    self->markParametersDirty();
+}
+
+// Each entry is the writes of one frame folded into value * scale + offset. Going through
+// SetParameterValue keeps the SDK's clamping and repeat handling.
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_applyParameterStreamNative(JNIEnv* env, jclass, jlong ptr, jintArray indices, jfloatArray scales, jfloatArray offsets, jint count) {
+    auto* self = (JniUserModel*)ptr;
+    auto* model = self->GetModel();
+    jint* index = (jint*)env->GetPrimitiveArrayCritical(indices, nullptr);
+    jfloat* scale = (jfloat*)env->GetPrimitiveArrayCritical(scales, nullptr);
+    jfloat* offset = (jfloat*)env->GetPrimitiveArrayCritical(offsets, nullptr);
+    int parameterCount = model->GetParameterCount();
+    for (int k = 0; k < count; k++) {
+        int i = index[k];
+        if (i < 0 || i >= parameterCount) continue;
+        model->SetParameterValue(i, model->GetParameterValue(i) * scale[k] + offset[k]);
+    }
+    env->ReleasePrimitiveArrayCritical(offsets, offset, JNI_ABORT);
+    env->ReleasePrimitiveArrayCritical(scales, scale, JNI_ABORT);
+    env->ReleasePrimitiveArrayCritical(indices, index, JNI_ABORT);
+    self->markParametersDirty();
+}
+
+JNIEXPORT jfloat JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterValueByIndexNative(JNIEnv*, jclass, jlong ptr, jint index) {
+    return ((JniUserModel*)ptr)->GetModel()->GetParameterValue(index);
+}
+
+JNIEXPORT jobjectArray JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterIdsNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    int count = model ? model->GetParameterCount() : 0;
+    jobjectArray res = env->NewObjectArray(count, env->FindClass("java/lang/String"), nullptr);
+    for (int i = 0; i < count; i++) {
+        jstring s = env->NewStringUTF(model->GetParameterId(i)->GetString().GetRawString());
+        env->SetObjectArrayElement(res, i, s);
+        env->DeleteLocalRef(s);
+    }
+    return res;
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterRangesNative(JNIEnv* env, jclass, jlong ptr, jfloatArray min, jfloatArray max, jfloatArray def) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return;
+    int count = model->GetParameterCount();
+    std::vector<jfloat> mins(count), maxs(count), defs(count);
+    for (int i = 0; i < count; i++) {
+        mins[i] = model->GetParameterMinimumValue(i);
+        maxs[i] = model->GetParameterMaximumValue(i);
+        defs[i] = model->GetParameterDefaultValue(i);
+    }
+    env->SetFloatArrayRegion(min, 0, count, mins.data());
+    env->SetFloatArrayRegion(max, 0, count, maxs.data());
+    env->SetFloatArrayRegion(def, 0, count, defs.data());
+}
+
 JNIEXPORT jfloat JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterValueNative(JNIEnv* env, jclass, jlong ptr, jstring id) {
     const char* s = env->GetStringUTFChars(id, nullptr);
-    float value = ((JniUserModel*)ptr)->GetModel()->GetParameterValue(CubismFramework::GetIdManager()->GetId(s));
+    float value = GetParameterById((JniUserModel*)ptr, s);
     env->ReleaseStringUTFChars(id, s);
     return value;
 }
 
+JNIEXPORT jobjectArray JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getPartIdsNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    int count = model ? model->GetPartCount() : 0;
+    jobjectArray res = env->NewObjectArray(count, env->FindClass("java/lang/String"), nullptr);
+    for (int i = 0; i < count; i++) {
+        jstring s = env->NewStringUTF(model->GetPartId(i)->GetString().GetRawString());
+        env->SetObjectArrayElement(res, i, s);
+        env->DeleteLocalRef(s);
+    }
+    return res;
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterValuesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return nullptr;
+    return NewFloatView(env, CubismCore::csmGetParameterValues(model->GetModel()), model->GetParameterCount());
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_markParametersDirtyNative(JNIEnv*, jclass, jlong ptr) {
+    ((JniUserModel*)ptr)->markParametersDirty();
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterMinimumValuesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return nullptr;
+    return NewFloatView(env, CubismCore::csmGetParameterMinimumValues(model->GetModel()), model->GetParameterCount());
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterMaximumValuesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return nullptr;
+    return NewFloatView(env, CubismCore::csmGetParameterMaximumValues(model->GetModel()), model->GetParameterCount());
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getParameterDefaultValuesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return nullptr;
+    return NewFloatView(env, CubismCore::csmGetParameterDefaultValues(model->GetModel()), model->GetParameterCount());
+}
+
+JNIEXPORT jobject JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getPartOpacitiesBufferNative(JNIEnv* env, jclass, jlong ptr) {
+    auto* model = ((JniUserModel*)ptr)->GetModel();
+    if (!model) return nullptr;
+    return NewFloatView(env, CubismCore::csmGetPartOpacities(model->GetModel()), model->GetPartCount());
+}
+
 JNIEXPORT jfloat JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getCanvasWidthNative(JNIEnv*, jclass, jlong ptr) {
     return ((JniUserModel*)ptr)->GetModel()->GetCanvasWidth();
 }
@@ -287,12 +1453,77 @@ JNIEXPORT jobjectArray JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getDraw
     return res;
 }
 
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getDrawableLayoutNative(JNIEnv* env, jclass, jlong ptr, jintArray vertexCounts, jintArray indexCounts, jintArray textureIndices, jintArray constantFlags, jintArray maskCounts) {
+    auto* self = (JniUserModel*)ptr;
+    int count = self->GetModel()->GetDrawableCount();
+    if (count <= 0) return;
+    std::vector<jint> data(count * 5);
+    jint* d = data.data();
+    self->readDrawableLayout(d, d + count, d + count * 2, d + count * 3, d + count * 4);
+    env->SetIntArrayRegion(vertexCounts, 0, count, d);
+    env->SetIntArrayRegion(indexCounts, 0, count, d + count);
+    env->SetIntArrayRegion(textureIndices, 0, count, d + count * 2);
+    env->SetIntArrayRegion(constantFlags, 0, count, d + count * 3);
+    env->SetIntArrayRegion(maskCounts, 0, count, d + count * 4);
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getDrawableMasksNative(JNIEnv* env, jclass, jlong ptr, jintArray masks) {
+    std::vector<jint> data(env->GetArrayLength(masks));
+    ((JniUserModel*)ptr)->readDrawableMasks(data.data());
+    env->SetIntArrayRegion(masks, 0, (jsize)data.size(), data.data());
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_readDrawableStaticNative(JNIEnv* env, jclass, jlong ptr, jobject uvs, jobject indices) {
+    ((JniUserModel*)ptr)->readDrawableStatic(
+        uvs ? (float*)env->GetDirectBufferAddress(uvs) : nullptr,
+        indices ? (csmUint16*)env->GetDirectBufferAddress(indices) : nullptr);
+}
+
+JNIEXPORT jint JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_readDrawableDynamicNative(JNIEnv* env, jclass, jlong ptr, jobject positions, jobject opacities, jobject drawOrders, jobject renderOrders, jobject multiplyColors, jobject screenColors, jobject changes) {
+    auto address = [env](jobject buffer) { return buffer ? env->GetDirectBufferAddress(buffer) : nullptr; };
+    return ((JniUserModel*)ptr)->readDrawableDynamic(
+        (float*)address(positions), (float*)address(opacities), (jint*)address(drawOrders), (jint*)address(renderOrders),
+        (float*)address(multiplyColors), (float*)address(screenColors), (jint*)address(changes));
+}
+
 JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_drawNative(JNIEnv* env, jclass, jlong ptr, jfloatArray matrix) {
-    jfloat* m_ptr = env->GetFloatArrayElements(matrix, nullptr);
-    CubismMatrix44 m; m.SetMatrix(m_ptr);
-    auto* r = ((JniUserModel*)ptr)->GetRenderer<CubismRenderer_OpenGLES2>();
-    if (r) { r->SetMvpMatrix(&m); r->DrawModel(); }
-    env->ReleaseFloatArrayElements(matrix, m_ptr, JNI_ABORT);
+    jfloat m[16];
+    env->GetFloatArrayRegion(matrix, 0, 16, m);
+    DrawModel((JniUserModel*)ptr, m);
+}
+
+// Plain C entry points for the java.lang.foreign backend (CubismFfm), with the same semantics
+// as the JNI functions above. Models are passed as the same pointer Java keeps in _ptr.
+JNIEXPORT int32_t live2d_model_update(int64_t ptr, float dt) {
+    auto* model = (JniUserModel*)ptr;
+    model->update(dt);
+    return model->events().size();
+}
+
+JNIEXPORT void live2d_model_draw(int64_t ptr, const float* mvp) {
+    DrawModel((JniUserModel*)ptr, mvp);
+}
+
+JNIEXPORT void live2d_model_set_parameter(int64_t ptr, int32_t index, float value) {
+    auto* self = (JniUserModel*)ptr;
+    self->GetModel()->SetParameterValue(index, value);
+    self->markParametersDirty();
+}
+
+JNIEXPORT float live2d_model_get_parameter(int64_t ptr, int32_t index) {
+    return ((JniUserModel*)ptr)->GetModel()->GetParameterValue(index);
+}
+
+JNIEXPORT void live2d_model_set_parameter_id(int64_t ptr, const char* id, float value) {
+    SetParameterById((JniUserModel*)ptr, id, value);
+}
+
+JNIEXPORT float live2d_model_get_parameter_id(int64_t ptr, const char* id) {
+    return GetParameterById((JniUserModel*)ptr, id);
+}
+
+JNIEXPORT void live2d_model_set_dragging(int64_t ptr, float x, float y) {
+    ((JniUserModel*)ptr)->SetDragging(x, y);
 }
 
 }
\ No newline at end of file
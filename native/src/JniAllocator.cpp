@@ -0,0 +1,186 @@
+#include <jni.h>
+#include "JniAllocator.hpp"
+#include <cstdint>
+#include <cstdlib>
+
+using namespace Live2D::Cubism::Framework;
+
+namespace {
+
+// Sits right in front of every block handed to the SDK.
+struct alignas(16) BlockHeader {
+    JniMemoryAccount* account;
+    uint32_t size;
+    uint16_t offset;
+    uint8_t sizeClass;
+};
+
+const size_t HeaderSize = sizeof(BlockHeader);
+const uint8_t Unpooled = 0xFF;
+
+thread_local JniMemoryAccount* t_account = nullptr;
+std::atomic<bool> g_pooling{false};
+
+int SizeClassFor(size_t bytes) {
+    for (int c = 0; c < 6; c++) {
+        if (bytes <= ((size_t)32 << c)) return c;
+    }
+    return -1;
+}
+
+}
+
+JniMemoryAccount* JniMemoryAccount::create() {
+    return new JniMemoryAccount(g_pooling.load(std::memory_order_relaxed));
+}
+
+JniMemoryAccount::~JniMemoryAccount() {
+    for (void* chunk : _chunks) free(chunk);
+    GlobalMemory()._reserved.fetch_sub((long long)_chunks.size() * ChunkSize, std::memory_order_relaxed);
+}
+
+void JniMemoryAccount::stats(long long* out) const {
+    out[0] = _live.load(std::memory_order_relaxed);
+    out[1] = _peak.load(std::memory_order_relaxed);
+    out[2] = _liveAllocations.load(std::memory_order_relaxed);
+    out[3] = _totalAllocations.load(std::memory_order_relaxed);
+    out[4] = _reserved.load(std::memory_order_relaxed);
+}
+
+void JniMemoryAccount::charge(long long bytes) {
+    long long live = _live.fetch_add(bytes, std::memory_order_relaxed) + bytes;
+    long long peak = _peak.load(std::memory_order_relaxed);
+    while (live > peak && !_peak.compare_exchange_weak(peak, live, std::memory_order_relaxed)) {}
+    _liveAllocations.fetch_add(1, std::memory_order_relaxed);
+    _totalAllocations.fetch_add(1, std::memory_order_relaxed);
+}
+
+void JniMemoryAccount::discharge(long long bytes) {
+    _live.fetch_sub(bytes, std::memory_order_relaxed);
+    _liveAllocations.fetch_sub(1, std::memory_order_relaxed);
+}
+
+void* JniMemoryAccount::poolAllocate(int sizeClass) {
+    size_t blockSize = (size_t)32 << sizeClass;
+    std::lock_guard<std::mutex> lock(_poolMutex);
+    if (void* block = _freeLists[sizeClass]) {
+        _freeLists[sizeClass] = *(void**)block;
+        return block;
+    }
+    if (_remaining < blockSize) {
+        // Whatever is left of the old chunk is too small for this class and is simply skipped.
+        char* chunk = (char*)malloc(ChunkSize);
+        if (!chunk) return nullptr;
+        _chunks.push_back(chunk);
+        _reserved.fetch_add(ChunkSize, std::memory_order_relaxed);
+        GlobalMemory()._reserved.fetch_add(ChunkSize, std::memory_order_relaxed);
+        _cursor = chunk;
+        _remaining = ChunkSize;
+    }
+    void* block = _cursor;
+    _cursor += blockSize;
+    _remaining -= blockSize;
+    return block;
+}
+
+void JniMemoryAccount::poolFree(void* block, int sizeClass) {
+    std::lock_guard<std::mutex> lock(_poolMutex);
+    *(void**)block = _freeLists[sizeClass];
+    _freeLists[sizeClass] = block;
+}
+
+JniMemoryScope::JniMemoryScope(JniMemoryAccount* account) : _previous(t_account) {
+    t_account = account;
+}
+
+JniMemoryScope::~JniMemoryScope() {
+    t_account = _previous;
+}
+
+JniMemoryAccount& GlobalMemory() {
+    static JniMemoryAccount* global = new JniMemoryAccount(false);
+    return *global;
+}
+
+void SetMemoryPooling(bool enabled) { g_pooling.store(enabled, std::memory_order_relaxed); }
+bool IsMemoryPooling() { return g_pooling.load(std::memory_order_relaxed); }
+
+class JniAllocator : public ICubismAllocator {
+public:
+    void* Allocate(const csmSizeType size) override {
+        JniMemoryAccount* account = t_account;
+        int sizeClass = account && account->_pooled ? SizeClassFor(size + HeaderSize) : -1;
+        void* raw = sizeClass >= 0 ? account->poolAllocate(sizeClass) : malloc(size + HeaderSize);
+        if (!raw) return nullptr;
+        return track((char*)raw + HeaderSize, account, size, HeaderSize, sizeClass >= 0 ? (uint8_t)sizeClass : Unpooled);
+    }
+
+    void Deallocate(void* memory) override {
+        if (!memory) return;
+        BlockHeader* header = (BlockHeader*)memory - 1;
+        JniMemoryAccount* account = header->account;
+        uint8_t sizeClass = header->sizeClass;
+        void* raw = (char*)memory - header->offset;
+
+        GlobalMemory().discharge(header->size);
+        if (account) account->discharge(header->size);
+        if (sizeClass != Unpooled) account->poolFree(raw, sizeClass);
+        else free(raw);
+        if (account) account->unref();
+    }
+
+    // Aligned blocks are mostly mocs and model data; they are large and never pooled.
+    void* AllocateAligned(const csmSizeType size, const csmUint32 alignment) override {
+        size_t align = alignment < HeaderSize ? HeaderSize : alignment;
+        char* raw = (char*)malloc(size + align + HeaderSize);
+        if (!raw) return nullptr;
+        uintptr_t user = ((uintptr_t)raw + HeaderSize + align - 1) & ~(uintptr_t)(align - 1);
+        return track((void*)user, t_account, size, (uint16_t)(user - (uintptr_t)raw), Unpooled);
+    }
+
+    void DeallocateAligned(void* alignedMemory) override { Deallocate(alignedMemory); }
+
+private:
+    static void* track(void* memory, JniMemoryAccount* account, size_t size, uint16_t offset, uint8_t sizeClass) {
+        BlockHeader* header = (BlockHeader*)memory - 1;
+        header->account = account;
+        header->size = (uint32_t)size;
+        header->offset = offset;
+        header->sizeClass = sizeClass;
+        GlobalMemory().charge(size);
+        if (account) {
+            account->ref();
+            account->charge(size);
+        }
+        return memory;
+    }
+};
+
+ICubismAllocator* GetJniAllocator() {
+    static JniAllocator allocator;
+    return &allocator;
+}
+
+void WriteMemoryStats(JNIEnv* env, jlongArray out, const JniMemoryAccount* account) {
+    long long stats[JniMemoryAccount::StatCount] = {};
+    if (account) account->stats(stats);
+    jlong values[JniMemoryAccount::StatCount];
+    for (int i = 0; i < JniMemoryAccount::StatCount; i++) values[i] = (jlong)stats[i];
+    env->SetLongArrayRegion(out, 0, JniMemoryAccount::StatCount, values);
+}
+
+extern "C" {
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMemory_getStatsNative(JNIEnv* env, jclass, jlongArray out) {
+    WriteMemoryStats(env, out, &GlobalMemory());
+}
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismMemory_setPooling(JNIEnv*, jclass, jboolean enabled) {
+    SetMemoryPooling(enabled);
+}
+
+JNIEXPORT jboolean JNICALL Java_dev_eatgrapes_live2d_CubismMemory_isPooling(JNIEnv*, jclass) {
+    return IsMemoryPooling();
+}
+
+}
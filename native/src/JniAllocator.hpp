@@ -0,0 +1,77 @@
+#pragma once
+
+#include <jni.h>
+#include <ICubismAllocator.hpp>
+#include <atomic>
+#include <cstddef>
+#include <mutex>
+#include <vector>
+
+// Native memory charged to one owner: a model instance, a model definition or a parsed motion.
+// Every block remembers its account, so frees are charged correctly no matter which thread or
+// scope they happen in. The account outlives its owner until the last of its blocks is freed.
+class JniMemoryAccount {
+public:
+    enum { StatCount = 5 };
+
+    // Pooled accounts serve small blocks from their own chunks and return them all at once.
+    static JniMemoryAccount* create();
+
+    // Called by the owner when it's done; the account goes away with its last block.
+    void release() { unref(); }
+
+    // live bytes, peak bytes, live allocations, total allocations, reserved pool bytes
+    void stats(long long* out) const;
+
+private:
+    friend class JniAllocator;
+    friend JniMemoryAccount& GlobalMemory();
+
+    enum { SizeClasses = 6, ChunkSize = 64 * 1024 };
+
+    explicit JniMemoryAccount(bool pooled) : _pooled(pooled) {}
+    ~JniMemoryAccount();
+
+    void charge(long long bytes);
+    void discharge(long long bytes);
+    void ref() { _refs.fetch_add(1, std::memory_order_relaxed); }
+    void unref() { if (_refs.fetch_sub(1, std::memory_order_acq_rel) == 1) delete this; }
+    void* poolAllocate(int sizeClass);
+    void poolFree(void* block, int sizeClass);
+
+    const bool _pooled;
+    std::atomic<long long> _refs{1};
+    std::atomic<long long> _live{0}, _peak{0}, _liveAllocations{0}, _totalAllocations{0}, _reserved{0};
+
+    std::mutex _poolMutex;
+    std::vector<void*> _chunks;
+    void* _freeLists[SizeClasses] = {};
+    char* _cursor = nullptr;
+    size_t _remaining = 0;
+};
+
+// Charges allocations made on this thread to the given account until the scope ends. A null
+// account leaves them to the global totals alone, as for framework-wide data such as ids.
+class JniMemoryScope {
+public:
+    explicit JniMemoryScope(JniMemoryAccount* account);
+    ~JniMemoryScope();
+
+    JniMemoryScope(const JniMemoryScope&) = delete;
+    JniMemoryScope& operator=(const JniMemoryScope&) = delete;
+
+private:
+    JniMemoryAccount* _previous;
+};
+
+// Totals over every block, whether or not it was made inside a scope.
+JniMemoryAccount& GlobalMemory();
+
+Live2D::Cubism::Framework::ICubismAllocator* GetJniAllocator();
+
+// Fills a long[StatCount]; a null account reports zeros.
+void WriteMemoryStats(JNIEnv* env, jlongArray out, const JniMemoryAccount* account);
+
+// Only affects accounts created afterwards.
+void SetMemoryPooling(bool enabled);
+bool IsMemoryPooling();
@@ -0,0 +1,238 @@
+#include "JniBinaryAsset.hpp"
+#include "JniModelState.hpp"
+#include <Id/CubismIdManager.hpp>
+#include <cstring>
+#include <string>
+#include <vector>
+
+using namespace Live2D::Cubism::Framework;
+
+// Layout written by CubismAssetCompiler.java, little-endian and 4-byte aligned:
+//   header:  "L2DB", u16 version, u16 kind, u32 total size, u32 string count, strings
+//            (u32 length + UTF-8, padded to 4)
+//   motion:  f32 duration, fps, fade in, fade out; u32 flags (1 loop, 2 restricted beziers);
+//            u32 curve, segment, point and event counts; curves (u32 target, id, first segment,
+//            segment count; f32 fade in, fade out); segments (u32 type, first point);
+//            points (f32 time, value); events (f32 time, u32 value)
+//   expression: f32 fade in, fade out; u32 parameter count; parameters (u32 id, blend; f32 value)
+enum { AssetMagic = 0x4244324c /* "L2DB" */, AssetVersion = 1, KindMotion = 1, KindExpression = 2 };
+
+static bool IsLittleEndianHost() {
+    const uint16_t one = 1;
+    return *(const uint8_t*)&one == 1;
+}
+
+// JniStateReader reads in host order, which is right for snapshots but not for files that
+// travel between machines; this one swaps on big-endian hosts.
+class AssetReader {
+public:
+    AssetReader(const uint8_t* data, size_t size) : _in(data, size), _size(size) {}
+
+    uint32_t u32() { return swap(_in.u32()); }
+    float f32() {
+        uint32_t v = u32();
+        float f;
+        memcpy(&f, &v, 4);
+        return f;
+    }
+    void floats(float* v, size_t n) {
+        _in.floats(v, n);
+        if (!_swap) return;
+        for (size_t i = 0; i < n; i++) {
+            uint32_t bits;
+            memcpy(&bits, &v[i], 4);
+            bits = swap(bits);
+            memcpy(&v[i], &bits, 4);
+        }
+    }
+
+    // Length-prefixed and padded to 4 bytes.
+    std::string string() {
+        uint32_t n = u32();
+        size_t padded = (size_t)n + (4 - n % 4) % 4;
+        if (!ok() || padded > _size - _in.offset()) {
+            _ok = false;
+            return std::string();
+        }
+        std::string s(n, '\0');
+        if (n > 0) _in.bytes(&s[0], n);
+        uint8_t padding[3];
+        _in.bytes(padding, padded - n);
+        return s;
+    }
+
+    bool ok() const { return _ok && _in.ok(); }
+
+private:
+    uint32_t swap(uint32_t v) const {
+        return _swap ? (v >> 24) | ((v >> 8) & 0xff00) | ((v << 8) & 0xff0000) | (v << 24) : v;
+    }
+
+    JniStateReader _in;
+    size_t _size;
+    bool _ok = true;
+    const bool _swap = !IsLittleEndianHost();
+};
+
+static bool IsAsset(const csmByte* buffer, csmSizeInt size, int kind) {
+    if (!buffer || size < 16) return false;
+    AssetReader in(buffer, size);
+    uint32_t magic = in.u32();
+    uint32_t version = in.u32();
+    return magic == AssetMagic && (version & 0xffff) == AssetVersion && (int)(version >> 16) == kind;
+}
+
+// Skips the fixed header and returns the string table.
+static bool ReadStrings(AssetReader& in, csmSizeInt size, std::vector<std::string>& strings) {
+    in.u32();
+    in.u32();
+    if (in.u32() > size) return false;
+    uint32_t count = in.u32();
+    if (count > size / 4) return false;
+    strings.resize(count);
+    for (uint32_t i = 0; i < count && in.ok(); i++) strings[i] = in.string();
+    return in.ok();
+}
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+// The SDK's segment evaluators are file-static in CubismMotion.cpp. Parsing one tiny motion per
+// bezier mode and keeping its function pointers makes compiled motions evaluate exactly like
+// ones parsed from JSON. Runs under the framework lock, like every caller.
+const csmMotionSegmentEvaluationFunction* JniBinaryAccess::evaluators(bool restrictedBeziers) {
+    static csmMotionSegmentEvaluationFunction functions[2][4] = {};
+    static bool found = false;
+    if (!found) {
+        // Only settled once both probes gave all four; otherwise the next load tries again.
+        bool complete = true;
+        const char* restricted[] = {"false", "true"};
+        for (int r = 0; r < 2; r++) {
+            std::string json = std::string("{\"Version\":3,\"Meta\":{\"Duration\":1,\"Fps\":30,\"Loop\":false,\"AreBeziersRestricted\":") + restricted[r] +
+                ",\"CurveCount\":1,\"TotalSegmentCount\":4,\"TotalPointCount\":7,\"UserDataCount\":0,\"TotalUserDataSize\":0},"
+                "\"Curves\":[{\"Target\":\"Parameter\",\"Id\":\"ParamAngleX\",\"Segments\":[0,0,0,0.25,0,1,0.3,0,0.4,0,0.5,0,2,0.75,0,3,1,0]}]}";
+            CubismMotion* probe = CubismMotion::Create((const csmByte*)json.data(), (csmSizeInt)json.size());
+            if (!probe) {
+                complete = false;
+                continue;
+            }
+            const auto& segments = probe->_motionData->Segments;
+            for (csmUint32 i = 0; i < segments.GetSize() && i < 4; i++) {
+                if (segments[i].SegmentType == (csmInt32)i) functions[r][i] = segments[i].Evaluate;
+            }
+            for (int i = 0; i < 4; i++) complete = complete && functions[r][i];
+            CubismMotion::Delete(probe);
+        }
+        found = complete;
+    }
+    return functions[restrictedBeziers ? 1 : 0];
+}
+
+CubismMotion* JniBinaryAccess::createMotion(const csmByte* buffer, csmSizeInt size) {
+    AssetReader in(buffer, size);
+    std::vector<std::string> strings;
+    if (!ReadStrings(in, size, strings)) return nullptr;
+
+    float duration = in.f32(), fps = in.f32(), fadeIn = in.f32(), fadeOut = in.f32();
+    uint32_t flags = in.u32();
+    uint32_t curveCount = in.u32(), segmentCount = in.u32(), pointCount = in.u32(), eventCount = in.u32();
+    // Every record takes at least 8 bytes, which bounds the counts before anything is allocated.
+    if (!in.ok() || curveCount > 0x7fff || (uint64_t)curveCount * 24 + ((uint64_t)segmentCount + pointCount + eventCount) * 8 > size) return nullptr;
+    const csmMotionSegmentEvaluationFunction* functions = evaluators((flags & 2) != 0);
+
+    CubismMotion* motion = CSM_NEW CubismMotion();
+    CubismMotionData* data = CSM_NEW CubismMotionData();
+    motion->_motionData = data;
+    data->Duration = duration;
+    data->Loop = (flags & 1) != 0;
+    data->CurveCount = (csmInt16)curveCount;
+    data->EventCount = (csmInt32)eventCount;
+    data->Fps = fps;
+    data->Curves.UpdateSize(curveCount, CubismMotionCurve(), true);
+    data->Segments.UpdateSize(segmentCount, CubismMotionSegment(), true);
+    data->Points.UpdateSize(pointCount, CubismMotionPoint(), true);
+    data->Events.UpdateSize(eventCount, CubismMotionEvent(), true);
+
+    bool valid = true;
+    CubismIdManager* ids = CubismFramework::GetIdManager();
+    for (uint32_t i = 0; i < curveCount && valid; i++) {
+        CubismMotionCurve& curve = data->Curves[i];
+        uint32_t target = in.u32(), id = in.u32(), first = in.u32(), count = in.u32();
+        curve.FadeInTime = in.f32();
+        curve.FadeOutTime = in.f32();
+        valid = in.ok() && target <= 2 && id < strings.size() && first <= segmentCount && count <= segmentCount - first;
+        if (!valid) break;
+        curve.Type = target == 0 ? CubismMotionCurveTarget_Model : target == 1 ? CubismMotionCurveTarget_Parameter : CubismMotionCurveTarget_PartOpacity;
+        curve.Id = ids->GetId(strings[id].c_str());
+        curve.BaseSegmentIndex = (csmInt32)first;
+        curve.SegmentCount = (csmInt32)count;
+    }
+    for (uint32_t i = 0; i < segmentCount && valid; i++) {
+        CubismMotionSegment& segment = data->Segments[i];
+        uint32_t type = in.u32(), first = in.u32();
+        valid = in.ok() && type <= 3 && functions[type] && first < pointCount && pointCount - first > (type == CubismMotionSegmentType_Bezier ? 3u : 1u);
+        if (!valid) break;
+        segment.SegmentType = (csmInt32)type;
+        segment.BasePointIndex = (csmInt32)first;
+        segment.Evaluate = functions[type];
+    }
+    // CubismMotionPoint is a time/value pair of floats, the same as the file, so on little-endian
+    // hosts the points are one copy.
+    if (valid && pointCount > 0) in.floats(&data->Points[0].Time, pointCount * 2);
+    for (uint32_t i = 0; i < eventCount && valid; i++) {
+        data->Events[i].FireTime = in.f32();
+        uint32_t value = in.u32();
+        valid = in.ok() && value < strings.size();
+        if (valid) data->Events[i].Value = strings[value].c_str();
+    }
+    if (!valid || !in.ok()) {
+        CubismMotion::Delete(motion);
+        return nullptr;
+    }
+
+    motion->_sourceFrameRate = fps;
+    motion->_loopDurationSeconds = duration;
+    motion->SetFadeInTime(fadeIn);
+    motion->SetFadeOutTime(fadeOut);
+    return motion;
+}
+
+CubismExpressionMotion* JniBinaryAccess::createExpression(const csmByte* buffer, csmSizeInt size) {
+    AssetReader in(buffer, size);
+    std::vector<std::string> strings;
+    if (!ReadStrings(in, size, strings)) return nullptr;
+
+    float fadeIn = in.f32(), fadeOut = in.f32();
+    uint32_t count = in.u32();
+    if (!in.ok() || (uint64_t)count * 12 > size) return nullptr;
+
+    CubismExpressionMotion* expression = CSM_NEW CubismExpressionMotion();
+    expression->SetFadeInTime(fadeIn);
+    expression->SetFadeOutTime(fadeOut);
+    CubismIdManager* ids = CubismFramework::GetIdManager();
+    for (uint32_t i = 0; i < count; i++) {
+        uint32_t id = in.u32(), blend = in.u32();
+        float value = in.f32();
+        if (!in.ok() || id >= strings.size() || blend > 2) {
+            ACubismMotion::Delete(expression);
+            return nullptr;
+        }
+        CubismExpressionMotion::ExpressionParameter parameter;
+        parameter.ParameterId = ids->GetId(strings[id].c_str());
+        parameter.BlendType = (CubismExpressionMotion::ExpressionBlendType)blend;
+        parameter.Value = value;
+        expression->_parameters.PushBack(parameter);
+    }
+    return expression;
+}
+
+}}}
+
+CubismMotion* CreateMotion(const csmByte* buffer, csmSizeInt size) {
+    if (IsAsset(buffer, size, KindMotion)) return JniBinaryAccess::createMotion(buffer, size);
+    return CubismMotion::Create(buffer, size);
+}
+
+ACubismMotion* CreateExpression(const csmByte* buffer, csmSizeInt size) {
+    if (IsAsset(buffer, size, KindExpression)) return JniBinaryAccess::createExpression(buffer, size);
+    return CubismExpressionMotion::Create(buffer, size);
+}
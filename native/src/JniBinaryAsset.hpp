@@ -0,0 +1,32 @@
+#pragma once
+
+#include <Motion/CubismMotion.hpp>
+#include <Motion/CubismExpressionMotion.hpp>
+#include <Motion/CubismMotionInternal.hpp>
+
+// Motions and expressions compiled by CubismAssetCompiler: curve segments already resolved, ids
+// in a string table and point data ready to copy, so loading skips CubismJson entirely. These
+// take either form and tell them apart by the header, so every entry point accepts both.
+// Ids are registered with the framework, so the framework lock has to be held.
+//
+// Nothing points into the file afterwards: the SDK's containers own their storage and the
+// caller's buffer may be a Java array released right after loading. So a compiled motion is
+// decoded into the same CubismMotionData a JSON one ends up in: one pass over the file, a copy
+// of the points and one id lookup per curve. The saving is the JSON parse and the segment walk,
+// not the copy, and the parsed motion takes as much memory as before.
+Live2D::Cubism::Framework::CubismMotion* CreateMotion(const Live2D::Cubism::Framework::csmByte* buffer, Live2D::Cubism::Framework::csmSizeInt size);
+Live2D::Cubism::Framework::ACubismMotion* CreateExpression(const Live2D::Cubism::Framework::csmByte* buffer, Live2D::Cubism::Framework::csmSizeInt size);
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+// The parsed motion and expression data are private to the SDK; scripts/build.py declares this
+// struct a friend of CubismMotion and CubismExpressionMotion. Both return nullptr for a damaged file.
+struct JniBinaryAccess {
+    static CubismMotion* createMotion(const csmByte* buffer, csmSizeInt size);
+    static CubismExpressionMotion* createExpression(const csmByte* buffer, csmSizeInt size);
+
+private:
+    static const csmMotionSegmentEvaluationFunction* evaluators(bool restrictedBeziers);
+};
+
+}}}
@@ -0,0 +1,10 @@
+#pragma once
+
+#include <jni.h>
+#include <CubismFramework.hpp>
+
+// Address of a direct ByteBuffer's contents, starting at the given offset.
+inline const Live2D::Cubism::Framework::csmByte* DirectBytes(JNIEnv* env, jobject buffer, jint offset) {
+    auto* base = static_cast<const Live2D::Cubism::Framework::csmByte*>(env->GetDirectBufferAddress(buffer));
+    return base ? base + offset : nullptr;
+}
@@ -0,0 +1,45 @@
+#include "JniDrawableSnapshot.hpp"
+#include <cstring>
+
+using namespace Live2D::Cubism::Core;
+
+template <typename T>
+static void copyArray(std::vector<T>& dst, const T* src, int count) {
+    dst.assign(src, src + count);
+}
+
+void JniDrawableSnapshot::capture(const csmModel* core) {
+    int count = csmGetDrawableCount(core);
+    const int* vc = csmGetDrawableVertexCounts(core);
+    const csmVector2** pos = csmGetDrawableVertexPositions(core);
+    int vertexCount = 0;
+    for (int i = 0; i < count; i++) vertexCount += vc[i];
+    positions.resize(vertexCount);
+    for (int i = 0, offset = 0; i < count; offset += vc[i], i++) {
+        memcpy(positions.data() + offset, pos[i], vc[i] * sizeof(csmVector2));
+    }
+    copyArray(opacities, csmGetDrawableOpacities(core), count);
+    copyArray(drawOrders, csmGetDrawableDrawOrders(core), count);
+    copyArray(renderOrders, csmGetDrawableRenderOrders(core), count);
+    copyArray(flags, csmGetDrawableDynamicFlags(core), count);
+    copyArray(multiplyColors, csmGetDrawableMultiplyColors(core), count);
+    copyArray(screenColors, csmGetDrawableScreenColors(core), count);
+}
+
+// Core only hands out const pointers, but the arrays live in the model's own block, and the
+// renderer's model is never passed to csmUpdateModel, so nothing else writes them.
+void JniDrawableSnapshot::apply(csmModel* core) const {
+    int count = csmGetDrawableCount(core);
+    if ((int)opacities.size() != count) return;
+    const int* vc = csmGetDrawableVertexCounts(core);
+    csmVector2** pos = const_cast<csmVector2**>(csmGetDrawableVertexPositions(core));
+    for (int i = 0, offset = 0; i < count; offset += vc[i], i++) {
+        memcpy(pos[i], positions.data() + offset, vc[i] * sizeof(csmVector2));
+    }
+    memcpy(const_cast<float*>(csmGetDrawableOpacities(core)), opacities.data(), count * sizeof(float));
+    memcpy(const_cast<int*>(csmGetDrawableDrawOrders(core)), drawOrders.data(), count * sizeof(int));
+    memcpy(const_cast<int*>(csmGetDrawableRenderOrders(core)), renderOrders.data(), count * sizeof(int));
+    memcpy(const_cast<csmFlags*>(csmGetDrawableDynamicFlags(core)), flags.data(), count * sizeof(csmFlags));
+    memcpy(const_cast<csmVector4*>(csmGetDrawableMultiplyColors(core)), multiplyColors.data(), count * sizeof(csmVector4));
+    memcpy(const_cast<csmVector4*>(csmGetDrawableScreenColors(core)), screenColors.data(), count * sizeof(csmVector4));
+}
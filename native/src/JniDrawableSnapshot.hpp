@@ -0,0 +1,51 @@
+#pragma once
+
+#include <Model/CubismModel.hpp>
+#include <atomic>
+#include <vector>
+
+namespace CubismCore = Live2D::Cubism::Core;
+
+// Everything a renderer reads from a model per frame: vertex positions, opacities, orders,
+// dynamic flags and blend colors. Layout and indices never change, so they aren't copied.
+struct JniDrawableSnapshot {
+    std::vector<CubismCore::csmVector2> positions;
+    std::vector<float> opacities;
+    std::vector<int> drawOrders;
+    std::vector<int> renderOrders;
+    std::vector<CubismCore::csmFlags> flags;
+    std::vector<CubismCore::csmVector4> multiplyColors;
+    std::vector<CubismCore::csmVector4> screenColors;
+
+    void capture(const CubismCore::csmModel* core);
+
+    // Overwrites the drawable state of a model that Core itself never updates.
+    void apply(CubismCore::csmModel* core) const;
+};
+
+// Triple buffer between update() and draw(). The writer always owns one snapshot, the reader
+// another, and the third holds the latest published frame. Neither side ever waits: a slow
+// reader skips frames, a slow writer means the same frame is drawn again.
+class JniSnapshotExchange {
+public:
+    JniDrawableSnapshot& back() { return _buffers[_back]; }
+
+    void publish() {
+        _back = _ready.exchange(_back | Fresh, std::memory_order_acq_rel) & IndexMask;
+    }
+
+    // Returns the newest snapshot, or nullptr if nothing was published since the last call.
+    const JniDrawableSnapshot* acquire() {
+        if (!(_ready.load(std::memory_order_relaxed) & Fresh)) return nullptr;
+        _front = _ready.exchange(_front, std::memory_order_acq_rel) & IndexMask;
+        return &_buffers[_front];
+    }
+
+private:
+    enum { IndexMask = 3, Fresh = 4 };
+
+    JniDrawableSnapshot _buffers[3];
+    int _back = 0;
+    int _front = 1;
+    std::atomic<int> _ready{2};
+};
@@ -0,0 +1,53 @@
+#pragma once
+
+#include <jni.h>
+#include <atomic>
+#include <cstdint>
+
+// Fixed-size queue of model events. update() is the only producer and pollEvents() the only
+// consumer, so pushing never locks or allocates. When Java stops draining, new events are dropped.
+class JniEventRing {
+public:
+    enum Type { MotionFinished = 1, MotionEvent = 2, ExpressionFinished = 3 };
+    enum { Capacity = 256, Fields = 5 };
+
+    bool push(int type, int handle, int group, int index, int value) {
+        uint32_t tail = _tail.load(std::memory_order_relaxed);
+        if (tail - _head.load(std::memory_order_acquire) >= Capacity) {
+            _dropped.fetch_add(1, std::memory_order_relaxed);
+            return false;
+        }
+        jint* slot = _slots[tail % Capacity];
+        slot[0] = type;
+        slot[1] = handle;
+        slot[2] = group;
+        slot[3] = index;
+        slot[4] = value;
+        _tail.store(tail + 1, std::memory_order_release);
+        return true;
+    }
+
+    // Copies up to max events into dst (Fields ints each) and returns how many were copied.
+    int drain(jint* dst, int max) {
+        uint32_t head = _head.load(std::memory_order_relaxed);
+        uint32_t available = _tail.load(std::memory_order_acquire) - head;
+        int count = (int)available < max ? (int)available : max;
+        for (int i = 0; i < count; i++) {
+            const jint* slot = _slots[(head + i) % Capacity];
+            for (int f = 0; f < Fields; f++) *dst++ = slot[f];
+        }
+        _head.store(head + count, std::memory_order_release);
+        return count;
+    }
+
+    // Only safe while nothing is pushing.
+    void clear() { _head.store(_tail.load(std::memory_order_acquire), std::memory_order_release); }
+
+    int size() const { return (int)(_tail.load(std::memory_order_acquire) - _head.load(std::memory_order_acquire)); }
+    long long dropped() const { return _dropped.load(std::memory_order_relaxed); }
+
+private:
+    jint _slots[Capacity][Fields];
+    std::atomic<uint32_t> _head{0}, _tail{0};
+    std::atomic<long long> _dropped{0};
+};
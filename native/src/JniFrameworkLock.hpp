@@ -0,0 +1,13 @@
+#pragma once
+
+#include <mutex>
+
+// Guards everything that can register ids with CubismIdManager, which isn't thread-safe: parsing
+// mocs, physics, poses, motions and expressions, and looking parameters or drawables up by name.
+// Recursive so loaders can nest. update() resolves its ids up front and never takes it.
+inline std::recursive_mutex& FrameworkMutex() {
+    static std::recursive_mutex mutex;
+    return mutex;
+}
+
+using FrameworkLock = std::lock_guard<std::recursive_mutex>;
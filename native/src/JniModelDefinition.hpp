@@ -0,0 +1,36 @@
+#pragma once
+
+#include <Model/CubismMoc.hpp>
+#include <Motion/ACubismMotion.hpp>
+#include "JniAllocator.hpp"
+#include <atomic>
+#include <map>
+#include <memory>
+#include <string>
+#include <vector>
+
+using ExpressionRef = std::shared_ptr<Live2D::Cubism::Framework::ACubismMotion>;
+
+// Immutable model data shared by every instance created from it.
+// Physics and pose carry per-instance state in the SDK, so only their source is kept here.
+struct JniModelDefinition {
+    Live2D::Cubism::Framework::CubismMoc* moc = nullptr;
+    JniMemoryAccount* memory = JniMemoryAccount::create();
+    std::vector<Live2D::Cubism::Framework::csmByte> physics, pose;
+    std::map<std::string, ExpressionRef> expressions;
+
+    void retain() { _refs.fetch_add(1, std::memory_order_relaxed); }
+
+    void release() {
+        if (_refs.fetch_sub(1, std::memory_order_acq_rel) == 1) delete this;
+    }
+
+private:
+    ~JniModelDefinition() {
+        expressions.clear();
+        if (moc) Live2D::Cubism::Framework::CubismMoc::Delete(moc);
+        memory->release();
+    }
+
+    std::atomic<int> _refs{1};
+};
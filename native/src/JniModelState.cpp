@@ -0,0 +1,107 @@
+#include "JniModelState.hpp"
+#include <Physics/CubismPhysicsInternal.hpp>
+#include <Model/CubismModel.hpp>
+#include <algorithm>
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+static uint32_t Mix(uint32_t hash, uint32_t value) {
+    return (hash ^ value) * 16777619u;
+}
+
+uint32_t JniStateAccess::hashPhysics(uint32_t hash, const CubismPhysics* physics) {
+    if (!physics) return Mix(hash, 0);
+    hash = Mix(hash, (uint32_t)physics->_physicsRig->Particles.GetSize());
+    hash = Mix(hash, (uint32_t)physics->_currentRigOutputs.GetSize());
+    for (csmUint32 i = 0; i < physics->_currentRigOutputs.GetSize(); i++) {
+        hash = Mix(hash, (uint32_t)physics->_currentRigOutputs[i].output.GetSize());
+    }
+    return hash;
+}
+
+void JniStateAccess::physicsOutputs(const CubismPhysics* physics, CubismModel* model, std::vector<int>& out) {
+    out.clear();
+    const auto& outputs = physics->_physicsRig->Outputs;
+    int count = model->GetParameterCount();
+    for (csmUint32 i = 0; i < outputs.GetSize(); i++) {
+        int index = model->GetParameterIndex(outputs[i].Destination.Id);
+        if (index < 0 || index >= count || std::find(out.begin(), out.end(), index) != out.end()) continue;
+        out.push_back(index);
+    }
+}
+
+// Only the moving parts of each particle; the rest comes from physics3.json and never changes.
+void JniStateAccess::writePhysics(JniStateWriter& out, const CubismPhysics* physics) {
+    const auto& particles = physics->_physicsRig->Particles;
+    for (csmUint32 i = 0; i < particles.GetSize(); i++) {
+        const CubismPhysicsParticle& p = particles[i];
+        const CubismVector2* vectors[] = {&p.Position, &p.LastPosition, &p.LastGravity, &p.Force, &p.Velocity};
+        for (const CubismVector2* v : vectors) {
+            out.f32(v->X);
+            out.f32(v->Y);
+        }
+    }
+    for (csmUint32 i = 0; i < physics->_currentRigOutputs.GetSize(); i++) {
+        const auto& current = physics->_currentRigOutputs[i].output;
+        const auto& previous = physics->_previousRigOutputs[i].output;
+        out.floats(current.GetPtr(), current.GetSize());
+        out.floats(previous.GetPtr(), previous.GetSize());
+    }
+    out.f32(physics->_currentRemainTime);
+    // Empty until the first Evaluate(), so their sizes are part of the state.
+    out.u32(physics->_parameterCaches.GetSize());
+    out.floats(physics->_parameterCaches.GetPtr(), physics->_parameterCaches.GetSize());
+    out.u32(physics->_parameterInputCaches.GetSize());
+    out.floats(physics->_parameterInputCaches.GetPtr(), physics->_parameterInputCaches.GetSize());
+}
+
+void JniStateAccess::readPhysics(JniStateReader& in, CubismPhysics* physics) {
+    auto& particles = physics->_physicsRig->Particles;
+    for (csmUint32 i = 0; i < particles.GetSize(); i++) {
+        CubismPhysicsParticle& p = particles[i];
+        CubismVector2* vectors[] = {&p.Position, &p.LastPosition, &p.LastGravity, &p.Force, &p.Velocity};
+        for (CubismVector2* v : vectors) {
+            v->X = in.f32();
+            v->Y = in.f32();
+        }
+    }
+    for (csmUint32 i = 0; i < physics->_currentRigOutputs.GetSize(); i++) {
+        auto& current = physics->_currentRigOutputs[i].output;
+        auto& previous = physics->_previousRigOutputs[i].output;
+        in.floats(current.GetPtr(), current.GetSize());
+        in.floats(previous.GetPtr(), previous.GetSize());
+    }
+    physics->_currentRemainTime = in.f32();
+    csmVector<csmFloat32>* caches[] = {&physics->_parameterCaches, &physics->_parameterInputCaches};
+    for (csmVector<csmFloat32>* cache : caches) {
+        uint32_t n = in.u32();
+        // Bounded by the parameter count Evaluate() sizes them to; anything bigger is a damaged blob.
+        if (n > 1u << 16) n = 0;
+        if (cache->GetSize() != n) cache->Resize(n);
+        in.floats(cache->GetPtr(), n);
+    }
+}
+
+void JniStateAccess::writeTarget(JniStateWriter& out, const CubismTargetPoint* target) {
+    out.f32(target->_faceTargetX);
+    out.f32(target->_faceTargetY);
+    out.f32(target->_faceX);
+    out.f32(target->_faceY);
+    out.f32(target->_faceVX);
+    out.f32(target->_faceVY);
+    out.f32(target->_lastTimeSeconds);
+    out.f32(target->_userTimeSeconds);
+}
+
+void JniStateAccess::readTarget(JniStateReader& in, CubismTargetPoint* target) {
+    target->_faceTargetX = in.f32();
+    target->_faceTargetY = in.f32();
+    target->_faceX = in.f32();
+    target->_faceY = in.f32();
+    target->_faceVX = in.f32();
+    target->_faceVY = in.f32();
+    target->_lastTimeSeconds = in.f32();
+    target->_userTimeSeconds = in.f32();
+}
+
+}}}
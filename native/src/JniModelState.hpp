@@ -0,0 +1,110 @@
+#pragma once
+
+#include <Physics/CubismPhysics.hpp>
+#include <Math/CubismTargetPoint.hpp>
+#include <cstdint>
+#include <cstring>
+#include <string>
+#include <vector>
+
+// Sequential writer for model state blobs. Without a destination it only counts, so the same code
+// computes the size. Values are 4 bytes in native byte order: a blob is meant for the same build
+// on the same kind of machine (clones, rollback, warm restarts), not for long-term storage.
+class JniStateWriter {
+public:
+    JniStateWriter(uint8_t* data, size_t capacity) : _data(data), _capacity(capacity) {}
+
+    void u32(uint32_t v) { bytes(&v, 4); }
+    void i32(int32_t v) { bytes(&v, 4); }
+    void f32(float v) { bytes(&v, 4); }
+    void u64(uint64_t v) { bytes(&v, 8); }
+    void floats(const float* v, size_t n) { bytes(v, n * 4); }
+
+    // Length-prefixed and padded to 4 bytes.
+    void string(const std::string& s) {
+        u32((uint32_t)s.size());
+        bytes(s.data(), s.size());
+        static const uint8_t zeros[3] = {0, 0, 0};
+        bytes(zeros, (4 - s.size() % 4) % 4);
+    }
+
+    void bytes(const void* p, size_t n) {
+        if (_data && _size + n <= _capacity) memcpy(_data + _size, p, n);
+        _size += n;
+    }
+
+    // Overwrites a value written earlier, for sizes only known at the end.
+    void patch(size_t offset, uint32_t v) {
+        if (_data && offset + 4 <= _capacity) memcpy(_data + offset, &v, 4);
+    }
+
+    size_t size() const { return _size; }
+    bool fits() const { return _size <= _capacity; }
+
+private:
+    uint8_t* _data;
+    size_t _capacity;
+    size_t _size = 0;
+};
+
+// Reading past the end yields zeros and clears ok(), so a damaged blob can't read out of bounds.
+class JniStateReader {
+public:
+    JniStateReader(const uint8_t* data, size_t size) : _data(data), _size(size) {}
+
+    uint32_t u32() { uint32_t v = 0; bytes(&v, 4); return v; }
+    int32_t i32() { int32_t v = 0; bytes(&v, 4); return v; }
+    float f32() { float v = 0.0f; bytes(&v, 4); return v; }
+    uint64_t u64() { uint64_t v = 0; bytes(&v, 8); return v; }
+    void floats(float* v, size_t n) { bytes(v, n * 4); }
+
+    std::string string() {
+        uint32_t n = u32();
+        if (n > _size - _offset) {
+            _ok = false;
+            return std::string();
+        }
+        std::string s((const char*)_data + _offset, n);
+        _offset += n + (4 - n % 4) % 4;
+        if (_offset > _size) _ok = false;
+        return s;
+    }
+
+    void bytes(void* p, size_t n) {
+        if (_ok && n <= _size - _offset) {
+            memcpy(p, _data + _offset, n);
+            _offset += n;
+        } else {
+            _ok = false;
+            memset(p, 0, n);
+        }
+    }
+
+    size_t offset() const { return _offset; }
+    bool ok() const { return _ok; }
+
+private:
+    const uint8_t* _data;
+    size_t _size;
+    size_t _offset = 0;
+    bool _ok = true;
+};
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+// The physics particles and the smoothed drag target are private to the SDK; scripts/build.py
+// declares this struct a friend of CubismPhysics and CubismTargetPoint.
+struct JniStateAccess {
+    // Folds the physics rig's shape into a layout hash, so state is only restored into a rig
+    // with the same particles and outputs.
+    static uint32_t hashPhysics(uint32_t hash, const CubismPhysics* physics);
+    static void writePhysics(JniStateWriter& out, const CubismPhysics* physics);
+    static void readPhysics(JniStateReader& in, CubismPhysics* physics);
+    // Indices of the model parameters the rig writes, each once.
+    static void physicsOutputs(const CubismPhysics* physics, CubismModel* model, std::vector<int>& out);
+
+    static void writeTarget(JniStateWriter& out, const CubismTargetPoint* target);
+    static void readTarget(JniStateReader& in, CubismTargetPoint* target);
+};
+
+}}}
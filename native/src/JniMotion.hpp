@@ -0,0 +1,71 @@
+#pragma once
+
+#include <Motion/CubismMotion.hpp>
+#include <Motion/CubismExpressionMotion.hpp>
+#include "JniAllocator.hpp"
+#include <cstdint>
+#include <memory>
+#include <utility>
+#include <vector>
+
+namespace Live2D { namespace Cubism { namespace Framework {
+
+// CubismMotion keeps the state of one playback on the object (the fired-event list, the last
+// weight, the model opacity), so models never play the cached motion itself: every start gets
+// an instance of its own that shares the parsed curves. Expressions keep their fade weight the
+// same way and are copied whole, parameter list included, which is only a few entries.
+// scripts/build.py declares this struct a friend of CubismMotion and CubismExpressionMotion.
+struct JniMotionAccess {
+    static CubismMotion* newInstance(const CubismMotion* motion);
+    // Leaves the shared curve data alone.
+    static void deleteInstance(CubismMotion* instance);
+    // What the instance fired during its last update.
+    static csmVector<const csmString*>& firedEvents(CubismMotion* instance);
+    static CubismExpressionMotion* newInstance(const CubismExpressionMotion* expression);
+};
+
+}}}
+
+struct MotionInstanceDelete {
+    void operator()(Live2D::Cubism::Framework::CubismMotion* instance) const {
+        Live2D::Cubism::Framework::JniMotionAccess::deleteInstance(instance);
+    }
+};
+
+using MotionInstance = std::unique_ptr<Live2D::Cubism::Framework::CubismMotion, MotionInstanceDelete>;
+
+struct ExpressionInstanceDelete {
+    void operator()(Live2D::Cubism::Framework::ACubismMotion* instance) const {
+        Live2D::Cubism::Framework::ACubismMotion::Delete(instance);
+    }
+};
+
+using ExpressionInstance = std::unique_ptr<Live2D::Cubism::Framework::ACubismMotion, ExpressionInstanceDelete>;
+
+struct SharedMotion {
+    // Parsed once and only ever copied, see JniMotionAccess.
+    Live2D::Cubism::Framework::CubismMotion* motion = nullptr;
+    JniMemoryAccount* memory = JniMemoryAccount::create();
+    // Content hash the cache knows this motion by; snapshots refer to motions by it.
+    uint64_t key = 0;
+    // Every user-data event this motion can fire, paired with the interned id of its value.
+    std::vector<std::pair<const Live2D::Cubism::Framework::csmString*, int>> events;
+
+    ~SharedMotion() {
+        if (motion) Live2D::Cubism::Framework::CubismMotion::Delete(motion);
+        memory->release();
+    }
+};
+
+using MotionRef = std::shared_ptr<SharedMotion>;
+
+struct JniMotion {
+    MotionRef motion;
+    uint64_t key;
+};
+
+// Returns the cached motion for this content, parsing it on a miss.
+MotionRef AcquireMotion(const Live2D::Cubism::Framework::csmByte* buffer, Live2D::Cubism::Framework::csmSizeInt size, bool loop, uint64_t* outKey = nullptr);
+
+// The cached motion with this key, or nullptr if it isn't (or no longer) in the cache.
+MotionRef FindMotion(uint64_t key);
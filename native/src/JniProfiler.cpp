@@ -0,0 +1,12 @@
+#include <jni.h>
+#include "JniProfiler.hpp"
+
+std::atomic<bool> g_profilingEnabled{false};
+
+extern "C" {
+
+JNIEXPORT void JNICALL Java_dev_eatgrapes_live2d_CubismProfiler_setEnabledNative(JNIEnv*, jclass, jboolean enabled) {
+    g_profilingEnabled.store(enabled, std::memory_order_relaxed);
+}
+
+}
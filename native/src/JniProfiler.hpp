@@ -0,0 +1,67 @@
+#pragma once
+
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+
+extern std::atomic<bool> g_profilingEnabled;
+
+// Stage timings for one model, written only by the thread updating or drawing it.
+struct JniStageStats {
+    enum Stage { Motion, Expression, Pose, Drag, Physics, ModelUpdate, Draw, StageCount };
+    // Bucket i counts durations below 2^i ns; the last one also takes everything longer.
+    enum { Buckets = 32, Fields = 4 + Buckets };
+
+    int64_t last[StageCount] = {};
+    int64_t count[StageCount] = {};
+    int64_t total[StageCount] = {};
+    int64_t max[StageCount] = {};
+    int64_t histogram[StageCount][Buckets] = {};
+
+    void record(int stage, int64_t nanos) {
+        last[stage] = nanos;
+        count[stage]++;
+        total[stage] += nanos;
+        if (nanos > max[stage]) max[stage] = nanos;
+        int bucket = 0;
+        for (uint64_t n = (uint64_t)nanos; n && bucket < Buckets - 1; n >>= 1) bucket++;
+        histogram[stage][bucket]++;
+    }
+
+    // Called when an update starts, so stages it skips report 0 as their last time.
+    void beginUpdate() { for (int s = 0; s < Draw; s++) last[s] = 0; }
+
+    void reset() { *this = JniStageStats(); }
+
+    // Per stage: count, total, max, last, then the histogram.
+    void copy(int64_t* out) const {
+        for (int s = 0; s < StageCount; s++) {
+            *out++ = count[s];
+            *out++ = total[s];
+            *out++ = max[s];
+            *out++ = last[s];
+            for (int b = 0; b < Buckets; b++) *out++ = histogram[s][b];
+        }
+    }
+};
+
+// Times its own lifetime into one stage. While profiling is off it never reads the clock.
+class JniStageTimer {
+public:
+    JniStageTimer(JniStageStats& stats, int stage)
+        : _stats(g_profilingEnabled.load(std::memory_order_relaxed) ? &stats : nullptr), _stage(stage) {
+        if (_stats) _start = std::chrono::steady_clock::now();
+    }
+
+    ~JniStageTimer() {
+        if (_stats) _stats->record(_stage, std::chrono::duration_cast<std::chrono::nanoseconds>(std::chrono::steady_clock::now() - _start).count());
+    }
+
+    JniStageTimer(const JniStageTimer&) = delete;
+    JniStageTimer& operator=(const JniStageTimer&) = delete;
+
+private:
+    JniStageStats* _stats;
+    int _stage;
+    std::chrono::steady_clock::time_point _start;
+};
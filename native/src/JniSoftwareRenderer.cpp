@@ -0,0 +1,296 @@
+#include "JniSoftwareRenderer.hpp"
+#include "JniWorkerPool.hpp"
+#include <algorithm>
+#include <cmath>
+#include <map>
+
+using namespace Live2D::Cubism::Framework;
+namespace CubismCore = Live2D::Cubism::Core;
+
+namespace {
+
+const int TileRows = 32;
+
+struct Rgba {
+    float r, g, b, a;
+};
+
+inline float Clamp01(float v) { return v < 0.0f ? 0.0f : (v > 1.0f ? 1.0f : v); }
+
+// Bilinear, clamp-to-edge. Cubism UVs have v pointing up while images are stored top row first.
+inline Rgba Sample(const JniSoftwareRenderer::Texture& tex, float u, float v) {
+    float fx = Clamp01(u) * tex.width - 0.5f;
+    float fy = (1.0f - Clamp01(v)) * tex.height - 0.5f;
+    int x0 = (int)std::floor(fx), y0 = (int)std::floor(fy);
+    float tx = fx - x0, ty = fy - y0;
+    int x1 = std::min(x0 + 1, tex.width - 1), y1 = std::min(y0 + 1, tex.height - 1);
+    x0 = std::max(x0, 0);
+    y0 = std::max(y0, 0);
+
+    const uint8_t* p00 = tex.rgba + ((size_t)y0 * tex.width + x0) * 4;
+    const uint8_t* p10 = tex.rgba + ((size_t)y0 * tex.width + x1) * 4;
+    const uint8_t* p01 = tex.rgba + ((size_t)y1 * tex.width + x0) * 4;
+    const uint8_t* p11 = tex.rgba + ((size_t)y1 * tex.width + x1) * 4;
+    float w00 = (1 - tx) * (1 - ty), w10 = tx * (1 - ty), w01 = (1 - tx) * ty, w11 = tx * ty;
+    const float s = 1.0f / 255.0f;
+    return {
+        (p00[0] * w00 + p10[0] * w10 + p01[0] * w01 + p11[0] * w11) * s,
+        (p00[1] * w00 + p10[1] * w10 + p01[1] * w01 + p11[1] * w11) * s,
+        (p00[2] * w00 + p10[2] * w10 + p01[2] * w01 + p11[2] * w11) * s,
+        (p00[3] * w00 + p10[3] * w10 + p01[3] * w01 + p11[3] * w11) * s,
+    };
+}
+
+// Top-left fill rule for triangles with positive area in y-down pixel space,
+// so edges shared by two triangles are only filled once.
+inline bool IsTopLeft(float ax, float ay, float bx, float by) {
+    float dx = bx - ax, dy = by - ay;
+    return dy < 0.0f || (dy == 0.0f && dx > 0.0f);
+}
+
+// Calls shade(x, y, wa, wb, wc) for every pixel center in [x0, x1) x [y0, y1) covered by the triangle.
+template <typename Shade>
+void RasterTriangle(const float* a, const float* b, const float* c, int x0, int y0, int x1, int y1, bool cullBack, Shade&& shade) {
+    float area = (b[0] - a[0]) * (c[1] - a[1]) - (b[1] - a[1]) * (c[0] - a[0]);
+    if (area == 0.0f) return;
+    // Pixel space is y-down, so positive area is clockwise in NDC: a back face for OpenGL's default CCW front face.
+    if (cullBack && area > 0.0f) return;
+
+    bool flipped = area < 0.0f;
+    if (flipped) {
+        std::swap(b, c);
+        area = -area;
+    }
+
+    int minX = std::max(x0, (int)std::floor(std::min({a[0], b[0], c[0]})));
+    int maxX = std::min(x1 - 1, (int)std::ceil(std::max({a[0], b[0], c[0]})));
+    int minY = std::max(y0, (int)std::floor(std::min({a[1], b[1], c[1]})));
+    int maxY = std::min(y1 - 1, (int)std::ceil(std::max({a[1], b[1], c[1]})));
+    if (minX > maxX || minY > maxY) return;
+
+    bool tlA = IsTopLeft(b[0], b[1], c[0], c[1]);
+    bool tlB = IsTopLeft(c[0], c[1], a[0], a[1]);
+    bool tlC = IsTopLeft(a[0], a[1], b[0], b[1]);
+
+    // Edge functions and their per-pixel steps along x.
+    float stepA = -(c[1] - b[1]), stepB = -(a[1] - c[1]), stepC = -(b[1] - a[1]);
+    float inv = 1.0f / area;
+
+    for (int y = minY; y <= maxY; y++) {
+        float py = y + 0.5f, px = minX + 0.5f;
+        float ea = (c[0] - b[0]) * (py - b[1]) - (c[1] - b[1]) * (px - b[0]);
+        float eb = (a[0] - c[0]) * (py - c[1]) - (a[1] - c[1]) * (px - c[0]);
+        float ec = (b[0] - a[0]) * (py - a[1]) - (b[1] - a[1]) * (px - a[0]);
+        for (int x = minX; x <= maxX; x++, ea += stepA, eb += stepB, ec += stepC) {
+            if (ea < 0.0f || eb < 0.0f || ec < 0.0f) continue;
+            if ((ea == 0.0f && !tlA) || (eb == 0.0f && !tlB) || (ec == 0.0f && !tlC)) continue;
+            float wa = ea * inv, wb = eb * inv, wc = ec * inv;
+            if (flipped) shade(x, y, wa, wc, wb);
+            else shade(x, y, wa, wb, wc);
+        }
+    }
+}
+
+}
+
+JniSoftwareRenderer::JniSoftwareRenderer(CubismModel* model) : _model(model) {}
+
+void JniSoftwareRenderer::setTexture(int index, const uint8_t* rgba, int width, int height) {
+    if (index < 0) return;
+    if ((int)_textures.size() <= index) _textures.resize(index + 1);
+    _textures[index] = {rgba, width, height};
+}
+
+void JniSoftwareRenderer::prepareMasks() {
+    auto* core = _model->GetModel();
+    int count = _model->GetDrawableCount();
+    const int* maskCounts = CubismCore::csmGetDrawableMaskCounts(core);
+    const int** masks = CubismCore::csmGetDrawableMasks(core);
+
+    // Drawables clipped by the same set of masks share one coverage buffer.
+    std::map<std::vector<int>, int> slots;
+    _maskSetOfDrawable.assign(count, -1);
+    for (int i = 0; i < count; i++) {
+        if (maskCounts[i] == 0) continue;
+        std::vector<int> key(masks[i], masks[i] + maskCounts[i]);
+        std::sort(key.begin(), key.end());
+        auto it = slots.find(key);
+        if (it == slots.end()) {
+            it = slots.emplace(key, (int)_maskSets.size()).first;
+            _maskSets.push_back({key, {}});
+        }
+        _maskSetOfDrawable[i] = it->second;
+    }
+
+    _vertexOffsets.resize(count + 1);
+    const int* vertexCounts = CubismCore::csmGetDrawableVertexCounts(core);
+    _vertexOffsets[0] = 0;
+    for (int i = 0; i < count; i++) _vertexOffsets[i + 1] = _vertexOffsets[i] + vertexCounts[i];
+    _masksPrepared = true;
+}
+
+void JniSoftwareRenderer::transformVertices(const float* m, int width, int height) {
+    auto* core = _model->GetModel();
+    int count = _model->GetDrawableCount();
+    const int* vertexCounts = CubismCore::csmGetDrawableVertexCounts(core);
+    const CubismCore::csmVector2** positions = CubismCore::csmGetDrawableVertexPositions(core);
+
+    _screen.resize(_vertexOffsets[count] * 2);
+    for (int i = 0; i < count; i++) {
+        float* out = &_screen[_vertexOffsets[i] * 2];
+        for (int v = 0; v < vertexCounts[i]; v++) {
+            float x = positions[i][v].X, y = positions[i][v].Y;
+            float cx = m[0] * x + m[4] * y + m[12];
+            float cy = m[1] * x + m[5] * y + m[13];
+            float cw = m[3] * x + m[7] * y + m[15];
+            float nx = cx / cw, ny = cy / cw;
+            out[v * 2] = (nx * 0.5f + 0.5f) * width;
+            out[v * 2 + 1] = (0.5f - ny * 0.5f) * height;
+        }
+    }
+}
+
+void JniSoftwareRenderer::render(const float* mvp, uint8_t* target, int width, int height) {
+    if (!_masksPrepared) prepareMasks();
+
+    auto* core = _model->GetModel();
+    int count = _model->GetDrawableCount();
+    const int* renderOrders = CubismCore::csmGetDrawableRenderOrders(core);
+    _drawOrder.resize(count);
+    for (int i = 0; i < count; i++) _drawOrder[renderOrders[i]] = i;
+
+    transformVertices(mvp, width, height);
+    _color.resize((size_t)width * height * 4);
+    for (auto& set : _maskSets) set.coverage.resize((size_t)width * height);
+
+    int tiles = (height + TileRows - 1) / TileRows;
+    auto job = [&](int t) {
+        int y0 = t * TileRows;
+        renderTile(y0, std::min(y0 + TileRows, height), width, target);
+    };
+    if (_multithreaded) {
+        JniWorkerPool::instance().parallelFor(tiles, job);
+    } else {
+        for (int t = 0; t < tiles; t++) job(t);
+    }
+}
+
+void JniSoftwareRenderer::renderTile(int y0, int y1, int width, uint8_t* target) {
+    std::fill(_color.begin() + (size_t)y0 * width * 4, _color.begin() + (size_t)y1 * width * 4, 0.0f);
+    for (auto& set : _maskSets) renderMaskRows(set, y0, y1, width);
+
+    for (int drawable : _drawOrder) renderDrawableRows(drawable, y0, y1, width);
+
+    for (size_t p = (size_t)y0 * width; p < (size_t)y1 * width; p++) {
+        const float* c = &_color[p * 4];
+        float a = Clamp01(c[3]);
+        float scale = (_premultipliedOutput || a == 0.0f) ? 1.0f : 1.0f / a;
+        uint8_t* out = target + p * 4;
+        out[0] = (uint8_t)(Clamp01(c[0] * scale) * 255.0f + 0.5f);
+        out[1] = (uint8_t)(Clamp01(c[1] * scale) * 255.0f + 0.5f);
+        out[2] = (uint8_t)(Clamp01(c[2] * scale) * 255.0f + 0.5f);
+        out[3] = (uint8_t)(a * 255.0f + 0.5f);
+    }
+}
+
+void JniSoftwareRenderer::renderMaskRows(MaskSet& set, int y0, int y1, int width) {
+    std::fill(set.coverage.begin() + (size_t)y0 * width, set.coverage.begin() + (size_t)y1 * width, 0.0f);
+
+    auto* core = _model->GetModel();
+    const int* indexCounts = CubismCore::csmGetDrawableIndexCounts(core);
+    const unsigned short** indices = CubismCore::csmGetDrawableIndices(core);
+    const CubismCore::csmVector2** uvs = CubismCore::csmGetDrawableVertexUvs(core);
+    const int* textureIndices = CubismCore::csmGetDrawableTextureIndices(core);
+    const CubismCore::csmFlags* constantFlags = CubismCore::csmGetDrawableConstantFlags(core);
+
+    for (int mask : set.drawables) {
+        int ti = textureIndices[mask];
+        if (ti >= (int)_textures.size() || !_textures[ti].rgba) continue;
+        const Texture& tex = _textures[ti];
+        const float* screen = &_screen[_vertexOffsets[mask] * 2];
+        const CubismCore::csmVector2* uv = uvs[mask];
+        bool cull = (constantFlags[mask] & CubismCore::csmIsDoubleSided) == 0;
+        float* coverage = set.coverage.data();
+
+        for (int t = 0; t + 2 < indexCounts[mask]; t += 3) {
+            int ia = indices[mask][t], ib = indices[mask][t + 1], ic = indices[mask][t + 2];
+            RasterTriangle(&screen[ia * 2], &screen[ib * 2], &screen[ic * 2], 0, y0, width, y1, cull,
+                [&](int x, int y, float wa, float wb, float wc) {
+                    float u = uv[ia].X * wa + uv[ib].X * wb + uv[ic].X * wc;
+                    float v = uv[ia].Y * wa + uv[ib].Y * wb + uv[ic].Y * wc;
+                    float a = Sample(tex, u, v).a;
+                    float& cov = coverage[(size_t)y * width + x];
+                    cov = cov + a * (1.0f - cov);
+                });
+        }
+    }
+}
+
+void JniSoftwareRenderer::renderDrawableRows(int drawable, int y0, int y1, int width) {
+    auto* core = _model->GetModel();
+    const CubismCore::csmFlags* dynamicFlags = CubismCore::csmGetDrawableDynamicFlags(core);
+    float opacity = CubismCore::csmGetDrawableOpacities(core)[drawable];
+    if (!(dynamicFlags[drawable] & CubismCore::csmIsVisible) || opacity <= 0.0f) return;
+
+    int ti = CubismCore::csmGetDrawableTextureIndices(core)[drawable];
+    if (ti >= (int)_textures.size() || !_textures[ti].rgba) return;
+    const Texture& tex = _textures[ti];
+
+    CubismCore::csmFlags flags = CubismCore::csmGetDrawableConstantFlags(core)[drawable];
+    bool cull = (flags & CubismCore::csmIsDoubleSided) == 0;
+    bool inverted = (flags & CubismCore::csmIsInvertedMask) != 0;
+    int mode = (flags & CubismCore::csmBlendAdditive) ? 1 : ((flags & CubismCore::csmBlendMultiplicative) ? 2 : 0);
+    int maskSet = _maskSetOfDrawable[drawable];
+    const float* coverage = maskSet >= 0 ? _maskSets[maskSet].coverage.data() : nullptr;
+
+    auto mul = _model->GetDrawableMultiplyColor(drawable);
+    auto scr = _model->GetDrawableScreenColor(drawable);
+
+    int indexCount = CubismCore::csmGetDrawableIndexCounts(core)[drawable];
+    const unsigned short* indices = CubismCore::csmGetDrawableIndices(core)[drawable];
+    const CubismCore::csmVector2* uv = CubismCore::csmGetDrawableVertexUvs(core)[drawable];
+    const float* screen = &_screen[_vertexOffsets[drawable] * 2];
+    float* color = _color.data();
+
+    for (int t = 0; t + 2 < indexCount; t += 3) {
+        int ia = indices[t], ib = indices[t + 1], ic = indices[t + 2];
+        RasterTriangle(&screen[ia * 2], &screen[ib * 2], &screen[ic * 2], 0, y0, width, y1, cull,
+            [&](int x, int y, float wa, float wb, float wc) {
+                size_t p = (size_t)y * width + x;
+                float u = uv[ia].X * wa + uv[ib].X * wb + uv[ic].X * wc;
+                float v = uv[ia].Y * wa + uv[ib].Y * wb + uv[ic].Y * wc;
+                Rgba s = Sample(tex, u, v);
+
+                float r = s.r * mul.R, g = s.g * mul.G, b = s.b * mul.B;
+                r = r + scr.R - r * scr.R;
+                g = g + scr.G - g * scr.G;
+                b = b + scr.B - b * scr.B;
+                float a = s.a * opacity;
+                if (coverage) a *= inverted ? 1.0f - coverage[p] : coverage[p];
+                if (a <= 0.0f) return;
+                r *= a;
+                g *= a;
+                b *= a;
+
+                float* d = &color[p * 4];
+                switch (mode) {
+                case 1: // GL_ONE, GL_ONE for color; destination alpha kept
+                    d[0] += r;
+                    d[1] += g;
+                    d[2] += b;
+                    break;
+                case 2: // GL_DST_COLOR, GL_ONE_MINUS_SRC_ALPHA for color; destination alpha kept
+                    d[0] = r * d[0] + d[0] * (1.0f - a);
+                    d[1] = g * d[1] + d[1] * (1.0f - a);
+                    d[2] = b * d[2] + d[2] * (1.0f - a);
+                    break;
+                default: // GL_ONE, GL_ONE_MINUS_SRC_ALPHA
+                    d[0] = r + d[0] * (1.0f - a);
+                    d[1] = g + d[1] * (1.0f - a);
+                    d[2] = b + d[2] * (1.0f - a);
+                    d[3] = a + d[3] * (1.0f - a);
+                    break;
+                }
+            });
+    }
+}
@@ -0,0 +1,55 @@
+#pragma once
+
+#include <Model/CubismModel.hpp>
+#include <cstdint>
+#include <vector>
+
+// CPU rasterizer for a CubismModel, rendering into a caller-owned RGBA8 buffer.
+// Follows the OpenGL renderer's shading: multiply/screen colors, opacity, clipping
+// masks (optionally inverted), culling and the normal/additive/multiplicative blend modes.
+class JniSoftwareRenderer {
+public:
+    struct Texture {
+        const uint8_t* rgba = nullptr;
+        int width = 0, height = 0;
+    };
+
+    explicit JniSoftwareRenderer(Live2D::Cubism::Framework::CubismModel* model);
+
+    // After the user model loaded another moc. Textures stay registered by index.
+    void setModel(Live2D::Cubism::Framework::CubismModel* model) {
+        _model = model;
+        _masksPrepared = false;
+    }
+
+    void setTexture(int index, const uint8_t* rgba, int width, int height);
+    void setMultithreaded(bool value) { _multithreaded = value; }
+    void setPremultipliedOutput(bool value) { _premultipliedOutput = value; }
+
+    // mvp is a column-major 4x4 matrix, as passed to CubismRenderer::SetMvpMatrix.
+    void render(const float* mvp, uint8_t* target, int width, int height);
+
+private:
+    struct MaskSet {
+        std::vector<int> drawables;
+        std::vector<float> coverage;
+    };
+
+    void prepareMasks();
+    void transformVertices(const float* mvp, int width, int height);
+    void renderTile(int y0, int y1, int width, uint8_t* target);
+    void renderMaskRows(MaskSet& set, int y0, int y1, int width);
+    void renderDrawableRows(int drawable, int y0, int y1, int width);
+
+    Live2D::Cubism::Framework::CubismModel* _model;
+    std::vector<Texture> _textures;
+    std::vector<int> _maskSetOfDrawable;
+    std::vector<MaskSet> _maskSets;
+    std::vector<int> _vertexOffsets;
+    std::vector<float> _screen;
+    std::vector<int> _drawOrder;
+    std::vector<float> _color;
+    bool _masksPrepared = false;
+    bool _multithreaded = true;
+    bool _premultipliedOutput = true;
+};
@@ -0,0 +1,33 @@
+#include <jni.h>
+#include "JniStrings.hpp"
+#include <mutex>
+#include <unordered_map>
+#include <vector>
+
+static std::mutex g_stringsMutex;
+static std::vector<std::string> g_strings;
+static std::unordered_map<std::string, int> g_stringIds;
+
+int InternString(const char* value) {
+    std::lock_guard<std::mutex> lock(g_stringsMutex);
+    auto it = g_stringIds.find(value);
+    if (it != g_stringIds.end()) return it->second;
+    int id = (int)g_strings.size();
+    g_strings.emplace_back(value);
+    g_stringIds.emplace(g_strings.back(), id);
+    return id;
+}
+
+std::string InternedString(int id) {
+    std::lock_guard<std::mutex> lock(g_stringsMutex);
+    if (id < 0 || id >= (int)g_strings.size()) return std::string();
+    return g_strings[id];
+}
+
+extern "C" {
+
+JNIEXPORT jstring JNICALL Java_dev_eatgrapes_live2d_CubismUserModel_getInternedStringNative(JNIEnv* env, jclass, jint id) {
+    return env->NewStringUTF(InternedString(id).c_str());
+}
+
+}
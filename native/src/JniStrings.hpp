@@ -0,0 +1,10 @@
+#pragma once
+
+#include <string>
+
+// Process-wide table of strings that events refer to by id. Ids are never reused,
+// so Java can cache the resolved strings forever.
+int InternString(const char* value);
+
+// Empty if the id was never handed out.
+std::string InternedString(int id);
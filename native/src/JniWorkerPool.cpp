@@ -0,0 +1,95 @@
+#include "JniWorkerPool.hpp"
+
+JniWorkerPool& JniWorkerPool::instance() {
+    static JniWorkerPool pool;
+    return pool;
+}
+
+void JniWorkerPool::start() {
+    int total = _requestedThreads > 0 ? _requestedThreads : (int)std::thread::hardware_concurrency();
+    // The calling thread takes part in every job, so it counts as one of the threads.
+    uint64_t generation;
+    {
+        std::lock_guard<std::mutex> lock(_mutex);
+        generation = _generation;
+    }
+    for (int i = 1; i < total; i++) {
+        _threads.emplace_back([this, generation] { workerLoop(generation); });
+    }
+}
+
+void JniWorkerPool::workerLoop(uint64_t seen) {
+    for (;;) {
+        std::unique_lock<std::mutex> lock(_mutex);
+        _wake.wait(lock, [&] { return _stopping || _generation != seen; });
+        if (_stopping) return;
+        seen = _generation;
+        const auto* job = _job;
+        int count = _count;
+        lock.unlock();
+
+        runJob(*job, count);
+
+        lock.lock();
+        if (--_active == 0) _done.notify_all();
+    }
+}
+
+void JniWorkerPool::runJob(const std::function<void(int)>& fn, int count) {
+    for (int i = _next.fetch_add(1, std::memory_order_relaxed); i < count; i = _next.fetch_add(1, std::memory_order_relaxed)) {
+        fn(i);
+    }
+}
+
+void JniWorkerPool::parallelFor(int count, const std::function<void(int)>& fn) {
+    if (count <= 0) return;
+    std::lock_guard<std::mutex> run(_runMutex);
+    if (_threads.empty()) start();
+
+    if (_threads.empty() || count == 1) {
+        for (int i = 0; i < count; i++) fn(i);
+        return;
+    }
+
+    {
+        std::lock_guard<std::mutex> lock(_mutex);
+        _job = &fn;
+        _count = count;
+        _next.store(0, std::memory_order_relaxed);
+        _active = (int)_threads.size();
+        _generation++;
+    }
+    _wake.notify_all();
+
+    runJob(fn, count);
+
+    std::unique_lock<std::mutex> lock(_mutex);
+    _done.wait(lock, [&] { return _active == 0; });
+    _job = nullptr;
+}
+
+void JniWorkerPool::setThreadCount(int count) {
+    shutdown();
+    std::lock_guard<std::mutex> run(_runMutex);
+    _requestedThreads = count < 0 ? 0 : count;
+}
+
+int JniWorkerPool::threadCount() {
+    std::lock_guard<std::mutex> run(_runMutex);
+    if (_threads.empty()) start();
+    return (int)_threads.size() + 1;
+}
+
+void JniWorkerPool::shutdown() {
+    std::lock_guard<std::mutex> run(_runMutex);
+    {
+        std::lock_guard<std::mutex> lock(_mutex);
+        _stopping = true;
+    }
+    _wake.notify_all();
+    for (auto& t : _threads) t.join();
+    _threads.clear();
+
+    std::lock_guard<std::mutex> lock(_mutex);
+    _stopping = false;
+}
@@ -0,0 +1,43 @@
+#pragma once
+
+#include <atomic>
+#include <condition_variable>
+#include <cstdint>
+#include <functional>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+// Fixed pool of native worker threads. parallelFor hands out indices dynamically, so
+// callers must not depend on which thread runs which index.
+class JniWorkerPool {
+public:
+    static JniWorkerPool& instance();
+
+    ~JniWorkerPool() { shutdown(); }
+
+    // Runs fn(i) for every i in [0, count) on the pool and the calling thread, returning when all are done.
+    void parallelFor(int count, const std::function<void(int)>& fn);
+
+    // 0 picks one thread per available core.
+    void setThreadCount(int count);
+    int threadCount();
+    void shutdown();
+
+private:
+    void start();
+    void workerLoop(uint64_t seen);
+    void runJob(const std::function<void(int)>& fn, int count);
+
+    std::mutex _runMutex;
+    std::mutex _mutex;
+    std::condition_variable _wake, _done;
+    std::vector<std::thread> _threads;
+    const std::function<void(int)>* _job = nullptr;
+    int _count = 0;
+    int _active = 0;
+    uint64_t _generation = 0;
+    bool _stopping = false;
+    int _requestedThreads = 0;
+    std::atomic<int> _next{0};
+};
@@ -1,7 +1,10 @@
+import hashlib
 import os
+import struct
 import subprocess
 import shutil
 import platform
+import re
 import sys
 import urllib.request
 import zipfile
@@ -41,6 +44,8 @@ def setup_env():
         with open(tpp, "w", encoding="utf-8") as f: 
             f.write(content.replace("_clearedMaskBufferFlags = NULL;", "_clearedMaskBufferFlags.Clear();"))
 
+    patch_sdk()
+
     inc_dir = os.path.abspath("native/include")
     for path, url in GLES_HEADERS.items():
         full_path = os.path.join(inc_dir, path)
@@ -51,6 +56,49 @@ def setup_env():
             with urllib.request.urlopen(req) as response, open(full_path, 'wb') as out_file:
                 shutil.copyfileobj(response, out_file)
 
+# Model snapshots (JniModelState.cpp), compiled assets (JniBinaryAsset.cpp) and per-playback
+# motion and expression instances (CubismMotion_JNI.cpp) reach into state the SDK keeps private.
+# Applied on every build so an SDK extracted by an older build gets it too.
+SDK_FRIENDS = (
+    ("Framework/src/Physics/CubismPhysics.hpp", "CubismPhysics", "JniStateAccess"),
+    ("Framework/src/Math/CubismTargetPoint.hpp", "CubismTargetPoint", "JniStateAccess"),
+    ("Framework/src/Motion/CubismMotion.hpp", "CubismMotion", "JniBinaryAccess"),
+    ("Framework/src/Motion/CubismMotion.hpp", "CubismMotion", "JniMotionAccess"),
+    ("Framework/src/Motion/CubismExpressionMotion.hpp", "CubismExpressionMotion", "JniBinaryAccess"),
+    ("Framework/src/Motion/CubismExpressionMotion.hpp", "CubismExpressionMotion", "JniMotionAccess"),
+)
+
+# Ids live as long as the framework, but the SDK registers them from inside model and motion
+# loads; without this they'd be charged to (and pooled in) whichever account was open then.
+# Each line goes in right after the first match of its pattern.
+SDK_EDITS = (
+    ("Framework/src/Id/CubismIdManager.cpp", r'#include "CubismIdManager\.hpp"', '#include "JniAllocator.hpp"'),
+    ("Framework/src/Id/CubismIdManager.cpp", r"CubismId\* CubismIdManager::RegisterId\(const csmChar\* id\)\s*\{",
+     "    JniMemoryScope global(nullptr);"),
+)
+
+def patch_sdk():
+    for path, pattern, line in SDK_EDITS:
+        full = os.path.join(SDK_DIR, path)
+        with open(full, "r", encoding="utf-8") as f: content = f.read()
+        if line in content: continue
+        match = re.search(pattern, content)
+        if match is None:
+            print(f"Could not patch {path}")
+            sys.exit(1)
+        with open(full, "w", encoding="utf-8") as f: f.write(content[:match.end()] + "\n" + line + content[match.end():])
+
+    for path, cls, friend in SDK_FRIENDS:
+        full = os.path.join(SDK_DIR, path)
+        with open(full, "r", encoding="utf-8") as f: content = f.read()
+        declaration = f"friend struct {friend};"
+        if declaration in content: continue
+        patched, n = re.subn(r"(class\s+" + cls + r"\b[^;{]*\{)", r"\1\n    " + declaration, content, count=1)
+        if n != 1:
+            print(f"Could not patch {path}")
+            sys.exit(1)
+        with open(full, "w", encoding="utf-8") as f: f.write(patched)
+
 def get_tag():
     os_name = platform.system().lower()
     arch = platform.machine().lower()
@@ -62,6 +110,22 @@ def get_tag():
         a = "x64"
     return f"{p}-{a}"
 
+# All shaders in one resource, preloaded by CubismFramework.startUp (format in CubismFramework_JNI.cpp)
+def write_shader_bundle(shader_dir, path):
+    names = sorted(f for f in os.listdir(shader_dir) if os.path.isfile(os.path.join(shader_dir, f)))
+    with open(path, "wb") as out:
+        out.write(b"L2DS" + struct.pack("<I", len(names)))
+        for name in names:
+            with open(os.path.join(shader_dir, name), "rb") as f: data = f.read()
+            encoded = name.encode("utf-8")
+            out.write(struct.pack("<H", len(encoded)) + encoded + struct.pack("<I", len(data)) + data)
+
+def javac_version():
+    result = subprocess.run(["javac", "-version"], stdout=subprocess.PIPE, stderr=subprocess.STDOUT, text=True,
+                            shell=platform.system().lower() == "windows")
+    digits = result.stdout.split()[-1].split(".")[0] if result.stdout.split() else "0"
+    return int(digits) if digits.isdigit() else 0
+
 def build():
     tag = get_tag()
     root = os.getcwd()
@@ -80,11 +144,24 @@ def build():
     os.makedirs(sd)
     ss = os.path.join(SDK_DIR, "Framework/src/Rendering/OpenGL/Shaders/StandardES")
     for f in os.listdir(ss): shutil.copy(os.path.join(ss, f), sd)
+    write_shader_bundle(ss, os.path.join(classes, "live2d", "shaders.bin"))
 
     src = os.path.join(root, "binding/src/main/java")
     j_files = [os.path.join(dp, f) for dp, dn, fn in os.walk(src) for f in fn if f.endswith('.java')]
-    run_cmd(["javac", "-d", classes, "--source-path", src] + j_files)
-    run_cmd(["jar", "--create", "--file", os.path.join(out, "live2d-shared.jar"), "-C", classes, "."])
+    # Pinned so a newer JDK, which CI needs for the FFM classes below, still builds a base that runs on 11.
+    run_cmd(["javac", "--release", "11", "-d", classes, "--source-path", src] + j_files)
+    jar = ["jar", "--create", "--file", os.path.join(out, "live2d-shared.jar"), "-C", classes, "."]
+
+    # The FFM backend needs the final java.lang.foreign API; older JDKs build a jar without it.
+    src22 = os.path.join(root, "binding/src/main/java22")
+    if javac_version() >= 22:
+        classes22 = os.path.join(out, "classes22")
+        j22_files = [os.path.join(dp, f) for dp, dn, fn in os.walk(src22) for f in fn if f.endswith('.java')]
+        run_cmd(["javac", "--release", "22", "-d", classes22, "--class-path", classes] + j22_files)
+        jar += ["--release", "22", "-C", classes22, "."]
+    else:
+        print("JDK older than 22, building without the FFM backend")
+    run_cmd(jar)
 
     res = os.path.join(out, "native_res", tag)
     os.makedirs(res)
@@ -93,6 +170,9 @@ def build():
         for f in os.listdir(p):
             if f.endswith((".so", ".dll", ".dylib")) and "live2d_jni" in f:
                 shutil.copy(os.path.join(p, f), res)
+                # LibraryLoader names its extraction cache after this hash instead of hashing at startup
+                with open(os.path.join(p, f), "rb") as lib, open(os.path.join(res, f + ".sha256"), "w") as digest:
+                    digest.write(hashlib.sha256(lib.read()).hexdigest())
     run_cmd(["jar", "--create", "--file", os.path.join(out, f"live2d-native-{tag}.jar"), "-C", os.path.join(out, "native_res"), "."])
 
 if __name__ == "__main__":